@@ -0,0 +1,85 @@
+package com.github.tommyettinger;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CharMapBuilder#build} with each source of codepoints:
+ * <ul>
+ *   <li>{@code preset}: the LATIN charset, about 300 codepoints;</li>
+ *   <li>{@code lang}: a folder of "language files" holding the text of
+ *       every glyph in three corpus fonts, so the union is realistic;</li>
+ *   <li>{@code all}: the whole BMP, where the {@code canDisplay} filter
+ *       over 65,504 codepoints dominates.</li>
+ * </ul>
+ * The corpus has no TrueType files, so the font checked against is found
+ * by {@link Fixtures#ttf()}. Console output is discarded while measuring.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CharMapBenchmark {
+
+    @Param({"preset", "lang", "all"})
+    public String source;
+
+    private FontwriterConfig config;
+    private String ttf;
+    private FileHandle cmap;
+    private PrintStream out;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ttf = Fixtures.ttf().getAbsolutePath();
+        FileHandle scratch = Fixtures.scratch("cmap");
+        cmap = scratch.child("font.cmap.txt");
+        config = new FontwriterConfig();
+        if ("preset".equals(source)) {
+            config.charset = FontwriterConfig.Charset.LATIN;
+            config.charsetExplicitlySet = true;
+        } else if ("lang".equals(source)) {
+            FileHandle lang = scratch.child("lang");
+            for (String font : new String[]{"Inter-standard", "Libertinus-Serif-standard", "DejaVu-Sans-Condensed-standard"}) {
+                StringBuilder sb = new StringBuilder();
+                JsonValue glyphs = new JsonReader().parse(Fixtures.fontJson(font)).get("glyphs");
+                for (JsonValue g = glyphs.child; g != null; g = g.next) {
+                    sb.appendCodePoint(g.getInt("unicode", 32));
+                }
+                lang.child(font + ".txt").writeString(sb.toString(), false, "UTF-8");
+            }
+            config.langPath = lang.path();
+        }
+        out = System.out;
+        System.setOut(Fixtures.SILENT);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(out);
+    }
+
+    @Benchmark
+    public int build() {
+        return CharMapBuilder.build(config, ttf, cmap);
+    }
+}
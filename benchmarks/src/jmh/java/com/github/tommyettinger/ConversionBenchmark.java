@@ -0,0 +1,74 @@
+package com.github.tommyettinger;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.ByteArray;
+import com.github.tommyettinger.textra.utils.LZBCompression;
+import com.github.tommyettinger.textra.utils.LZBDecompression;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The descriptor conversions done for every font: {@link FontwriterUtils}'s
+ * UBJSON (with its LZMA pass) and LZMA conversions, and LZB compression
+ * and decompression of the {@code .dat} file. Fonts are picked to span
+ * the corpus: a small pixel font, a typical Latin font, and Go Noto
+ * Universal, the largest. Conversions write into a scratch folder.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConversionBenchmark {
+
+    @Param({"Cordata-16x26-standard", "Inter-msdf", "Go-Noto-Universal-sdf"})
+    public String font;
+
+    private FileHandle json;
+    private String text;
+    private byte[] lzb;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        text = Fixtures.fontJson(font);
+        json = Fixtures.scratch("convert").child(font + ".json");
+        json.writeString(text, false, "UTF-8");
+        ByteArray ba = LZBCompression.compressToByteArray(text);
+        lzb = ba.toArray();
+    }
+
+    @Benchmark
+    public long ubjson() {
+        FontwriterUtils.convertToUBJSON(json);
+        return json.sibling("ubj").child(font + ".ubj.lzma").length();
+    }
+
+    @Benchmark
+    public long lzma() {
+        FontwriterUtils.convertToLzma(json);
+        return json.sibling(font + ".json.lzma").length();
+    }
+
+    @Benchmark
+    public int lzbCompress() {
+        return LZBCompression.compressToByteArray(text).size;
+    }
+
+    @Benchmark
+    public int lzbDecompress() {
+        return LZBDecompression.decompressFromBytes(lzb).length();
+    }
+}
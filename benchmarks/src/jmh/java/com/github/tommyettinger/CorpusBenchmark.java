@@ -0,0 +1,290 @@
+package com.github.tommyettinger;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.PixmapIO;
+import com.badlogic.gdx.utils.ByteArray;
+import com.badlogic.gdx.utils.JsonValue;
+import com.badlogic.gdx.utils.JsonWriter;
+import com.github.tommyettinger.textra.utils.LZBCompression;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * End-to-end throughput of everything fontwriter does to a font after
+ * msdf-atlas-gen, run over the {@code docs/knownFonts} corpus (or a
+ * seeded random sample of it) without a display or network:
+ * <ol>
+ *   <li>{@code ubj}, {@code lzma}, {@code lzb}: the descriptor
+ *       conversions from step [6] of {@link FontWriter#write};</li>
+ *   <li>{@code dict}: shared-dictionary compression, with a dictionary
+ *       trained once on the sample (training is timed separately);</li>
+ *   <li>{@code png}: the atlas post-processing of step [7]: decode,
+ *       stamp the marker corner, and re-encode, indexed for standard
+ *       and sdf or RGBA for msdf. {@code FontWriter.process} itself refuses
+ *       atlases whose corner is already stamped, as every corpus atlas
+ *       is, so this repeats its work without that check;</li>
+ *   <li>{@code bundle}: the {@code .fwb} bundle.</li>
+ * </ol>
+ * Each font is copied to a scratch folder first, so the corpus is never
+ * modified. Stage costs are recorded with {@link JobReport}.
+ * <p>
+ * The result is printed and saved as
+ * {@code <out>/corpus-<commit>-<time>.json}. It records fonts and MB per
+ * second, per-stage times, the compression ratio of each output format
+ * against the JSON descriptor (for the re-encoded PNG, which has not
+ * been through oxipng, against the corpus atlas),
+ * peak heap, and the peak resident set size. Results from two commits
+ * can be compared directly.
+ * <p>
+ * Usage: {@code CorpusBenchmark <corpus dir> <out dir> [--sample N] [--seed S]},
+ * or {@code gradlew benchmarks:corpus -PcorpusArgs="--sample 50"}.
+ */
+public final class CorpusBenchmark {
+
+    private CorpusBenchmark() {} // utility class
+
+    /** Output formats and the files they end in, relative to the font's scratch folder. */
+    private static final String[][] FORMATS = {
+            {"ubj", "ubj/%s.ubj"}, {"ubj.lzma", "ubj/%s.ubj.lzma"}, {"json.lzma", "%s.json.lzma"},
+            {"dat", "%s.dat"}, {"json.sdz", "%s.json.sdz"}, {"png", "%s.png"}, {"fwb", "%s.fwb"}};
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: CorpusBenchmark <corpus dir> <out dir> [--sample N] [--seed S]");
+            System.exit(1);
+        }
+        int sample = 0;
+        long seed = 1L;
+        for (int i = 2; i + 1 < args.length; i += 2) {
+            if ("--sample".equals(args[i])) sample = Integer.parseInt(args[i + 1]);
+            else if ("--seed".equals(args[i])) seed = Long.parseLong(args[i + 1]);
+            else throw new IllegalArgumentException("Unknown option: " + args[i]);
+        }
+        System.setProperty("java.awt.headless", "true");
+        System.setProperty("fontwriter.knownFonts", args[0]);
+        FileHandle corpus = Fixtures.knownFonts();
+
+        List<String> names = new ArrayList<>();
+        for (FileHandle png : corpus.list(".png")) {
+            String name = png.nameWithoutExtension();
+            if (corpus.child(name + ".json").exists() || corpus.child(name + ".json.lzma").exists()) names.add(name);
+        }
+        Collections.sort(names);
+        if (sample > 0 && sample < names.size()) {
+            Collections.shuffle(names, new Random(seed));
+            names = new ArrayList<>(names.subList(0, sample));
+            Collections.sort(names);
+        }
+        System.out.println("Benchmarking " + names.size() + " fonts from " + corpus.path() + "...");
+
+        // Warm up the JIT on a few fonts so the first fonts measured aren't dominated by interpretation.
+        PrintStream out = System.out;
+        System.setOut(Fixtures.SILENT);
+        FileHandle scratch = Fixtures.scratch("corpus");
+        for (String name : names.subList(0, Math.min(3, names.size()))) {
+            runFont(corpus, scratch.child("warmup"), name, null, new JobReport(name, "warmup"));
+        }
+
+        long dictStart = System.nanoTime();
+        List<byte[]> samples = new ArrayList<>(names.size());
+        for (String name : names) samples.add(Fixtures.fontJson(name).getBytes(StandardCharsets.UTF_8));
+        byte[] dictionary = DictionaryCompression.train(samples, DictionaryCompression.MAX_DICTIONARY_SIZE);
+        long dictNanos = System.nanoTime() - dictStart;
+
+        List<JobReport> reports = new ArrayList<>(names.size());
+        Map<String, long[]> formats = new LinkedHashMap<>(); // output bytes, baseline bytes
+        for (String[] f : FORMATS) formats.put(f[0], new long[2]);
+        long inputBytes = 0L;
+        final long start = System.nanoTime();
+        for (String name : names) {
+            FileHandle dir = scratch.child(name);
+            JobReport report = new JobReport(name, name.substring(name.lastIndexOf('-') + 1));
+            inputBytes += runFont(corpus, dir, name, dictionary, report);
+            reports.add(report);
+            long json = dir.child(name + ".json").length(), png = corpus.child(name + ".png").length();
+            for (String[] f : FORMATS) {
+                FileHandle file = dir.child(String.format(f[1], name));
+                if (!file.exists()) continue;
+                long[] t = formats.get(f[0]);
+                t[0] += file.length();
+                t[1] += "png".equals(f[0]) ? png : json;
+            }
+            deleteRecursively(dir.file());
+        }
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        System.setOut(out);
+
+        long peakHeap = 0L;
+        for (JobReport r : reports) {
+            for (JobReport.Stage s : r.stages) peakHeap = Math.max(peakHeap, s.peakHeapBytes);
+        }
+        JsonValue root = new JsonValue(JsonValue.ValueType.object);
+        SimpleDateFormat iso = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.ROOT);
+        iso.setTimeZone(TimeZone.getTimeZone("UTC"));
+        String commit = commit();
+        root.addChild("commit", new JsonValue(commit));
+        root.addChild("date", new JsonValue(iso.format(new Date())));
+        root.addChild("java", new JsonValue(System.getProperty("java.vm.name") + " " + System.getProperty("java.version")));
+        root.addChild("os", new JsonValue(System.getProperty("os.name") + " " + System.getProperty("os.arch")));
+        root.addChild("cpus", new JsonValue(Runtime.getRuntime().availableProcessors()));
+        root.addChild("fonts", new JsonValue(names.size()));
+        root.addChild("sample", new JsonValue(sample));
+        root.addChild("seed", new JsonValue(seed));
+        root.addChild("seconds", new JsonValue(seconds));
+        root.addChild("fontsPerSecond", new JsonValue(names.size() / seconds));
+        root.addChild("inputMB", new JsonValue(inputBytes / 1048576.0));
+        root.addChild("mbPerSecond", new JsonValue(inputBytes / 1048576.0 / seconds));
+        root.addChild("dictionaryTrainingMs", new JsonValue(dictNanos / 1e6));
+        root.addChild("peakHeapBytes", new JsonValue(peakHeap));
+        root.addChild("peakRssBytes", new JsonValue(peakRss()));
+
+        Map<String, long[]> stages = new LinkedHashMap<>(); // wall, cpu
+        for (JobReport r : reports) {
+            for (JobReport.Stage s : r.stages) {
+                long[] t = stages.computeIfAbsent(s.name, k -> new long[2]);
+                t[0] += s.wallNanos;
+                t[1] += Math.max(0L, s.cpuNanos);
+            }
+        }
+        JsonValue stageJson = new JsonValue(JsonValue.ValueType.object);
+        System.out.println();
+        System.out.println(String.format(Locale.ROOT, "%d fonts in %.2f s: %.2f fonts/s, %.2f MB/s of input",
+                names.size(), seconds, names.size() / seconds, inputBytes / 1048576.0 / seconds));
+        System.out.println(String.format(Locale.ROOT, "%-10s %12s %12s", "stage", "total ms", "mean ms"));
+        for (Map.Entry<String, long[]> e : stages.entrySet()) {
+            JsonValue s = new JsonValue(JsonValue.ValueType.object);
+            s.addChild("totalMs", new JsonValue(e.getValue()[0] / 1e6));
+            s.addChild("meanMs", new JsonValue(e.getValue()[0] / 1e6 / names.size()));
+            s.addChild("cpuMs", new JsonValue(e.getValue()[1] / 1e6));
+            stageJson.addChild(e.getKey(), s);
+            System.out.println(String.format(Locale.ROOT, "%-10s %12.1f %12.2f", e.getKey(),
+                    e.getValue()[0] / 1e6, e.getValue()[0] / 1e6 / names.size()));
+        }
+        root.addChild("stages", stageJson);
+
+        JsonValue formatJson = new JsonValue(JsonValue.ValueType.object);
+        System.out.println(String.format(Locale.ROOT, "%-10s %14s %8s", "format", "bytes", "ratio"));
+        for (Map.Entry<String, long[]> e : formats.entrySet()) {
+            long[] t = e.getValue();
+            if (t[1] == 0L) continue;
+            JsonValue f = new JsonValue(JsonValue.ValueType.object);
+            f.addChild("bytes", new JsonValue(t[0]));
+            f.addChild("baselineBytes", new JsonValue(t[1]));
+            f.addChild("ratio", new JsonValue((double) t[0] / t[1]));
+            formatJson.addChild(e.getKey(), f);
+            System.out.println(String.format(Locale.ROOT, "%-10s %14d %8.4f", e.getKey(), t[0], (double) t[0] / t[1]));
+        }
+        root.addChild("formats", formatJson);
+        System.out.println(String.format(Locale.ROOT, "peak heap %.1f MB, peak RSS %.1f MB",
+                peakHeap / 1048576.0, peakRss() / 1048576.0));
+
+        SimpleDateFormat stamp = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.ROOT);
+        FileHandle result = new FileHandle(new File(args[1]).getAbsoluteFile())
+                .child("corpus-" + commit.substring(0, Math.min(10, commit.length())) + "-" + stamp.format(new Date()) + ".json");
+        result.writeString(root.prettyPrint(JsonWriter.OutputType.json, 0), false, "UTF-8");
+        System.out.println("Results written to " + result.path());
+        deleteRecursively(scratch.file());
+    }
+
+    /**
+     * Runs every stage on one font in {@code dir}, recording them in
+     * {@code report}, and returns the input size (descriptor plus atlas).
+     * Skips shared-dictionary compression if {@code dictionary} is null.
+     */
+    private static long runFont(FileHandle corpus, FileHandle dir, String name, byte[] dictionary, JobReport report) {
+        dir.mkdirs();
+        FileHandle json = dir.child(name + ".json");
+        FileHandle png = dir.child(name + ".png");
+        json.writeString(Fixtures.fontJson(name), false, "UTF-8");
+        corpus.child(name + ".png").copyTo(png);
+
+        report.begin("ubj");
+        report.in(json);
+        FontwriterUtils.convertToUBJSON(json);
+        report.begin("lzma");
+        report.in(json);
+        FontwriterUtils.convertToLzma(json);
+        report.begin("lzb");
+        report.in(json);
+        ByteArray ba = LZBCompression.compressToByteArray(json.readString("UTF8"));
+        dir.child(name + ".dat").writeBytes(ba.items, 0, ba.size, false);
+        if (dictionary != null) {
+            report.begin("dict");
+            report.in(json);
+            FontwriterUtils.convertToSharedDictionary(json, dictionary);
+        }
+        report.begin("png");
+        report.in(png);
+        Pixmap pm = new Pixmap(png);
+        try {
+            pm.setColor(-1);
+            pm.fillRectangle(pm.getWidth() - 3, pm.getHeight() - 3, 3, 3);
+            if (name.endsWith("-msdf")) PixmapIO.writePNG(png, pm, 0, false);
+            else new IndexedPngWriter().write(png, pm, -1);
+        } finally {
+            pm.dispose();
+        }
+        report.out(png);
+        report.begin("bundle");
+        report.in(json, png);
+        FontBundleWriter.write(json, png);
+        report.end();
+        return json.length() + corpus.child(name + ".png").length();
+    }
+
+    /** The checked-out commit, read from {@code .git} in the working directory or above. */
+    static String commit() {
+        File dir = new File("").getAbsoluteFile();
+        while (dir != null && !new File(dir, ".git").isDirectory()) dir = dir.getParentFile();
+        if (dir == null) return "unknown";
+        try {
+            File git = new File(dir, ".git");
+            String head = new String(Files.readAllBytes(new File(git, "HEAD").toPath()), StandardCharsets.UTF_8).trim();
+            if (!head.startsWith("ref: ")) return head;
+            String ref = head.substring(5);
+            File loose = new File(git, ref);
+            if (loose.isFile()) return new String(Files.readAllBytes(loose.toPath()), StandardCharsets.UTF_8).trim();
+            for (String line : Files.readAllLines(new File(git, "packed-refs").toPath(), StandardCharsets.UTF_8)) {
+                if (line.endsWith(" " + ref)) return line.substring(0, line.indexOf(' '));
+            }
+        } catch (IOException ignored) {
+            // Fall through.
+        }
+        return "unknown";
+    }
+
+    /** Peak resident set size of this JVM from {@code /proc/self/status}, or -1 off Linux. */
+    private static long peakRss() {
+        try {
+            for (String line : Files.readAllLines(new File("/proc/self/status").toPath(), StandardCharsets.UTF_8)) {
+                if (line.startsWith("VmHWM:")) return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024L;
+            }
+        } catch (IOException | NumberFormatException ignored) {
+            // Not Linux.
+        }
+        return -1L;
+    }
+
+    private static void deleteRecursively(File f) {
+        File[] children = f.listFiles();
+        if (children != null) {
+            for (File c : children) deleteRecursively(c);
+        }
+        f.delete();
+    }
+}
@@ -0,0 +1,139 @@
+package com.github.tommyettinger;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessFiles;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import com.badlogic.gdx.utils.compression.Lzma;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shared setup for the benchmarks: loads libGDX's natives, finds the
+ * {@code docs/knownFonts} corpus, and makes scratch folders that
+ * benchmarks can write into without touching the corpus.
+ * <p>
+ * The corpus folder comes from the {@code fontwriter.knownFonts} system
+ * property, which {@code benchmarks/build.gradle} sets, or else from
+ * {@code ../docs/knownFonts} relative to the working directory.
+ */
+final class Fixtures {
+
+    private Fixtures() {} // utility class
+
+    private static boolean initialized;
+
+    /** Loads natives and installs {@link HeadlessFiles}; safe to call repeatedly. */
+    static synchronized void init() {
+        if (initialized) return;
+        GdxNativesLoader.load();
+        if (Gdx.files == null) Gdx.files = new HeadlessFiles();
+        initialized = true;
+    }
+
+    /** The {@code docs/knownFonts} folder. */
+    static FileHandle knownFonts() {
+        init();
+        String path = System.getProperty("fontwriter.knownFonts", "../docs/knownFonts");
+        FileHandle dir = new FileHandle(new File(path).getAbsoluteFile());
+        if (!dir.isDirectory()) {
+            throw new IllegalStateException("Font corpus not found at " + dir.path()
+                    + "; set -Dfontwriter.knownFonts=<path to docs/knownFonts>.");
+        }
+        return dir;
+    }
+
+    /**
+     * Returns the JSON text of {@code <name>.json} from the corpus,
+     * decompressing {@code <name>.json.lzma} when only that is present
+     * (as for Go Noto Universal).
+     */
+    static String fontJson(String name) {
+        FileHandle dir = knownFonts();
+        FileHandle json = dir.child(name + ".json");
+        if (json.exists()) return json.readString("UTF-8");
+        FileHandle lzma = dir.child(name + ".json.lzma");
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 20);
+            Lzma.decompress(new ByteArrayInputStream(lzma.readBytes()), out);
+            return new String(out.toByteArray(), "UTF-8");
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read " + lzma.path(), e);
+        }
+    }
+
+    /** Scratch folders made so far, deleted with everything in them when the JVM exits. */
+    private static final List<FileHandle> scratchDirs = new ArrayList<>();
+
+    /**
+     * A new empty temporary folder, deleted along with its contents when
+     * the JVM exits. {@link File#deleteOnExit()} can't do this, because
+     * it skips folders that aren't empty.
+     */
+    static FileHandle scratch(String prefix) {
+        File dir;
+        try {
+            dir = Files.createTempDirectory("fontwriter-" + prefix).toFile();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        FileHandle handle = new FileHandle(dir);
+        synchronized (scratchDirs) {
+            if (scratchDirs.isEmpty()) {
+                Runtime.getRuntime().addShutdownHook(new Thread(Fixtures::deleteScratch, "fontwriter-scratch-cleanup"));
+            }
+            scratchDirs.add(handle);
+        }
+        return handle;
+    }
+
+    private static void deleteScratch() {
+        synchronized (scratchDirs) {
+            for (FileHandle dir : scratchDirs) {
+                dir.deleteDirectory();
+            }
+            scratchDirs.clear();
+        }
+    }
+
+    /**
+     * A TrueType font file for benchmarks that need one. The corpus holds
+     * only generated fonts, so this is {@code -Dfontwriter.ttf} if set,
+     * or else the first of a few fonts that ship with common systems.
+     */
+    static File ttf() {
+        String[] candidates = {
+                System.getProperty("fontwriter.ttf", ""),
+                "/usr/share/fonts/truetype/dejavu/DejaVuSans.ttf",
+                "/usr/share/fonts/dejavu/DejaVuSans.ttf",
+                "/usr/share/fonts/TTF/DejaVuSans.ttf",
+                "/Library/Fonts/Arial Unicode.ttf",
+                "/System/Library/Fonts/Supplemental/Arial.ttf",
+                "C:/Windows/Fonts/arial.ttf",
+        };
+        for (String c : candidates) {
+            File f = new File(c);
+            if (!c.isEmpty() && f.isFile()) return f;
+        }
+        throw new IllegalStateException("No TrueType font found; set -Dfontwriter.ttf=<path to a .ttf>.");
+    }
+
+    /** Swallows console output from code under test, which would otherwise be timed along with it. */
+    static final PrintStream SILENT = new PrintStream(new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    });
+}
@@ -0,0 +1,169 @@
+package com.github.tommyettinger;
+
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+import com.badlogic.gdx.utils.JsonWriter;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The cost of {@link Main#mainProcess()} around its tools, measured by
+ * running whole single-font jobs with {@code --fake-tools} (see
+ * {@link FakeToolBackend}), so that no msdf-atlas-gen or oxipng is
+ * needed and tool time is known exactly. Each scenario exercises one
+ * part of the orchestration:
+ * <ul>
+ *   <li>{@code fits}: the first size fits;</li>
+ *   <li>{@code shrink}: sizes above {@code max-size} don't fit, so the
+ *       size is shrunk once per run until one does;</li>
+ *   <li>{@code retry}: the first run hangs until its timeout and is
+ *       retried;</li>
+ *   <li>{@code latency}: every tool run takes a fixed time, so the
+ *       overhead is what the stage takes beyond it.</li>
+ * </ul>
+ * Each scenario also knows how many msdf-atlas-gen runs it must take.
+ * A different count means the orchestration changed behavior, and the
+ * benchmark exits with code 1 after printing its results, so it doubles
+ * as a regression test.
+ * <p>
+ * Jobs run in the working directory, as fontwriter always does, and
+ * leave their {@code fonts/}, {@code previews/} and {@code reports/}
+ * folders there. The TrueType font comes from {@link Fixtures#ttf()}.
+ * Results are printed and saved as
+ * {@code <out>/orchestration-<commit>-<time>.json}.
+ * <p>
+ * Usage: {@code OrchestrationBenchmark <out dir> [--repeat N]},
+ * or {@code gradlew benchmarks:orchestration}.
+ */
+public final class OrchestrationBenchmark {
+
+    private OrchestrationBenchmark() {} // utility class
+
+    /** Name, {@code --fake-tools} SPEC, first size, expected atlas runs, then any extra flags. */
+    private static final String[][] SCENARIOS = {
+            {"fits", "default", "16", "1"},
+            {"shrink", "max-size=12", "24", "13"},
+            {"retry", "hangs=1", "16", "1", "--atlas-timeout", "0.2", "--tool-retries", "1"},
+            {"latency", "atlas-ms=100,oxipng-ms=20", "16", "1"},
+    };
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: OrchestrationBenchmark <out dir> [--repeat N]");
+            System.exit(1);
+        }
+        int repeat = 5;
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            if ("--repeat".equals(args[i])) repeat = Integer.parseInt(args[i + 1]);
+            else throw new IllegalArgumentException("Unknown option: " + args[i]);
+        }
+        System.setProperty("java.awt.headless", "true");
+        Fixtures.init();
+        FileHandle ttf = new FileHandle(new File("Fake.ttf").getAbsoluteFile());
+        new FileHandle(Fixtures.ttf()).copyTo(ttf);
+
+        PrintStream out = System.out, err = System.err;
+        JsonValue root = new JsonValue(JsonValue.ValueType.object);
+        String commit = CorpusBenchmark.commit();
+        root.addChild("commit", new JsonValue(commit));
+        root.addChild("repeat", new JsonValue(repeat));
+        JsonValue results = new JsonValue(JsonValue.ValueType.object);
+        boolean regressed = false;
+        out.println(String.format(Locale.ROOT, "%-10s %10s %12s %14s  %s", "scenario", "atlas runs", "job ms",
+                "atlas-gen ms", "mean ms per stage"));
+        for (String[] scenario : SCENARIOS) {
+            List<String> cli = new ArrayList<>(Arrays.asList(ttf.name(), "standard", scenario[2],
+                    "--charset", "latin", "--image-size", "512x512", "--fake-tools", scenario[1]));
+            cli.addAll(Arrays.asList(scenario).subList(4, scenario.length));
+            Map<String, Double> stages = new LinkedHashMap<>();
+            double jobMs = 0.0;
+            int runs = -1;
+            System.setOut(Fixtures.SILENT);
+            System.setErr(Fixtures.SILENT);
+            try {
+                runJob(cli); // unmeasured, to warm up the JIT
+                for (int r = 0; r < repeat; r++) {
+                    JsonValue report = runJob(cli);
+                    jobMs += report.getDouble("wallMs");
+                    for (JsonValue s = report.get("stages").child; s != null; s = s.next) {
+                        stages.merge(s.getString("stage"), s.getDouble("wallMs"), Double::sum);
+                        if ("atlas-gen".equals(s.getString("stage"))) runs = s.getInt("runs");
+                    }
+                }
+            } finally {
+                System.setOut(out);
+                System.setErr(err);
+            }
+
+            int expected = Integer.parseInt(scenario[3]);
+            JsonValue result = new JsonValue(JsonValue.ValueType.object);
+            result.addChild("fakeTools", new JsonValue(scenario[1]));
+            result.addChild("atlasRuns", new JsonValue(runs));
+            result.addChild("expectedAtlasRuns", new JsonValue(expected));
+            result.addChild("jobMs", new JsonValue(jobMs / repeat));
+            StringBuilder line = new StringBuilder();
+            JsonValue stageJson = new JsonValue(JsonValue.ValueType.object);
+            for (Map.Entry<String, Double> e : stages.entrySet()) {
+                stageJson.addChild(e.getKey(), new JsonValue(e.getValue() / repeat));
+                line.append(String.format(Locale.ROOT, " %s %.1f", e.getKey(), e.getValue() / repeat));
+            }
+            result.addChild("stagesMs", stageJson);
+            results.addChild(scenario[0], result);
+            out.println(String.format(Locale.ROOT, "%-10s %10d %12.1f %14.1f %s%s", scenario[0], runs, jobMs / repeat,
+                    stages.getOrDefault("atlas-gen", 0.0) / repeat, line,
+                    runs == expected ? "" : "\n  REGRESSION: expected " + expected + " atlas runs"));
+            regressed |= runs != expected;
+        }
+        root.addChild("scenarios", results);
+
+        SimpleDateFormat stamp = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.ROOT);
+        FileHandle result = new FileHandle(new File(args[0]).getAbsoluteFile())
+                .child("orchestration-" + commit.substring(0, Math.min(10, commit.length())) + "-"
+                        + stamp.format(new Date()) + ".json");
+        result.writeString(root.prettyPrint(JsonWriter.OutputType.json, 0), false, "UTF-8");
+        out.println("Results written to " + result.path());
+        if (regressed) System.exit(1);
+    }
+
+    /**
+     * Runs one fontwriter job through the headless backend, exactly as
+     * {@code HeadlessLauncher} would, and returns its job report.
+     *
+     * @throws IllegalStateException if the job ended without writing a report
+     */
+    private static JsonValue runJob(List<String> cli) throws InterruptedException {
+        FileHandle report = new FileHandle(new File("reports/Fake-standard.json").getAbsoluteFile());
+        report.delete();
+        HeadlessApplicationConfiguration configuration = new HeadlessApplicationConfiguration();
+        configuration.updatesPerSecond = -1;
+        new Job(new Main(cli.toArray(new String[0])), configuration).await();
+        if (!report.exists()) {
+            throw new IllegalStateException("The job for " + String.join(" ", cli) + " failed; run it from the "
+                    + "command line to see why.");
+        }
+        return new JsonReader().parse(report);
+    }
+
+    /** A headless application that can be waited on; {@link Main} exits it when the job is done. */
+    private static final class Job extends HeadlessApplication {
+        Job(Main main, HeadlessApplicationConfiguration configuration) {
+            super(main, configuration);
+        }
+
+        void await() throws InterruptedException {
+            mainLoopThread.join();
+        }
+    }
+}
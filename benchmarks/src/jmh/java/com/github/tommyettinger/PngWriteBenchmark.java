@@ -0,0 +1,66 @@
+package com.github.tommyettinger;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link IndexedPngWriter#write} at several atlas sizes. The source is
+ * the League Gothic SDF atlas from the corpus, tiled or cropped to each
+ * size, so the pixel statistics (and so the deflate cost) match a real
+ * atlas. Output goes to a scratch folder.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PngWriteBenchmark {
+
+    @Param({"512", "1024", "2048", "4096"})
+    public int size;
+
+    private final IndexedPngWriter writer = new IndexedPngWriter();
+    private Pixmap atlas;
+    private FileHandle out;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Pixmap source = new Pixmap(Fixtures.knownFonts().child("League-Gothic-sdf.png"));
+        atlas = new Pixmap(size, size, Pixmap.Format.RGBA8888);
+        atlas.setBlending(Pixmap.Blending.None);
+        for (int y = 0; y < size; y += source.getHeight()) {
+            for (int x = 0; x < size; x += source.getWidth()) {
+                atlas.drawPixmap(source, x, y);
+            }
+        }
+        source.dispose();
+        out = Fixtures.scratch("png").child("atlas.png");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        atlas.dispose();
+    }
+
+    @Benchmark
+    public long write() {
+        writer.write(out, atlas, -1);
+        return out.length();
+    }
+}
@@ -0,0 +1,36 @@
+package com.github.tommyettinger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link FontwriterUtils#stringToColor} for each accepted form: a plain
+ * name, a descriptive phrase, and the hex forms. Hex strings are tried
+ * against the color names first, so their cost includes a failed lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringToColorBenchmark {
+
+    @Param({"black", "darker purple blue", "#F3A", "#FF8800", "FF8800CC"})
+    public String color;
+
+    @Benchmark
+    public int parse() {
+        return FontwriterUtils.stringToColor(color);
+    }
+}
@@ -1,97 +1,649 @@
 package com.github.tommyettinger;
 
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.Architecture;
+import com.badlogic.gdx.utils.Os;
 import com.badlogic.gdx.utils.SharedLibraryLoader;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 /**
  * Helpers for launching the bundled native binaries (msdf-atlas-gen
  * and oxipng).
  * <p>
  * Each call verifies that the binary exists and is executable, then
- * runs it with {@link ProcessBuilder#inheritIO() inheritIO} and the
- * given working directory. All common failure modes (missing binary,
- * non-executable binary, {@link IOException}, {@link InterruptedException})
- * print a user-facing message via {@link CliMessages} and terminate
- * the JVM with exit code 1 — callers never need to handle those cases.
+ * runs it with the given working directory. The child's stdout and
+ * stderr are read on two background threads, which echo every line
+ * to this process's own streams as it arrives and keep the last
+ * {@value #CAPTURE_LIMIT} characters of each. Failures to start or
+ * wait for the binary (missing binary, non-executable binary,
+ * {@link IOException}, {@link InterruptedException}) throw a
+ * {@link FontWriterException} that carries the user-facing message
+ * from {@link CliMessages}; {@link Main} prints it and exits.
  * <p>
- * Two flavors are exposed:
+ * Three flavors are exposed:
  * <ul>
- *   <li>{@link #run(String, String, List, File)} returns the process
- *       exit code so the caller can react to it (used by the
- *       msdf-atlas-gen retry loop, which shrinks the font size on
- *       non-zero exit).</li>
- *   <li>{@link #runOrExit(String, String, List, File)} additionally
- *       terminates the JVM on any non-zero exit code (used by the
- *       oxipng sites, where a failed run is unrecoverable).</li>
+ *   <li>{@link #exec(String, String, List, File)} returns a
+ *       {@link Result} with the exit code, captured output, a
+ *       {@link Failure} classification and resource usage. The
+ *       msdf-atlas-gen retry loop uses it to shrink the font size only
+ *       when glyphs didn't fit, and to stop at once on anything fatal.</li>
+ *   <li>{@link #run(String, String, List, File)} returns just the exit
+ *       code.</li>
+ *   <li>{@link #runOrThrow(String, String, List, File)} additionally
+ *       throws on any failure (used by the oxipng sites, where a failed
+ *       run is unrecoverable).</li>
  * </ul>
+ * Each flavor also takes a {@link Settings}, so concurrent jobs can
+ * use different timeouts; without one, the settings last given to
+ * {@link #configure} are used.
+ * <p>
+ * Every run is bounded by a per-tool timeout;
+ * a run that exceeds it has its whole process tree killed. Timeouts and
+ * failures to start that the OS reports as temporary are retried a
+ * configurable number of times, with a doubling delay between attempts.
+ * Each {@link Settings} carries a {@link Cancellation} for one job:
+ * cancelling it kills only that job's running trees, and makes its later
+ * calls return {@link Failure#CANCELLED} without starting anything.
+ * {@link #cancelAll()} does the same for every job, and runs only when
+ * the JVM shuts down, so Ctrl+C never leaves a stray msdf-atlas-gen or
+ * oxipng behind.
+ * <p>
+ * Wall time is always measured. CPU time comes from
+ * {@code ProcessHandle.Info} on Java 9 and newer (looked up by
+ * reflection, since this project targets Java 8), and peak RSS from
+ * {@code VmHWM} in {@code /proc/<pid>/status} on Linux. Both are
+ * sampled while the child runs, so a child that exits within the first
+ * sample interval may report them as unknown ({@code -1}).
+ * <p>
+ * The process launching itself sits behind a {@link ToolBackend}, so
+ * that {@code --fake-tools} can swap in a {@link FakeToolBackend};
+ * timeouts, retries, cancellation and failure handling work the same
+ * with either.
  */
 final class BinaryExec {
 
     private BinaryExec() {} // utility class
 
+    /** Characters of stdout and of stderr kept for classification. */
+    static final int CAPTURE_LIMIT = 16384;
+    private static final long SAMPLE_MILLIS = 20L;
+    /** How long a killed process gets to exit before it is killed forcibly. */
+    private static final long KILL_GRACE_MILLIS = 2000L;
+    private static final long RETRY_DELAY_MILLIS = 500L;
+
+    /** Set by {@link #cancelAll()} when the JVM shuts down; never cleared. */
+    private static volatile boolean shuttingDown = false;
+    private static final Set<Process> LIVE = ConcurrentHashMap.newKeySet();
+
+    /** Launches the bundled binaries as child processes. */
+    private static final ToolBackend PROCESSES = new ToolBackend() {
+        @Override
+        public void verify(String binaryPath, String binaryName) {
+            BinaryExec.verify(binaryPath, binaryName);
+        }
+
+        @Override
+        public Result runOnce(String binaryName, List<String> command, File workingDir, long timeoutMillis,
+                              Cancellation cancellation) throws IOException, InterruptedException {
+            return execOnce(binaryName, command, workingDir, timeoutMillis, cancellation);
+        }
+    };
+    private static volatile Settings defaults = new Settings(new FontwriterConfig());
+
+    /** Timeouts, retries, backend and cancellation for the tool runs of one job. Immutable. */
+    static final class Settings {
+        /** Timeouts in milliseconds; 0 means none. */
+        final long atlasGenTimeoutMillis, oxipngTimeoutMillis;
+        final int retries;
+        final ToolBackend backend;
+        final Cancellation cancellation;
+
+        /** Settings from {@code config}, with a cancellation that only shutdown triggers. */
+        Settings(FontwriterConfig config) {
+            this(config, new Cancellation());
+        }
+
+        Settings(FontwriterConfig config, Cancellation cancellation) {
+            atlasGenTimeoutMillis = Math.round(config.atlasGenTimeoutSeconds * 1000.0);
+            oxipngTimeoutMillis = Math.round(config.oxipngTimeoutSeconds * 1000.0);
+            retries = Math.max(0, config.toolRetries);
+            backend = config.fakeTools != null ? FakeToolBackend.parse(config.fakeTools) : PROCESSES;
+            this.cancellation = cancellation;
+        }
+
+        long timeoutMillis(String binaryName) {
+            return "msdf-atlas-gen".equals(binaryName) ? atlasGenTimeoutMillis
+                    : "oxipng".equals(binaryName) ? oxipngTimeoutMillis : 0L;
+        }
+    }
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(BinaryExec::cancelAll, "binary-exec-cancel"));
+    }
+
+    /**
+     * Sets the timeouts, retry count and backend used by calls that
+     * don't pass their own {@link Settings}. Called once per run, before
+     * any binary is launched.
+     */
+    static void configure(FontwriterConfig config) {
+        defaults = new Settings(config);
+    }
+
+    /** The {@code distbin/} subfolder with this platform's binaries, ending in a slash. */
+    static String archPath() {
+        switch (SharedLibraryLoader.os) {
+            case Windows:
+                return "distbin/win-x64/";
+            case MacOsX:
+                return SharedLibraryLoader.architecture == Architecture.ARM ? "distbin/mac-arm64/" : "distbin/mac-x64/";
+            default:
+                return "distbin/linux-x64/";
+        }
+    }
+
+    /** The file name of msdf-atlas-gen on this platform. */
+    static String atlasGenBinary() {
+        return SharedLibraryLoader.os == Os.Windows ? "msdf-atlas-gen.exe" : "msdf-atlas-gen";
+    }
+
+    /** The file name of oxipng on this platform. */
+    static String oxipngBinary() {
+        return SharedLibraryLoader.os == Os.Windows ? "oxipng.exe" : "oxipng";
+    }
+
     /**
-     * Verifies the binary, runs it, and returns its exit code. Exits
-     * the JVM with code 1 if the binary is missing, not executable,
-     * throws an {@link IOException}, or the current thread is
-     * interrupted while waiting.
+     * Cancels the tool runs of one job: kills the process trees it has
+     * running, and makes its later runs return {@link Failure#CANCELLED}
+     * without starting. Other jobs are not affected. Safe to use from any
+     * thread; a cancelled handle stays cancelled.
+     */
+    static final class Cancellation {
+        private volatile boolean cancelled = false;
+        private final Set<Process> live = ConcurrentHashMap.newKeySet();
+
+        /** Kills this job's running trees and stops it starting more. */
+        void cancel() {
+            cancelled = true;
+            for (Process p : live) {
+                killTree(p);
+            }
+        }
+
+        /** Whether this job was cancelled, or the JVM is shutting down; backends stop their runs when so. */
+        boolean isCancelled() {
+            return cancelled || shuttingDown;
+        }
+
+        /**
+         * Throws if {@link #isCancelled()}; called between the steps of a
+         * job, so one cancelled outside a tool run stops at the next step.
+         *
+         * @throws FontWriterException.Cancelled if cancelled
+         */
+        void check(String what) {
+            if (isCancelled()) {
+                throw new FontWriterException.Cancelled(what + " was cancelled",
+                        () -> System.err.println("Error: " + what + " was cancelled."), null);
+            }
+        }
+    }
+
+    /**
+     * Kills the process tree of every running binary, and makes every
+     * later call return {@link Failure#CANCELLED} without starting one.
+     * Only for JVM shutdown; to stop one job, use its {@link Cancellation}.
+     */
+    private static void cancelAll() {
+        shuttingDown = true;
+        for (Process p : LIVE) {
+            killTree(p);
+        }
+    }
+
+    /** Why a process failed, as far as its output tells. */
+    enum Failure {
+        /** Exit code 0. */
+        NONE,
+        /** msdf-atlas-gen could not pack every glyph at this size; a smaller size may work. */
+        FIT,
+        /** Retrying cannot help: bad arguments, an unreadable font, or a binary that cannot load. */
+        FATAL,
+        /** Non-zero exit with no recognized message, such as a crash. */
+        UNKNOWN,
+        /** Killed after running past its timeout, on every attempt. */
+        TIMEOUT,
+        /** Killed or never started because its job was cancelled, or the JVM is shutting down. */
+        CANCELLED
+    }
+
+    /** Everything known about one finished child process. */
+    static final class Result {
+        final int exitCode;
+        /** The last {@value #CAPTURE_LIMIT} characters the child wrote to stdout. */
+        final String stdout;
+        /** The last {@value #CAPTURE_LIMIT} characters the child wrote to stderr. */
+        final String stderr;
+        final Failure failure;
+        final long wallNanos;
+        /** Total CPU time of the child, or -1 if unknown. */
+        final long cpuNanos;
+        /** Peak resident set size of the child in bytes, or -1 if unknown. */
+        final long peakRssBytes;
+
+        Result(int exitCode, String stdout, String stderr, Failure failure,
+               long wallNanos, long cpuNanos, long peakRssBytes) {
+            this.exitCode = exitCode;
+            this.stdout = stdout;
+            this.stderr = stderr;
+            this.failure = failure != null ? failure : classify(exitCode, stdout + "\n" + stderr);
+            this.wallNanos = wallNanos;
+            this.cpuNanos = cpuNanos;
+            this.peakRssBytes = peakRssBytes;
+        }
+
+        /** The first line of captured output that explains the failure, or an empty string. */
+        String reason() {
+            for (String line : (stderr + "\n" + stdout).split("\r?\n")) {
+                String l = line.trim();
+                if (l.startsWith("Error") || l.contains("error") || l.startsWith("Failed") || l.startsWith("Invalid")
+                        || l.startsWith("Unknown") || l.startsWith("No ") || l.contains("GLIBC")) {
+                    return l;
+                }
+            }
+            return "";
+        }
+
+        /** Wall time, CPU time and peak RSS, leaving out whatever is unknown. */
+        String usage() {
+            StringBuilder sb = new StringBuilder(String.format(Locale.ROOT, "%.2f s wall", wallNanos / 1e9));
+            if (cpuNanos >= 0) sb.append(String.format(Locale.ROOT, ", %.2f s CPU", cpuNanos / 1e9));
+            if (peakRssBytes >= 0) sb.append(String.format(Locale.ROOT, ", %.1f MB peak RSS", peakRssBytes / 1048576.0));
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Sorts a finished process into a {@link Failure} by its exit code
+     * and output. The messages are msdf-atlas-gen's own, plus the ones
+     * the OS loader prints when a binary cannot start.
+     */
+    static Failure classify(int exitCode, String output) {
+        if (exitCode == 0) return Failure.NONE;
+        if (output.contains("Could not fit") || output.contains("Failed to pack glyphs")) return Failure.FIT;
+        if (exitCode == 126 || exitCode == 127
+                || output.contains("Failed to load glyphs")
+                || output.contains("No glyphs loaded")
+                || output.contains("No font specified")
+                || output.contains("Failed to load character set")
+                || output.contains("Failed to load font")
+                || output.contains("Invalid ")
+                || output.contains("Unknown ")
+                || output.contains("error while loading shared libraries")
+                || output.contains("GLIBC_")
+                || output.contains("Exec format error")
+                || output.contains("cannot execute binary file")
+                || output.contains("Library not loaded")
+                || output.contains("is not a valid Win32 application")) {
+            return Failure.FATAL;
+        }
+        return Failure.UNKNOWN;
+    }
+
+    /**
+     * Verifies the binary, runs it while capturing its output, and
+     * returns everything known about the run. Timed-out runs and
+     * temporary start failures are retried as {@code settings} say.
      *
-     * @param binaryPath relative path to the binary (e.g.
+     * @param settings   timeouts, retries and backend to use
+     * @param binaryPath path to the binary, relative to the working
+     *                   directory of this JVM unless absolute (e.g.
      *                   {@code "distbin/mac-arm64/msdf-atlas-gen"})
      * @param binaryName human-readable name for error messages
      * @param command    full command line; {@code command.get(0)} is
      *                   typically {@code binaryPath}
      * @param workingDir working directory for the child process
-     * @return the process exit code
+     * @return the finished process's result
+     * @throws FontWriterException.ToolUnavailable if the binary is
+     *         missing, not executable, or can't be started (after every
+     *         retry, if the reason looked temporary)
+     * @throws FontWriterException.Cancelled if the current thread is
+     *         interrupted while waiting
      */
-    public static int run(String binaryPath, String binaryName, List<String> command, File workingDir) {
-        verify(binaryPath, binaryName);
+    static Result exec(Settings settings, String binaryPath, String binaryName, List<String> command, File workingDir) {
+        final ToolBackend backend = settings.backend;
+        final int retries = settings.retries;
+        backend.verify(binaryPath, binaryName);
+        final long timeout = settings.timeoutMillis(binaryName);
+        try {
+            for (int attempt = 0; ; attempt++) {
+                if (attempt > 0) {
+                    Thread.sleep(RETRY_DELAY_MILLIS << (attempt - 1));
+                }
+                Result result;
+                if (settings.cancellation.isCancelled()) {
+                    return new Result(-1, "", "", Failure.CANCELLED, 0L, -1L, -1L);
+                }
+                final Object event = FlightEvents.begin(FlightEvents.TOOL_RUN);
+                try {
+                    result = backend.runOnce(binaryName, command, workingDir, timeout, settings.cancellation);
+                } catch (IOException e) {
+                    if (attempt < retries && isTemporary(e)) {
+                        CliMessages.printBinaryRetrying(binaryName, e.getMessage(), attempt + 1, retries);
+                        continue;
+                    }
+                    throw new FontWriterException.ToolUnavailable(binaryName,
+                            "Failed to run " + binaryName + ": " + e.getMessage(),
+                            () -> CliMessages.printBinaryRunFailed(binaryName, e.getMessage(), SharedLibraryLoader.os), e);
+                }
+                FlightEvents.commit(event, binaryName, String.join(" ", command), result.exitCode,
+                        result.failure.name(), result.cpuNanos, result.peakRssBytes);
+                if (result.failure == Failure.TIMEOUT && attempt < retries) {
+                    CliMessages.printBinaryRetrying(binaryName, "timed out after " + timeout / 1000.0 + " s",
+                            attempt + 1, retries);
+                    continue;
+                }
+                return result;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FontWriterException.Cancelled(binaryName + " was interrupted",
+                    () -> CliMessages.printBinaryInterrupted(binaryName, e.getMessage()), e);
+        }
+    }
+
+    /** {@link #exec(Settings, String, String, List, File)} with the settings from {@link #configure}. */
+    public static Result exec(String binaryPath, String binaryName, List<String> command, File workingDir) {
+        return exec(defaults, binaryPath, binaryName, command, workingDir);
+    }
+
+    private static Result execOnce(String binaryName, List<String> command, File workingDir, long timeout,
+                                   Cancellation cancellation) throws IOException, InterruptedException {
         ProcessBuilder builder = new ProcessBuilder(command);
         builder.directory(workingDir);
-        builder.inheritIO();
+        final long start = System.nanoTime();
+        Process process = builder.start();
+        LIVE.add(process);
+        cancellation.live.add(process);
         try {
-            return builder.start().waitFor();
-        } catch (IOException e) {
-            CliMessages.printBinaryRunFailed(binaryName, e.getMessage(), SharedLibraryLoader.os);
-            System.exit(1);
+            process.getOutputStream().close();
+            Capture out = new Capture(process.getInputStream(), System.out, binaryName + "-stdout");
+            Capture err = new Capture(process.getErrorStream(), System.err, binaryName + "-stderr");
+            Object handle = toHandle(process);
+            long pid = pid(handle);
+            long cpu = -1L, rss = -1L;
+            Failure killed = null;
+            while (!process.waitFor(SAMPLE_MILLIS, TimeUnit.MILLISECONDS)) {
+                cpu = Math.max(cpu, cpuNanos(handle));
+                rss = Math.max(rss, peakRss(pid));
+                if (killed == null && cancellation.isCancelled()) {
+                    killed = Failure.CANCELLED;
+                    killTree(process);
+                } else if (killed == null && timeout > 0 && System.nanoTime() - start > timeout * 1000000L) {
+                    killed = Failure.TIMEOUT;
+                    killTree(process);
+                }
+            }
+            final long wall = System.nanoTime() - start;
+            cpu = Math.max(cpu, cpuNanos(handle));
+            out.join();
+            err.join();
+            if (killed == null && cancellation.isCancelled()) killed = Failure.CANCELLED; // killed from another thread
+            return new Result(process.exitValue(), out.text(), err.text(), killed, wall, cpu, rss);
         } catch (InterruptedException e) {
-            CliMessages.printBinaryInterrupted(binaryName, e.getMessage());
-            System.exit(1);
+            killTree(process); // nothing else would stop it once this thread gives up on it
+            throw e;
+        } finally {
+            LIVE.remove(process);
+            cancellation.live.remove(process);
         }
-        return -1; // unreachable; System.exit above
     }
 
     /**
-     * Like {@link #run}, but additionally terminates the JVM with the
-     * process exit code if it is non-zero. Use this for steps whose
-     * failure is unrecoverable.
+     * Whether a failure to start looks like it could pass: the binary
+     * was still open for writing (ETXTBSY), or the system was briefly
+     * out of processes or memory (EAGAIN, ENOMEM).
+     */
+    private static boolean isTemporary(IOException e) {
+        String m = String.valueOf(e.getMessage());
+        return m.contains("error=26") || m.contains("error=11") || m.contains("error=12")
+                || m.contains("Text file busy") || m.contains("Resource temporarily unavailable");
+    }
+
+    /**
+     * Like {@link #exec}, but returns only the exit code.
+     */
+    public static int run(String binaryPath, String binaryName, List<String> command, File workingDir) {
+        return exec(binaryPath, binaryName, command, workingDir).exitCode;
+    }
+
+    /**
+     * Like {@link #exec(Settings, String, String, List, File)}, but also
+     * throws if the run failed. Use this for steps whose failure is
+     * unrecoverable. Returns the (successful) result.
+     */
+    static Result runOrThrow(Settings settings, String binaryPath, String binaryName, List<String> command,
+                             File workingDir) {
+        Result result = exec(settings, binaryPath, binaryName, command, workingDir);
+        throwOnFailure(settings, binaryName, result);
+        return result;
+    }
+
+    /** {@link #runOrThrow(Settings, String, String, List, File)} with the settings from {@link #configure}. */
+    public static Result runOrThrow(String binaryPath, String binaryName, List<String> command, File workingDir) {
+        return runOrThrow(defaults, binaryPath, binaryName, command, workingDir);
+    }
+
+    /**
+     * Throws the {@link FontWriterException} suited to {@code result}'s
+     * failure, unless it succeeded.
      */
-    public static void runOrExit(String binaryPath, String binaryName, List<String> command, File workingDir) {
-        int exitCode = run(binaryPath, binaryName, command, workingDir);
-        if (exitCode != 0) {
-            CliMessages.printBinaryExitFailure(binaryName, exitCode);
-            System.exit(exitCode);
+    static void throwOnFailure(Settings settings, String binaryName, Result result) {
+        switch (result.failure) {
+            case NONE:
+                return;
+            case TIMEOUT: {
+                final double seconds = settings.timeoutMillis(binaryName) / 1000.0;
+                throw new FontWriterException.ToolFailed(binaryName, result,
+                        binaryName + " did not finish within " + seconds + " seconds",
+                        () -> CliMessages.printBinaryTimedOut(binaryName, seconds, settings.retries));
+            }
+            case CANCELLED:
+                throw new FontWriterException.Cancelled(binaryName + " was cancelled",
+                        () -> CliMessages.printBinaryCancelled(binaryName), null);
+            default:
+                throw new FontWriterException.ToolFailed(binaryName, result,
+                        binaryName + " failed with exit code " + result.exitCode,
+                        () -> CliMessages.printBinaryExitFailure(binaryName, result.exitCode));
         }
     }
 
     /**
      * Checks that the binary at {@code binaryPath} exists and is
-     * executable. Prints a user-facing diagnostic and exits with code
-     * 1 otherwise.
+     * executable.
+     *
+     * @throws FontWriterException.ToolUnavailable with a user-facing diagnostic otherwise
      */
     private static void verify(String binaryPath, String binaryName) {
-        File binaryFile = new File(Gdx.files.getLocalStoragePath(), binaryPath);
+        File path = new File(binaryPath);
+        final File binaryFile = path.isAbsolute() ? path : new File(Gdx.files.getLocalStoragePath(), binaryPath);
         if (!binaryFile.exists()) {
-            CliMessages.printBinaryNotFound(binaryName, binaryFile.getAbsolutePath());
-            System.exit(1);
+            throw new FontWriterException.ToolUnavailable(binaryName,
+                    binaryName + " not found at " + binaryFile.getAbsolutePath(),
+                    () -> CliMessages.printBinaryNotFound(binaryName, binaryFile.getAbsolutePath()), null);
         }
         if (!binaryFile.canExecute()) {
-            CliMessages.printBinaryNotExecutable(binaryName, binaryPath,
-                    binaryFile.getAbsolutePath(), SharedLibraryLoader.os);
-            System.exit(1);
+            throw new FontWriterException.ToolUnavailable(binaryName,
+                    binaryName + " is not executable: " + binaryFile.getAbsolutePath(),
+                    () -> CliMessages.printBinaryNotExecutable(binaryName, binaryPath,
+                            binaryFile.getAbsolutePath(), SharedLibraryLoader.os), null);
+        }
+    }
+
+    /**
+     * Reads one of the child's streams on its own thread, echoing each
+     * line and keeping the tail, so a chatty child can never block on a
+     * full pipe.
+     */
+    private static final class Capture extends Thread {
+        private final InputStream in;
+        private final PrintStream echo;
+        private final StringBuilder tail = new StringBuilder();
+
+        Capture(InputStream in, PrintStream echo, String name) {
+            super(name);
+            this.in = in;
+            this.echo = echo;
+            setDaemon(true);
+            start();
+        }
+
+        @Override
+        public void run() {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                for (String line; (line = reader.readLine()) != null; ) {
+                    echo.println(line);
+                    synchronized (tail) {
+                        tail.append(line).append('\n');
+                        if (tail.length() > CAPTURE_LIMIT * 2) {
+                            tail.delete(0, tail.length() - CAPTURE_LIMIT);
+                        }
+                    }
+                }
+            } catch (IOException ignored) {
+                // The stream closes when the child exits.
+            }
+        }
+
+        String text() {
+            synchronized (tail) {
+                return tail.length() > CAPTURE_LIMIT ? tail.substring(tail.length() - CAPTURE_LIMIT) : tail.toString();
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------
+    //  Process trees. Descendants are found through ProcessHandle (see
+    //  below); on Java 8 only the direct child can be reached, which is
+    //  enough for binaries that don't fork, as these don't.
+    // ---------------------------------------------------------------
+
+    /** Asks the process and its descendants to stop, then forces any that don't. */
+    private static void killTree(Process process) {
+        Object handle = toHandle(process);
+        forEachDescendant(handle, "destroy");
+        process.destroy();
+        try {
+            if (process.waitFor(KILL_GRACE_MILLIS, TimeUnit.MILLISECONDS)) {
+                forEachDescendant(handle, "destroyForcibly");
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        forEachDescendant(handle, "destroyForcibly");
+        process.destroyForcibly();
+    }
+
+    private static void forEachDescendant(Object handle, String method) {
+        if (handle == null || DESCENDANTS == null) return;
+        try {
+            Method m = "destroy".equals(method) ? DESTROY : DESTROY_FORCIBLY;
+            for (Object h : ((Stream<?>) DESCENDANTS.invoke(handle)).toArray()) {
+                m.invoke(h);
+            }
+        } catch (ReflectiveOperationException | RuntimeException ignored) {
+            // Best effort: descendants may exit while being listed.
+        }
+    }
+
+    // ---------------------------------------------------------------
+    //  Resource usage. ProcessHandle only exists on Java 9+, so it is
+    //  reached by reflection; every lookup degrades to "unknown".
+    // ---------------------------------------------------------------
+
+    private static final Method TO_HANDLE, PID, INFO, TOTAL_CPU, DESCENDANTS, DESTROY, DESTROY_FORCIBLY;
+
+    static {
+        Method toHandle = null, pid = null, info = null, totalCpu = null, descendants = null,
+                destroy = null, destroyForcibly = null;
+        try {
+            Class<?> handleClass = Class.forName("java.lang.ProcessHandle");
+            toHandle = Process.class.getMethod("toHandle");
+            pid = handleClass.getMethod("pid");
+            info = handleClass.getMethod("info");
+            descendants = handleClass.getMethod("descendants");
+            destroy = handleClass.getMethod("destroy");
+            destroyForcibly = handleClass.getMethod("destroyForcibly");
+            totalCpu = Class.forName("java.lang.ProcessHandle$Info").getMethod("totalCpuDuration");
+        } catch (ReflectiveOperationException ignored) {
+            // Java 8: no ProcessHandle.
+        }
+        TO_HANDLE = toHandle;
+        PID = pid;
+        INFO = info;
+        TOTAL_CPU = totalCpu;
+        DESCENDANTS = descendants;
+        DESTROY = destroy;
+        DESTROY_FORCIBLY = destroyForcibly;
+    }
+
+    private static Object toHandle(Process process) {
+        try {
+            return TO_HANDLE == null ? null : TO_HANDLE.invoke(process);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static long pid(Object handle) {
+        try {
+            return handle == null ? -1L : (Long) PID.invoke(handle);
+        } catch (ReflectiveOperationException e) {
+            return -1L;
+        }
+    }
+
+    private static long cpuNanos(Object handle) {
+        if (handle == null) return -1L;
+        try {
+            Optional<?> d = (Optional<?>) TOTAL_CPU.invoke(INFO.invoke(handle));
+            return d.isPresent() ? ((Duration) d.get()).toNanos() : -1L;
+        } catch (ReflectiveOperationException e) {
+            return -1L;
+        }
+    }
+
+    /** Peak RSS so far from Linux's {@code VmHWM}, or -1 anywhere else. */
+    private static long peakRss(long pid) {
+        if (pid < 0 || SharedLibraryLoader.os != Os.Linux) return -1L;
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/" + pid + "/status"), StandardCharsets.UTF_8)) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024L;
+                }
+            }
+        } catch (IOException | NumberFormatException | SecurityException ignored) {
+            // The process may have exited between samples.
         }
+        return -1L;
     }
 }
@@ -0,0 +1,351 @@
+package com.github.tommyettinger;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+import com.badlogic.gdx.utils.JsonWriter;
+import com.badlogic.gdx.utils.SerializationException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Remembers what each {@code --bulk} job was made from, so the next
+ * {@code --bulk} only redoes the work whose inputs changed.
+ * <p>
+ * The manifest is {@value #CACHE_DIR}/{@value #FILE_NAME} in the output
+ * folder. For each job, keyed by font and mode, it holds a SHA-256
+ * fingerprint of the inputs of each {@link FontWriter.Step}, the size
+ * that fit, and the length and modification time of every file the job
+ * wrote:
+ * <ul>
+ *   <li><b>atlas</b>: the font file, the character map (which covers
+ *       the charset preset or the {@code --lang} files), the mode, the
+ *       initial and image sizes, the msdf-atlas-gen binary, and the
+ *       version of fontwriter;</li>
+ *   <li><b>descriptor</b>: the atlas, {@code --kerning-threshold},
+ *       {@code --kerning-lang} with the {@code --lang} files it reads,
+ *       and, with {@code --sdz}, the shared dictionary in
+ *       {@code fonts/};</li>
+ *   <li><b>image</b>: the atlas, {@code --color}, {@code --ktx}, and the
+ *       oxipng binary;</li>
+ *   <li><b>bundle</b>: the descriptor, the image, and {@code --fwb}.</li>
+ * </ul>
+ * A job whose fingerprints all match and whose files are as they were
+ * left is skipped. Otherwise only the stale steps run: a changed atlas
+ * reruns everything, while a new {@code --kerning-threshold}, say, only reruns
+ * kerning and compression, and then the {@code --fwb} bundle, which is
+ * rebuilt whenever the descriptor or the image is. A file that was
+ * deleted or changed since makes the step that writes it stale.
+ * <p>
+ * Kerning and post-processing rewrite msdf-atlas-gen's JSON and PNG in
+ * place, so the raw files are kept in {@value #CACHE_DIR}/raw/ to
+ * start those steps from without running msdf-atlas-gen again. That
+ * roughly doubles the disk space an atlas takes.
+ */
+final class BuildManifest {
+
+    /** The folder, inside the output folder, that holds the manifest and the raw atlases. */
+    static final String CACHE_DIR = ".fontwriter-cache";
+    static final String FILE_NAME = "bulk-manifest.json";
+
+    private final File outputDir, cacheDir;
+    private final FontWriter writer;
+    /** Entries by job key, as loaded and as recorded since. */
+    private final Map<String, JsonValue> entries = new LinkedHashMap<>();
+    /** Fingerprints of tool binaries, by path, so each is hashed once per run. */
+    private final Map<String, String> toolHashes = new HashMap<>();
+
+    private BuildManifest(File outputDir, FontWriter writer) {
+        this.outputDir = outputDir.getAbsoluteFile();
+        this.cacheDir = new File(this.outputDir, CACHE_DIR);
+        this.writer = writer;
+    }
+
+    /**
+     * Reads the manifest in {@code outputDir}, or starts an empty one if
+     * there is none or it can't be read.
+     *
+     * @param writer the writer whose tools the jobs will run
+     */
+    static BuildManifest load(File outputDir, FontWriter writer) {
+        BuildManifest manifest = new BuildManifest(outputDir, writer);
+        FileHandle file = new FileHandle(new File(manifest.cacheDir, FILE_NAME));
+        if (file.exists()) {
+            try {
+                JsonValue root = new JsonReader().parse(file);
+                if (root != null && CliMessages.version().equals(root.getString("version", ""))) {
+                    for (JsonValue e = root.getChild("jobs"); e != null; e = e.next) {
+                        manifest.entries.put(e.getString("job"), e);
+                    }
+                }
+            } catch (SerializationException e) {
+                System.out.println("Could not read " + file.path() + "; regenerating every job.");
+            }
+        }
+        return manifest;
+    }
+
+    /** Writes the manifest, replacing the old one. */
+    void save() {
+        JsonValue jobs = new JsonValue(JsonValue.ValueType.array);
+        for (JsonValue e : entries.values()) {
+            e.parent = null;
+            e.prev = e.next = null;
+            jobs.addChild(e);
+        }
+        JsonValue root = new JsonValue(JsonValue.ValueType.object);
+        root.addChild("version", new JsonValue(CliMessages.version()));
+        root.addChild("jobs", jobs);
+        new FileHandle(new File(cacheDir, FILE_NAME)).writeString(root.prettyPrint(JsonWriter.OutputType.json, 0),
+                false, "UTF-8");
+    }
+
+    /**
+     * Works out which steps of the job for {@code config} must run.
+     *
+     * @param config  a single-font configuration, as the job will get it
+     * @param charMap the character map the job will use
+     * @param rebuild whether to run every step regardless
+     */
+    Plan plan(FontwriterConfig config, String charMap, boolean rebuild) {
+        String font = new FileHandle(new File(config.fontPath)).nameWithoutExtension();
+        String key = font + "-" + config.mode;
+        String atlas = fingerprint(
+                "fontwriter", CliMessages.version(),
+                "font", hash(new File(config.fontPath)),
+                "charMap", hash(charMap.getBytes(StandardCharsets.UTF_8)),
+                "mode", String.valueOf(config.mode),
+                "initialSize", config.initialSize,
+                "imageSize", String.valueOf(config.imageSize),
+                "msdf-atlas-gen", tool(config, writer.atlasGenPath()));
+        String descriptor = fingerprint(
+                "atlas", atlas,
+                "kerningThreshold", String.valueOf(config.kerningThreshold),
+                "kerningLang", config.kerningFromLang && config.langPath != null ? langHash(config.langPath) : "off",
+                "dictionary", config.writeSharedDictionary
+                        ? hash(new File(outputDir, "fonts/" + FontwriterUtils.SHARED_DICTIONARY_NAME)) : "off");
+        String image = fingerprint(
+                "atlas", atlas,
+                "color", String.valueOf(config.color),
+                "ktx", String.valueOf(config.writeKtx),
+                "oxipng", tool(config, writer.oxipngPath()));
+        String bundle = fingerprint(
+                "descriptor", descriptor,
+                "image", image,
+                "fwb", String.valueOf(config.writeBundle));
+
+        Plan plan = new Plan(key, atlas, descriptor, image, bundle, config.writeBundle);
+        JsonValue old = entries.get(key);
+        if (rebuild) {
+            plan.stale(FontWriter.Step.ATLAS, "--rebuild was given");
+        } else if (old == null) {
+            plan.stale(FontWriter.Step.ATLAS, "it wasn't built before");
+        } else if (!atlas.equals(old.getString("atlas", ""))) {
+            plan.stale(FontWriter.Step.ATLAS, "the font, its charset, the atlas settings or msdf-atlas-gen changed");
+        } else {
+            plan.size = old.getLong("size");
+            if (!descriptor.equals(old.getString("descriptor", ""))) {
+                plan.stale(FontWriter.Step.DESCRIPTOR, "the kerning settings, --sdz or the shared dictionary changed");
+            }
+            if (!image.equals(old.getString("image", ""))) {
+                plan.stale(FontWriter.Step.IMAGE, "the color, --ktx or oxipng changed");
+            }
+            if (!bundle.equals(old.getString("bundle", ""))) {
+                plan.stale(FontWriter.Step.BUNDLE, "--fwb was turned on");
+            }
+            for (JsonValue o = old.getChild("outputs"); o != null; o = o.next) {
+                String path = o.getString("path");
+                File f = new File(outputDir, path);
+                if (!f.isFile() || f.length() != o.getLong("bytes") || f.lastModified() != o.getLong("modified")) {
+                    plan.stale(stepOf(path), path + (f.isFile() ? " changed" : " is missing"));
+                }
+            }
+            if (plan.runs(FontWriter.Step.DESCRIPTOR) && !plan.raw(font + "-" + config.mode + ".json").isFile()
+                    || plan.runs(FontWriter.Step.IMAGE) && !plan.raw(font + "-" + config.mode + ".png").isFile()) {
+                plan.stale(FontWriter.Step.ATLAS, "the raw atlas in " + CACHE_DIR + " is missing");
+            }
+        }
+        return plan;
+    }
+
+    /** Records what a job made by {@code plan} produced; {@link #save} writes it. */
+    void record(Plan plan, FontWriter.Result result) {
+        JsonValue entry = new JsonValue(JsonValue.ValueType.object);
+        entry.addChild("job", new JsonValue(plan.key));
+        entry.addChild("atlas", new JsonValue(plan.atlas));
+        entry.addChild("descriptor", new JsonValue(plan.descriptor));
+        entry.addChild("image", new JsonValue(plan.image));
+        entry.addChild("bundle", new JsonValue(plan.bundle));
+        entry.addChild("size", new JsonValue(result.size()));
+        JsonValue outputs = new JsonValue(JsonValue.ValueType.array);
+        String base = outputDir.getPath() + File.separator;
+        for (File f : result.outputs().keySet()) {
+            String path = f.getAbsolutePath();
+            if (!path.startsWith(base)) continue;
+            JsonValue o = new JsonValue(JsonValue.ValueType.object);
+            o.addChild("path", new JsonValue(path.substring(base.length()).replace(File.separatorChar, '/')));
+            o.addChild("bytes", new JsonValue(f.length()));
+            o.addChild("modified", new JsonValue(f.lastModified()));
+            outputs.addChild(o);
+        }
+        entry.addChild("outputs", outputs);
+        entries.put(plan.key, entry);
+    }
+
+    /** The step that writes the output at {@code path}. */
+    static FontWriter.Step stepOf(String path) {
+        if (path.endsWith(".fwb")) return FontWriter.Step.BUNDLE;
+        if (path.endsWith(".png") || path.endsWith(".ktx")) return FontWriter.Step.IMAGE;
+        return FontWriter.Step.DESCRIPTOR;
+    }
+
+    /** The steps one job has to run, and why; made by {@link #plan}. */
+    final class Plan {
+        final String key;
+        private final String atlas, descriptor, image, bundle;
+        /** Whether the job writes a bundle; without {@code --fwb}, the bundle step is never stale. */
+        private final boolean writeBundle;
+        private final Set<FontWriter.Step> steps = EnumSet.noneOf(FontWriter.Step.class);
+        private long size = -1L;
+        /** Why the first stale step is stale, or null if none is. */
+        private String reason;
+
+        private Plan(String key, String atlas, String descriptor, String image, String bundle, boolean writeBundle) {
+            this.key = key;
+            this.atlas = atlas;
+            this.descriptor = descriptor;
+            this.image = image;
+            this.bundle = bundle;
+            this.writeBundle = writeBundle;
+        }
+
+        /**
+         * Marks {@code step} stale, with the steps that depend on it: the
+         * atlas feeds everything, and the bundle holds the descriptor and
+         * the image.
+         */
+        private void stale(FontWriter.Step step, String why) {
+            if (step == FontWriter.Step.BUNDLE && !writeBundle) return;
+            if (reason == null) reason = why;
+            steps.add(step);
+            if (step == FontWriter.Step.ATLAS) steps.addAll(EnumSet.allOf(FontWriter.Step.class));
+            else steps.add(FontWriter.Step.BUNDLE);
+            if (!writeBundle) steps.remove(FontWriter.Step.BUNDLE);
+        }
+
+        boolean runs(FontWriter.Step step) {
+            return steps.contains(step);
+        }
+
+        /** Whether no step needs to run. */
+        boolean upToDate() {
+            return steps.isEmpty();
+        }
+
+        /** The size that fit last time; only meaningful when the atlas doesn't run. */
+        long size() {
+            return size;
+        }
+
+        /** Describes what runs and why, such as {@code "kerning, compress, bundle: the kerning settings changed"}. */
+        String describe() {
+            if (steps.isEmpty()) return "up to date";
+            if (runs(FontWriter.Step.ATLAS)) return "everything: " + reason;
+            StringBuilder sb = new StringBuilder();
+            if (runs(FontWriter.Step.DESCRIPTOR)) sb.append("kerning, compress, ");
+            if (runs(FontWriter.Step.IMAGE)) sb.append("process, ");
+            if (runs(FontWriter.Step.BUNDLE)) sb.append("bundle, ");
+            if (runs(FontWriter.Step.IMAGE)) sb.append("oxipng, ");
+            sb.setLength(sb.length() - 2);
+            return sb.append(": ").append(reason).toString();
+        }
+
+        private File raw(String name) {
+            return new File(cacheDir, "raw/" + name);
+        }
+
+        /** Copies msdf-atlas-gen's fresh output into the cache, for later runs to start from. */
+        void keepRaw(FileHandle... files) {
+            for (FileHandle f : files) {
+                f.copyTo(new FileHandle(raw(f.name())));
+            }
+        }
+
+        /** Puts back msdf-atlas-gen's output as it was, for a step that rewrites it in place. */
+        void restoreRaw(FileHandle file) {
+            new FileHandle(raw(file.name())).copyTo(file);
+        }
+    }
+
+    private String tool(FontwriterConfig config, String path) {
+        if (config.fakeTools != null) return "fake:" + config.fakeTools;
+        return toolHashes.computeIfAbsent(path, p -> hash(new File(p)));
+    }
+
+    /** Names and contents of the files {@code langPath} resolves to. */
+    private static String langHash(String langPath) {
+        FileHandle[] files = LangFileResolver.resolve(langPath);
+        if (files == null) return "none";
+        files = files.clone();
+        Arrays.sort(files, (a, b) -> a.path().compareTo(b.path()));
+        String[] parts = new String[files.length * 2];
+        for (int i = 0; i < files.length; i++) {
+            parts[i * 2] = files[i].path();
+            parts[i * 2 + 1] = hash(files[i].file());
+        }
+        return fingerprint(parts);
+    }
+
+    /** Hashes name/value pairs, in order. */
+    private static String fingerprint(String... namesAndValues) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            sb.append(namesAndValues[i]).append('=').append(namesAndValues[i + 1]).append('\n');
+        }
+        return hash(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** SHA-256 of a file, in hex, or {@code "none"} if there is no such file. */
+    private static String hash(File file) {
+        if (!file.isFile()) return "none";
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[65536];
+        try (InputStream in = new FileInputStream(file)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) digest.update(buffer, 0, n);
+        } catch (IOException e) {
+            return "unreadable";
+        }
+        return hex(digest.digest());
+    }
+
+    private static String hash(byte[] bytes) {
+        return hex(sha256().digest(bytes));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e); // every Java platform has SHA-256
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) sb.append(Character.forDigit(b >> 4 & 15, 16)).append(Character.forDigit(b & 15, 16));
+        return sb.toString();
+    }
+}
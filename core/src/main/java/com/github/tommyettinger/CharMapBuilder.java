@@ -30,8 +30,8 @@ import static java.awt.Font.TRUETYPE_FONT;
  * </ol>
  * The builder prints progress to stdout and routes {@code --lang}
  * failure diagnostics through {@link CliMessages}. On fatal errors
- * (no lang matches, unreadable font file) it terminates the JVM with
- * exit code 1.
+ * (no lang matches, unreadable font file) it throws a
+ * {@link FontWriterException.BadInput}.
  */
 final class CharMapBuilder {
 
@@ -61,8 +61,24 @@ final class CharMapBuilder {
      *                     generated cmap file; overwritten
      * @return the length in characters of the written cmap content
      *         (used by callers to pick the initial atlas size)
+     * @throws FontWriterException.BadInput if {@code --lang} matches no
+     *         files or the font can't be read
      */
     public static int build(FontwriterConfig config, String fontFileName, FileHandle cmap) {
+        String content = charMap(config, fontFileName);
+        cmap.writeString(content, false, "UTF-8");
+        return content.length();
+    }
+
+    /**
+     * Resolves and filters the character set like {@link #build}, and
+     * returns the cmap content instead of writing it. The result is the
+     * same for every mode, so it can be built once per font and reused.
+     *
+     * @throws FontWriterException.BadInput if {@code --lang} matches no
+     *         files or the font can't be read
+     */
+    static String charMap(FontwriterConfig config, String fontFileName) {
         FontwriterConfig.CharsetStrategy charsetStrategy = config.resolveCharsetStrategy();
         IntSet charSet = new IntSet(65536);
 
@@ -96,8 +112,8 @@ final class CharMapBuilder {
                 }
                 System.out.println("  Unique characters found: " + charSet.size);
             } else {
-                CliMessages.printLangNoMatches(config.langPath);
-                System.exit(1);
+                throw new FontWriterException.BadInput("--lang '" + config.langPath + "' matched no files",
+                        () -> CliMessages.printLangNoMatches(config.langPath), null);
             }
         } else {
             // "all" — no --charset, no --lang: include every character in the font.
@@ -131,8 +147,8 @@ final class CharMapBuilder {
                 }
             }
         } catch (Exception e) {
-            e.printStackTrace();
-            System.exit(1);
+            throw new FontWriterException.BadInput("Could not read font " + fontFileName + ": " + e.getMessage(),
+                    e::printStackTrace, e);
         }
 
         // Build final string without trailing space
@@ -145,8 +161,7 @@ final class CharMapBuilder {
             }
         }
 
-        cmap.writeString(sb.toString(), false, "UTF-8");
-        return sb.length();
+        return sb.toString();
     }
 
     /**
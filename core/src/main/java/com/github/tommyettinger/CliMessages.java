@@ -91,6 +91,65 @@ final class CliMessages {
         System.out.println("                     Characters found (plus ASCII 32-126 baseline) determine");
         System.out.println("                     which glyphs to include. Only active when explicitly passed.");
         System.out.println();
+        System.out.println("  --kerning-threshold EM");
+        System.out.println("                     Drop kerning pairs whose advance is smaller than EM");
+        System.out.println("                     (in em units, e.g. 0.01). Pairs for glyphs missing from");
+        System.out.println("                     the atlas, and zero-advance pairs, are always dropped.");
+        System.out.println();
+        System.out.println("  --kerning-lang     Keep only kerning pairs whose two characters appear next");
+        System.out.println("                     to each other in the --lang files. Takes no value.");
+        System.out.println();
+        System.out.println("  --ktx              Also write the atlas as KTX textures: uncompressed alpha");
+        System.out.println("                     (.ktx) for every mode but msdf, EAC R11 (.r11.ktx) of the");
+        System.out.println("                     alpha for sdf, psdf and mtsdf, and ETC2 RGB (.etc2.ktx)");
+        System.out.println("                     for msdf. Takes no value.");
+        System.out.println();
+        System.out.println("  --fwb              Also write a memory-mappable .fwb bundle of the descriptor and");
+        System.out.println("                     the raw atlas pixels. Uncompressed, so it is large: 12 MB for");
+        System.out.println("                     a 2048x2048 msdf atlas. Takes no value.");
+        System.out.println();
+        System.out.println("  --sdz              Also write a .json.sdz descriptor primed with fonts/fontwriter.dict,");
+        System.out.println("                     if it exists (see --dict). Usually larger than the .json.lzma.");
+        System.out.println("                     Takes no value.");
+        System.out.println();
+        System.out.println("  --preview-memory MB");
+        System.out.println("                     Memory budget for captured previews waiting to be");
+        System.out.println("                     written, in megabytes. Also accepted after --preview,");
+        System.out.println("                     --bulk and --watch. Default: 64.");
+        System.out.println();
+        System.out.println("  --atlas-timeout SECONDS");
+        System.out.println("  --oxipng-timeout SECONDS");
+        System.out.println("                     Stop msdf-atlas-gen or oxipng (and anything it started)");
+        System.out.println("                     if one run takes longer than this. 0 disables the limit.");
+        System.out.println("                     Defaults: 600 and 300.");
+        System.out.println();
+        System.out.println("  --tool-retries N   How many times to rerun a tool that timed out or could");
+        System.out.println("                     not start for a temporary reason. Default: 1.");
+        System.out.println();
+        System.out.println("  --jfr FILE         Record the run with Java Flight Recorder to FILE, including");
+        System.out.println("                     events for each step, tool run, PNG write and conversion.");
+        System.out.println("                     Needs Java 11 or newer.");
+        System.out.println();
+        System.out.println("  --metrics FILE     Where --bulk keeps an OpenMetrics textfile of its progress,");
+        System.out.println("                     ETA and per-stage totals. Default: reports/fontwriter.prom.");
+        System.out.println();
+        System.out.println("  --fake-tools SPEC  Use in-process stand-ins for msdf-atlas-gen and oxipng, for");
+        System.out.println("                     benchmarking and testing. SPEC is \"default\" or a list like");
+        System.out.println("                     atlas-ms=200,oxipng-ms=20,max-size=40,hangs=1. Not for");
+        System.out.println("                     real fonts: the atlases hold boxes, not glyphs.");
+        System.out.println();
+        System.out.println("  --port N           Loopback port --daemon listens on. 0 picks a free port.");
+        System.out.println("                     Default: 7450.");
+        System.out.println();
+        System.out.println("  --jobs N           How many jobs --daemon runs at once. Default: half the");
+        System.out.println("                     processors.");
+        System.out.println();
+        System.out.println("  --modes LIST       Modes --watch generates for each font, separated by commas.");
+        System.out.println("                     Default: standard,sdf,msdf.");
+        System.out.println();
+        System.out.println("  --rebuild          Make --bulk regenerate every job in full, ignoring what its");
+        System.out.println("                     manifest says is up to date. Takes no value.");
+        System.out.println();
         System.out.println("  -h");
         System.out.println("  --help             Show this help message and exit.");
         System.out.println();
@@ -134,11 +193,17 @@ final class CliMessages {
         // --- Output files ---
         System.out.println("Output files (written to fonts/ and previews/ folders):");
         System.out.println("  fonts/<name>-<mode>.png                 Font texture atlas.");
+        System.out.println("  fonts/<name>-<mode>.ktx, .r11.ktx,      KTX copies of the atlas (only with --ktx).");
+        System.out.println("    .etc2.ktx");
         System.out.println("  fonts/<name>-<mode>.json                Structured JSON font descriptor.");
         System.out.println("  fonts/<name>-<mode>.dat                 LZB-compressed descriptor (not recommended).");
         System.out.println("  fonts/<name>-<mode>.ubj                 UBJSON binary descriptor (smaller than .json).");
         System.out.println("  fonts/<name>-<mode>.json.lzma           LZMA-compressed .json descriptor (recommended).");
         System.out.println("  fonts/<name>-<mode>.ubj.lzma            LZMA-compressed .ubj descriptor (smallest).");
+        System.out.println("  fonts/<name>-<mode>.fwb                 Memory-mappable bundle of descriptor and atlas pixels");
+        System.out.println("                                          (only with --fwb).");
+        System.out.println("  fonts/<name>-<mode>.json.sdz            Shared-dictionary .json descriptor (only with --sdz,");
+        System.out.println("                                          when fonts/fontwriter.dict exists; see --dict).");
         System.out.println("  previews/<name>-<mode>.png (preview)    Text rendering preview (always generated).");
         System.out.println("  previews/full-<color>-<name>-<mode>.png Full-glyph color preview (only with --color).");
         System.out.println("  You only need one descriptor file (.json, .dat, .ubj, etc.).");
@@ -151,15 +216,48 @@ final class CliMessages {
 
         // --- Batch commands ---
         System.out.println("Batch commands:");
-        System.out.println("  --bulk [folder]      Process every .ttf/.otf in folder (default: 'input').");
+        System.out.println("  --bulk [folder]      Process every .ttf/.otf in folder (default: 'input'), skipping the");
+        System.out.println("                       steps whose inputs haven't changed since the last --bulk. Takes the");
+        System.out.println("                       font options above except --image-size; --color defaults to black.");
         System.out.println("  --preview [folder]   Generate previews for .json fonts (default: 'fonts').");
+        System.out.println("  --cpu-preview [folder]");
+        System.out.println("                       Same as --preview, but drawn on the CPU, several fonts at once,");
+        System.out.println("                       with no window or GL needed (default: 'fonts').");
+        System.out.println("  --contact [folder]   Render one labelled sample line per .json font into paginated");
+        System.out.println("                       contact sheets in previews/contact/ (default: 'fonts').");
+        System.out.println("  --compare [folder]   Compare previews in folder with those in --baseline DIR (default:");
+        System.out.println("                       'previews-baseline') by SSIM. Writes a ranked report.txt, and heatmaps");
+        System.out.println("                       for previews below --ssim-threshold N (default: 0.99), to");
+        System.out.println("                       <folder>-diff/ (default folder: 'previews'). Exits with code 2 if");
+        System.out.println("                       any preview changed.");
+        System.out.println("  --gallery [folder]   Build a paginated HTML gallery, thumbnails and a fonts.json index in a");
+        System.out.println("                       sibling gallery/ folder (default: 'docs/knownFonts'). Only thumbnails");
+        System.out.println("                       whose preview changed are regenerated.");
         System.out.println("  --ubj [folder]       Convert .json fonts to .ubj + .ubj.lzma (default: 'fonts').");
         System.out.println("  --lzma [folder]      Compress .json fonts with LZMA (default: 'fonts').");
+        System.out.println("  --bundle [folder]    Pack .json fonts and .png atlases into .fwb bundles (default: 'fonts').");
+        System.out.println("  --dict [folder]      Train fontwriter.dict from the .json fonts in folder (if it does not");
+        System.out.println("                       exist yet), then write .json.sdz files primed with it (default: 'fonts').");
+        System.out.println("  --columnar [folder]  Convert .json fonts to columnar .fwc files, and turn any .fwc without a");
+        System.out.println("                       matching .json back into Structured JSON (default: 'fonts').");
+        System.out.println("  --daemon [folder]    Stay running and accept jobs as JSON lines on 127.0.0.1:--port, writing");
+        System.out.println("                       into folder unless a job names its own (default: '.'). Previews are");
+        System.out.println("                       not drawn; see the README for the protocol.");
+        System.out.println("  --watch [folder]     Generate every .ttf/.otf in folder in each of --modes, then regenerate");
+        System.out.println("                       only the fonts affected when they or their --lang files change");
+        System.out.println("                       (default: 'input'). Stop it with Ctrl+C.");
+        System.out.println("  A batch command accepts only the options it uses, such as --metrics and --rebuild");
+        System.out.println("  after --bulk, or --baseline and --ssim-threshold after --compare.");
     }
 
     /** Prints the version line to {@code System.out}. */
     public static void printVersion() {
-        System.out.println("fontwriter " + JAR_NAME.replace("fontwriter-", "").replace(".jar", ""));
+        System.out.println("fontwriter " + version());
+    }
+
+    /** The version of fontwriter, such as {@code 2.4.0.0}. */
+    static String version() {
+        return JAR_NAME.replace("fontwriter-", "").replace(".jar", "");
     }
 
     // ---------------------------------------------------------------
@@ -215,6 +313,35 @@ final class CliMessages {
         System.out.println(binaryName + " failed, returning exit code " + exitCode + "; terminating.");
     }
 
+    /** Binary timed out or couldn't start for a temporary reason, and will be run again. */
+    public static void printBinaryRetrying(String binaryName, String reason, int retry, int retries) {
+        System.err.println("Warning: " + binaryName + " " + reason + "; retrying (" + retry + " of " + retries + ")...");
+    }
+
+    /** Binary ran past its timeout on every attempt, and was killed each time. */
+    public static void printBinaryTimedOut(String binaryName, double seconds, int retries) {
+        System.err.println("Error: " + binaryName + " did not finish within " + seconds + " seconds"
+                + (retries > 0 ? " in " + (retries + 1) + " attempts" : "") + " and was stopped. Terminating.");
+        System.err.println("If it was only slow, raise the limit with --"
+                + ("oxipng".equals(binaryName) ? "oxipng" : "atlas") + "-timeout SECONDS (0 disables it).");
+    }
+
+    /** Binary was stopped, or never started, because the run is shutting down. */
+    public static void printBinaryCancelled(String binaryName) {
+        System.err.println(binaryName + " was cancelled; terminating.");
+    }
+
+    /**
+     * Binary failed in a way a retry can't fix (bad font, bad arguments,
+     * or a binary that can't load on this system). {@code reason} is the
+     * binary's own explanation, or empty if it gave none.
+     */
+    public static void printBinaryFatalFailure(String binaryName, int exitCode, String reason) {
+        System.err.println("Error: " + binaryName + " failed with exit code " + exitCode
+                + (reason.isEmpty() ? "" : ": " + reason));
+        System.err.println("This error does not depend on the font size, so no smaller size was tried. Terminating.");
+    }
+
     // ---------------------------------------------------------------
     //  --lang resolution errors
     //  All emitted when resolveLangFiles() or its caller can't find
@@ -16,9 +16,13 @@ package com.github.tommyettinger;
  * the first three starts with "-", named-flag mode is used; otherwise
  * legacy positional mode is assumed.
  * <p>
- * Batch commands ({@code --bulk}, {@code --preview}, {@code --ubj},
- * {@code --lzma}) are detected first and short-circuit the rest of
- * the parsing.
+ * Batch commands ({@code --bulk}, {@code --preview},
+ * {@code --cpu-preview}, {@code --contact}, {@code --compare},
+ * {@code --gallery}, {@code --ubj}, {@code --lzma}, {@code --bundle},
+ * {@code --dict}, {@code --columnar}, {@code --daemon} and
+ * {@code --watch}) are detected first and short-circuit the rest of
+ * the parsing; only an optional folder and the named flags that
+ * command uses may follow them.
  */
 public class ConfigParser {
 
@@ -60,9 +64,13 @@ public class ConfigParser {
         FontwriterConfig.BatchCommand batch = FontwriterConfig.BatchCommand.fromFlag(first);
         if (batch != null) {
             config.batchCommand = batch;
-            if (args.length > 1) {
+            int next = 1;
+            if (args.length > 1 && !args[1].startsWith("-")) {
                 config.batchCommandPath = args[1];
+                next = 2;
             }
+            // Options that the batch command uses may follow the folder.
+            parseFlags(args, next, config);
             return config;
         }
 
@@ -117,6 +125,35 @@ public class ConfigParser {
      *   <li>{@code --color} — preview text color</li>
      *   <li>{@code --lang} — I18N translation folder path</li>
      *   <li>{@code --charset} — predefined character set name</li>
+     *   <li>{@code --kerning-threshold} — minimum kerning advance to keep</li>
+     *   <li>{@code --kerning-lang} — keep only kerning pairs seen in
+     *       {@code --lang} files (takes no value)</li>
+     *   <li>{@code --ktx} — also write KTX textures of the atlas (takes no
+     *       value)</li>
+     *   <li>{@code --preview-memory} — memory budget for preview capture,
+     *       in megabytes</li>
+     *   <li>{@code --baseline} — folder of previews for {@code --compare}</li>
+     *   <li>{@code --ssim-threshold} — SSIM below which {@code --compare}
+     *       reports a change</li>
+     *   <li>{@code --fwb} — also write a {@code .fwb} bundle (takes no
+     *       value)</li>
+     *   <li>{@code --sdz} — also write a {@code .json.sdz} primed with the
+     *       shared dictionary (takes no value)</li>
+     *   <li>{@code --atlas-timeout} — seconds one msdf-atlas-gen run may
+     *       take</li>
+     *   <li>{@code --oxipng-timeout} — seconds one oxipng run may take</li>
+     *   <li>{@code --tool-retries} — how many times a failed tool run is
+     *       retried</li>
+     *   <li>{@code --jfr} — file to record a Flight Recorder session to</li>
+     *   <li>{@code --metrics} — OpenMetrics textfile {@code --bulk}
+     *       updates as it runs</li>
+     *   <li>{@code --fake-tools} — stand-ins for msdf-atlas-gen and
+     *       oxipng, for testing</li>
+     *   <li>{@code --port} — port {@code --daemon} listens on</li>
+     *   <li>{@code --jobs} — jobs {@code --daemon} runs at once</li>
+     *   <li>{@code --modes} — modes {@code --watch} generates</li>
+     *   <li>{@code --rebuild} — make {@code --bulk} ignore its manifest
+     *       (takes no value)</li>
      * </ul>
      * Short flags (aliases for longer flags):
      * <ul>
@@ -134,6 +171,13 @@ public class ConfigParser {
             // Resolve short flags to their canonical form.
             String canonical = resolveShortFlag(flag);
 
+            // A batch command only takes the options it actually uses.
+            if (config.batchCommand != null && !config.batchCommand.accepts(canonical)) {
+                throw new IllegalArgumentException(
+                        "Unrecognized option for " + config.batchCommand.flag + ": " + flag
+                        + "\nUse --help to see available options.");
+            }
+
             switch (canonical) {
                 case "--image-size":
                     config.imageSize = requireValue(args, i, flag);
@@ -152,6 +196,84 @@ public class ConfigParser {
                     config.charsetExplicitlySet = true;
                     i += 2;
                     break;
+                case "--kerning-threshold":
+                    config.kerningThreshold = parseDouble(requireValue(args, i, flag), flag);
+                    i += 2;
+                    break;
+                case "--kerning-lang":
+                    config.kerningFromLang = true;
+                    i += 1;
+                    break;
+                case "--ktx":
+                    config.writeKtx = true;
+                    i += 1;
+                    break;
+                case "--fwb":
+                    config.writeBundle = true;
+                    i += 1;
+                    break;
+                case "--sdz":
+                    config.writeSharedDictionary = true;
+                    i += 1;
+                    break;
+                case "--preview-memory":
+                    config.previewMemoryMb = parseDouble(requireValue(args, i, flag), flag);
+                    i += 2;
+                    break;
+                case "--baseline":
+                    config.baselinePath = requireValue(args, i, flag);
+                    i += 2;
+                    break;
+                case "--ssim-threshold":
+                    config.ssimThreshold = parseDouble(requireValue(args, i, flag), flag);
+                    i += 2;
+                    break;
+                case "--atlas-timeout":
+                    config.atlasGenTimeoutSeconds = parseDouble(requireValue(args, i, flag), flag);
+                    i += 2;
+                    break;
+                case "--oxipng-timeout":
+                    config.oxipngTimeoutSeconds = parseDouble(requireValue(args, i, flag), flag);
+                    i += 2;
+                    break;
+                case "--tool-retries":
+                    config.toolRetries = parseInt(requireValue(args, i, flag), flag);
+                    i += 2;
+                    break;
+                case "--jfr":
+                    config.jfrPath = requireValue(args, i, flag);
+                    i += 2;
+                    break;
+                case "--metrics":
+                    config.metricsPath = requireValue(args, i, flag);
+                    i += 2;
+                    break;
+                case "--fake-tools":
+                    config.fakeTools = requireValue(args, i, flag);
+                    FakeToolBackend.parse(config.fakeTools); // reject a bad SPEC before any work starts
+                    i += 2;
+                    break;
+                case "--port":
+                    config.daemonPort = parseInt(requireValue(args, i, flag), flag);
+                    if (config.daemonPort > 65535) {
+                        throw new IllegalArgumentException("Option " + flag + " requires a port from 0 to 65535, "
+                                + "but got: " + config.daemonPort + "\nUse --help to see available options.");
+                    }
+                    i += 2;
+                    break;
+                case "--jobs":
+                    config.daemonJobs = parseInt(requireValue(args, i, flag), flag);
+                    i += 2;
+                    break;
+                case "--modes":
+                    config.watchModes = requireValue(args, i, flag);
+                    FontwriterConfig.Mode.listFromString(config.watchModes); // reject an unknown mode up front
+                    i += 2;
+                    break;
+                case "--rebuild":
+                    config.bulkRebuild = true;
+                    i += 1;
+                    break;
                 default:
                     throw new IllegalArgumentException(
                             "Unrecognized option: " + flag
@@ -214,6 +336,36 @@ public class ConfigParser {
         return value;
     }
 
+    /**
+     * Parses a non-negative decimal option value, or throws with a
+     * message naming the flag.
+     */
+    private static double parseDouble(String value, String flagName) {
+        try {
+            double d = Double.parseDouble(value);
+            if (d >= 0.0) return d;
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException(
+                "Option " + flagName + " requires a non-negative number, but got: " + value + "\n"
+                + "Use --help to see available options.");
+    }
+
+    /**
+     * Parses a non-negative whole-number option value, or throws with a
+     * message naming the flag.
+     */
+    private static int parseInt(String value, String flagName) {
+        try {
+            int n = Integer.parseInt(value);
+            if (n >= 0) return n;
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException(
+                "Option " + flagName + " requires a non-negative whole number, but got: " + value + "\n"
+                + "Use --help to see available options.");
+    }
+
     /**
      * Maps single-char flags to their canonical long form.
      * Returns the flag unchanged if it's not a known shorthand.
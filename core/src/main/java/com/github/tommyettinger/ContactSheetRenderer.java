@@ -0,0 +1,198 @@
+package com.github.tommyettinger;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.PixmapIO;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.Align;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.ScreenUtils;
+import com.github.tommyettinger.textra.Font;
+import com.github.tommyettinger.textra.Layout;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Renders whole folders of fonts into paginated contact sheets, so a
+ * collection can be browsed in a handful of images instead of one
+ * preview per font.
+ * <p>
+ * Each sheet is a grid of {@value #COLUMNS} by {@value #ROWS} cells.
+ * Each cell shows the font's name and mode as a small label, above one
+ * line of sample text set in that font. Pages are drawn into a
+ * {@link FrameBuffer} at {@value #SUPERSAMPLE}x their final size, then
+ * read back once per page and scaled down bilinearly, which gives
+ * smooth small text. Atlas textures are released as soon as their cell
+ * is drawn, so only one is live at a time.
+ * <p>
+ * Sheets are written to {@code previews/contact/<folder>-NNN.png} and
+ * optimized with oxipng. Like {@link PreviewRenderer}, this must run
+ * on the libGDX render thread with a real GL context.
+ */
+final class ContactSheetRenderer implements Disposable {
+
+    static final int COLUMNS = 3, ROWS = 16;
+    static final int CELL_WIDTH = 400, CELL_HEIGHT = 64;
+    static final int SUPERSAMPLE = 2;
+    static final int PAGE_WIDTH = COLUMNS * CELL_WIDTH, PAGE_HEIGHT = ROWS * CELL_HEIGHT;
+
+    /** Sample line drawn in every font; covers capitals, lowercase, digits and common punctuation. */
+    static final String SAMPLE = "The quick brown fox jumps over the lazy dog. 0123456789 ÀÉÎõü & @?!";
+
+    private static final float PAD = 8f, LABEL_HEIGHT = 18f, SAMPLE_HEIGHT = 30f;
+
+    private final SpriteBatch batch;
+    private final BitmapFont labelFont;
+    private final Layout layout;
+    private final FrameBuffer frameBuffer;
+    private final String archPath;
+    private final String oxipngBinary;
+
+    /**
+     * Constructs a renderer. Must be called on the libGDX render
+     * thread, because it allocates GL resources.
+     *
+     * @param archPath     platform-specific {@code distbin/} directory
+     *                     containing the oxipng executable
+     * @param oxipngBinary bare filename of the oxipng executable
+     */
+    ContactSheetRenderer(String archPath, String oxipngBinary) {
+        this.archPath = archPath;
+        this.oxipngBinary = oxipngBinary;
+        final int w = PAGE_WIDTH * SUPERSAMPLE, h = PAGE_HEIGHT * SUPERSAMPLE;
+        this.batch = new SpriteBatch();
+        this.batch.setProjectionMatrix(new Matrix4().setToOrtho2D(0f, 0f, w, h));
+        this.labelFont = new BitmapFont(); // libGDX's built-in Liberation Sans 15px
+        this.labelFont.getData().setScale(LABEL_HEIGHT * SUPERSAMPLE / labelFont.getLineHeight());
+        this.labelFont.getRegion().getTexture().setFilter(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear);
+        this.labelFont.setColor(0.25f, 0.25f, 0.25f, 1f);
+        this.layout = new Layout().setTargetWidth((CELL_WIDTH - PAD * 2) * SUPERSAMPLE);
+        this.frameBuffer = new FrameBuffer(Pixmap.Format.RGBA8888, w, h, false);
+    }
+
+    /**
+     * Renders every {@code <name>-<mode>.json} font in {@code folder}
+     * (with its {@code .png} atlas) into as many sheets as needed.
+     *
+     * @param folder the folder to read fonts from
+     * @return the sheets written, in page order
+     */
+    public List<FileHandle> render(FileHandle folder) {
+        FileHandle[] files = folder.list((dir, name) -> name.endsWith(".json"));
+        java.util.Arrays.sort(files, (a, b) -> a.name().compareTo(b.name()));
+        List<FileHandle> fonts = new ArrayList<>(files.length);
+        for (FileHandle file : files) {
+            if (modeOf(file) != null && file.sibling(file.nameWithoutExtension() + ".png").exists()) {
+                fonts.add(file);
+            }
+        }
+        final int perPage = COLUMNS * ROWS;
+        final int pages = (fonts.size() + perPage - 1) / perPage;
+        List<FileHandle> sheets = new ArrayList<>(pages);
+        for (int page = 0; page < pages; page++) {
+            FileHandle sheet = Gdx.files.local(String.format("previews/contact/%s-%03d.png", folder.name(), page + 1));
+            System.out.println("Creating contact sheet " + (page + 1) + " of " + pages + "...");
+            renderPage(fonts.subList(page * perPage, Math.min(fonts.size(), (page + 1) * perPage)), sheet);
+            sheets.add(sheet);
+        }
+        return sheets;
+    }
+
+    private void renderPage(List<FileHandle> fonts, FileHandle sheet) {
+        final int w = PAGE_WIDTH * SUPERSAMPLE, h = PAGE_HEIGHT * SUPERSAMPLE;
+        final float s = SUPERSAMPLE;
+        frameBuffer.begin();
+        ScreenUtils.clear(0.96f, 0.96f, 0.96f, 1f);
+        batch.begin();
+        for (int i = 0; i < fonts.size(); i++) {
+            FileHandle json = fonts.get(i);
+            float left = (i % COLUMNS) * CELL_WIDTH * s + PAD * s;
+            float top = h - (i / COLUMNS) * CELL_HEIGHT * s - PAD * s;
+
+            batch.setShader(null);
+            labelFont.draw(batch, json.nameWithoutExtension(), left, top);
+
+            Texture atlas = new Texture(json.sibling(json.nameWithoutExtension() + ".png"));
+            Font font = new Font(json.path(), new TextureRegion(atlas), 0f, 0f, 0f, 0f, true, true);
+            font.scaleHeightTo(SAMPLE_HEIGHT * s);
+            if (atlas.getWidth() < 1024 || atlas.getHeight() < 1024)
+                font.setTextureFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest)
+                    .useIntegerPositions(true); // for pixel fonts
+            font.resizeDistanceField(w, h);
+            layout.setBaseColor(Color.BLACK);
+            layout.setMaxLines(1);
+            layout.setEllipsis("...");
+            font.markup(SAMPLE, layout);
+            font.enableShader(batch);
+            font.drawGlyphs(batch, layout, left, top - (LABEL_HEIGHT + 4f) * s, Align.left);
+            // Draw now so the atlas can be released before the next cell.
+            batch.flush();
+            batch.setShader(null);
+            font.dispose();
+            atlas.dispose();
+        }
+        batch.end();
+
+        Gdx.gl.glPixelStorei(GL20.GL_PACK_ALIGNMENT, 1);
+        Pixmap full = new Pixmap(w, h, Pixmap.Format.RGB888);
+        ByteBuffer pixels = full.getPixels();
+        Gdx.gl.glReadPixels(0, 0, w, h, GL20.GL_RGB, GL20.GL_UNSIGNED_BYTE, pixels);
+        frameBuffer.end();
+
+        Pixmap small = new Pixmap(PAGE_WIDTH, PAGE_HEIGHT, Pixmap.Format.RGB888);
+        try {
+            small.setFilter(Pixmap.Filter.BiLinear);
+            small.setBlending(Pixmap.Blending.None);
+            small.drawPixmap(full, 0, 0, w, h, 0, 0, PAGE_WIDTH, PAGE_HEIGHT);
+            full.dispose();
+            full = null;
+            PixmapIO.writePNG(sheet, small, 0, true);
+        } finally {
+            if (full != null) full.dispose();
+            small.dispose();
+        }
+
+        List<String> oxiCmd = new ArrayList<>();
+        oxiCmd.add(archPath + oxipngBinary);
+        oxiCmd.add("-o");
+        oxiCmd.add("6");
+        oxiCmd.add("--ng");
+        oxiCmd.add("-s");
+        oxiCmd.add(sheet.path());
+        System.out.println("Running command: " + String.join(" ", oxiCmd));
+        BinaryExec.runOrThrow(archPath + oxipngBinary, "oxipng", oxiCmd,
+                new File(Gdx.files.getLocalStoragePath()));
+    }
+
+    /** Returns the mode named after the last '-' in a font file's name, or null if there isn't one. */
+    private static FontwriterConfig.Mode modeOf(FileHandle json) {
+        String name = json.nameWithoutExtension();
+        try {
+            return FontwriterConfig.Mode.fromString(name.substring(name.lastIndexOf('-') + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Releases the GL resources owned by this renderer. Must be called
+     * on the libGDX render thread.
+     */
+    @Override
+    public void dispose() {
+        batch.dispose();
+        labelFont.dispose();
+        frameBuffer.dispose();
+    }
+}
@@ -0,0 +1,194 @@
+package com.github.tommyettinger;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflate compression primed with a dictionary shared by a whole
+ * collection of fonts.
+ * <p>
+ * The Structured JSON files fontwriter produces are nearly identical
+ * in structure, but {@code .json.lzma} and {@code .dat} compress each
+ * one in isolation, so every file pays again to describe the same keys
+ * and common numbers. A shared dictionary lets the compressor refer
+ * back to that material from the first byte of each file. The JDK's
+ * {@link Deflater#setDictionary(byte[])} is the only dictionary-aware
+ * codec available here, so the dictionary is capped at deflate's
+ * 32 KiB window.
+ * <p>
+ * {@link #train(List, int)} follows the "cover" approach used by
+ * other dictionary trainers: every {@link #DMER_LENGTH}-byte substring
+ * is scored by how many sample files contain it, the corpus is split
+ * into one epoch per dictionary segment, and from each epoch the
+ * {@link #SEGMENT_LENGTH}-byte window whose distinct substrings score
+ * highest is kept. Substrings already covered by a chosen segment stop
+ * counting, so later segments add new material instead of repeating
+ * earlier ones. The best segments are placed last, since deflate
+ * encodes shorter distances more cheaply. The zlib header of every
+ * compressed file records the Adler-32 checksum of the dictionary it
+ * needs, so {@link #decompress(byte[], byte[])} rejects a mismatched
+ * dictionary instead of producing garbage.
+ */
+public final class DictionaryCompression {
+
+    private DictionaryCompression() {} // utility class
+
+    /** Largest useful dictionary; deflate cannot refer back further than this. */
+    public static final int MAX_DICTIONARY_SIZE = 32768;
+
+    /** Length of the substrings whose document frequency is counted during training. */
+    public static final int DMER_LENGTH = 8;
+
+    /** Length of each segment copied into the dictionary. */
+    public static final int SEGMENT_LENGTH = 64;
+
+    private static final int TABLE_BITS = 20;
+
+    /**
+     * Trains a dictionary from sample files.
+     *
+     * @param samples        the raw contents of each sample file
+     * @param dictionarySize the maximum dictionary size in bytes; clamped
+     *                       to {@link #MAX_DICTIONARY_SIZE}
+     * @return the trained dictionary; may be shorter than requested if
+     *         the samples are small
+     */
+    public static byte[] train(List<byte[]> samples, int dictionarySize) {
+        dictionarySize = Math.min(dictionarySize, MAX_DICTIONARY_SIZE);
+        final int d = DMER_LENGTH, k = SEGMENT_LENGTH, mask = (1 << TABLE_BITS) - 1;
+
+        int total = 0;
+        for (byte[] sample : samples) total += sample.length;
+        byte[] corpus = new byte[total];
+        int[] docStarts = new int[samples.size() + 1];
+        for (int i = 0, pos = 0; i < samples.size(); i++) {
+            byte[] sample = samples.get(i);
+            System.arraycopy(sample, 0, corpus, pos, sample.length);
+            docStarts[i] = pos;
+            docStarts[i + 1] = pos += sample.length;
+        }
+
+        // Document frequency of every (hashed) d-mer.
+        int[] freq = new int[1 << TABLE_BITS];
+        int[] seen = new int[1 << TABLE_BITS];
+        Arrays.fill(seen, -1);
+        for (int doc = 0; doc < samples.size(); doc++) {
+            for (int i = docStarts[doc], n = docStarts[doc + 1] - d; i <= n; i++) {
+                int h = hash(corpus, i) & mask;
+                if (seen[h] != doc) {
+                    seen[h] = doc;
+                    freq[h]++;
+                }
+            }
+        }
+
+        // One epoch per segment; keep the best window of each epoch.
+        int segments = Math.max(1, dictionarySize / k);
+        int epochSize = Math.max(k, total / segments);
+        int[] inWindow = seen; // reused: counts of each d-mer inside the current window
+        Arrays.fill(inWindow, 0);
+        long[] chosen = new long[segments];
+        int chosenCount = 0;
+        for (int epoch = 0; epoch + k <= total && chosenCount < segments; epoch += epochSize) {
+            int epochEnd = Math.min(total, epoch + epochSize);
+            long score = 0L, bestScore = 0L;
+            int bestStart = -1;
+            for (int i = epoch; i + d <= epochEnd; i++) {
+                int h = hash(corpus, i) & mask;
+                if (inWindow[h]++ == 0) score += freq[h];
+                int windowStart = i + d - k;
+                if (windowStart >= epoch) {
+                    if (score > bestScore) {
+                        bestScore = score;
+                        bestStart = windowStart;
+                    }
+                    int old = hash(corpus, windowStart) & mask;
+                    if (--inWindow[old] == 0) score -= freq[old];
+                }
+            }
+            for (int i = Math.max(epoch, epochEnd - k); i + d <= epochEnd; i++) {
+                inWindow[hash(corpus, i) & mask] = 0;
+            }
+            if (bestStart < 0) continue;
+            for (int i = bestStart; i + d <= bestStart + k; i++) {
+                freq[hash(corpus, i) & mask] = 0;
+            }
+            chosen[chosenCount++] = bestScore << 32 | bestStart;
+        }
+
+        Arrays.sort(chosen, 0, chosenCount);
+        byte[] dictionary = new byte[chosenCount * k];
+        for (int c = 0; c < chosenCount; c++) {
+            System.arraycopy(corpus, (int) chosen[c], dictionary, c * k, k);
+        }
+        return dictionary;
+    }
+
+    /**
+     * Compresses {@code data} as a zlib stream primed with {@code dictionary}.
+     */
+    public static byte[] compress(byte[] data, byte[] dictionary) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setDictionary(dictionary);
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length >>> 3));
+            byte[] chunk = new byte[16384];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Reverses {@link #compress(byte[], byte[])}.
+     *
+     * @throws IllegalArgumentException if the data is corrupt or was
+     *         compressed with a different dictionary
+     */
+    public static byte[] decompress(byte[] data, byte[] dictionary) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 8);
+            byte[] chunk = new byte[16384];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(chunk);
+                if (n == 0) {
+                    if (inflater.needsDictionary()) {
+                        try {
+                            inflater.setDictionary(dictionary);
+                        } catch (IllegalArgumentException e) {
+                            throw new IllegalArgumentException(
+                                    "Stream was compressed with a different shared dictionary.", e);
+                        }
+                    } else if (inflater.needsInput()) {
+                        throw new IllegalArgumentException("Truncated shared-dictionary stream.");
+                    }
+                }
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt shared-dictionary stream: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static int hash(byte[] data, int start) {
+        int h = 0x9E3779B9;
+        for (int i = start, n = start + DMER_LENGTH; i < n; i++) {
+            h = (h ^ data[i]) * 0x01000193;
+        }
+        return h ^ h >>> 15;
+    }
+}
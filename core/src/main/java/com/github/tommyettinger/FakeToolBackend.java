@@ -0,0 +1,282 @@
+package com.github.tommyettinger;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.PixmapIO;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.JsonValue;
+import com.badlogic.gdx.utils.JsonWriter;
+
+import java.io.File;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link ToolBackend} that stands in for msdf-atlas-gen and oxipng
+ * without running either, selected with {@code --fake-tools SPEC}. It
+ * makes the time spent around the tools (retries, size shrinking,
+ * conversions, reports) measurable on its own, and makes it the same
+ * from run to run.
+ * <p>
+ * The fake msdf-atlas-gen reads the same arguments as the real one and
+ * writes an atlas PNG and JSON descriptor in the same layout: every
+ * codepoint in the charset gets an advance and a box derived from the
+ * codepoint alone, the boxes are packed in rows into the requested
+ * dimensions, and a few common kerning pairs are listed when both
+ * characters are present. When the boxes don't fit, or the size is over
+ * {@code max-size}, it fails with msdf-atlas-gen's "Could not fit"
+ * message, so {@link FontWriter#write} shrinks the size just as it
+ * would for real. The fake oxipng leaves its file untouched.
+ * <p>
+ * SPEC is {@code default} or a comma-separated list of:
+ * <ul>
+ *   <li>{@code atlas-ms=N}: how long each msdf-atlas-gen run takes;</li>
+ *   <li>{@code oxipng-ms=N}: how long each oxipng run takes;</li>
+ *   <li>{@code max-size=N}: the largest size that fits, on top of the
+ *       packing check;</li>
+ *   <li>{@code hangs=N}: how many msdf-atlas-gen runs, from the first,
+ *       never finish on their own, to exercise timeouts and retries.
+ *       With no timeout set they wait until the run is cancelled.</li>
+ * </ul>
+ * Waits are slept in short steps and end early on a timeout or when
+ * the job is cancelled, as a killed process would.
+ */
+final class FakeToolBackend implements ToolBackend {
+
+    private static final long STEP_MILLIS = 5L;
+    /** Pairs given a kerning entry when both are in the charset. */
+    private static final String KERNING_PAIRS = "AVVAAWWATaToTeLTLVPAFAYoYaAY";
+
+    final long atlasMillis, oxipngMillis;
+    final int maxSize, hangs;
+    private final AtomicInteger atlasRuns = new AtomicInteger();
+
+    FakeToolBackend(long atlasMillis, long oxipngMillis, int maxSize, int hangs) {
+        this.atlasMillis = atlasMillis;
+        this.oxipngMillis = oxipngMillis;
+        this.maxSize = maxSize;
+        this.hangs = hangs;
+    }
+
+    /**
+     * Parses a {@code --fake-tools} SPEC.
+     *
+     * @throws IllegalArgumentException if SPEC has an unknown key or a value that isn't a non-negative integer
+     */
+    static FakeToolBackend parse(String spec) {
+        long atlasMillis = 0L, oxipngMillis = 0L;
+        int maxSize = Integer.MAX_VALUE, hangs = 0;
+        if (!"default".equals(spec)) {
+            for (String part : spec.split(",")) {
+                String[] kv = part.trim().split("=", 2);
+                long value;
+                try {
+                    value = kv.length == 2 ? Long.parseLong(kv[1].trim()) : -1L;
+                } catch (NumberFormatException e) {
+                    value = -1L;
+                }
+                if (value < 0) {
+                    throw new IllegalArgumentException("--fake-tools expects key=N pairs, but got \"" + part + "\".");
+                }
+                switch (kv[0].trim()) {
+                    case "atlas-ms":
+                        atlasMillis = value;
+                        break;
+                    case "oxipng-ms":
+                        oxipngMillis = value;
+                        break;
+                    case "max-size":
+                        maxSize = (int) Math.min(value, Integer.MAX_VALUE);
+                        break;
+                    case "hangs":
+                        hangs = (int) Math.min(value, Integer.MAX_VALUE);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown --fake-tools key \"" + kv[0].trim()
+                                + "\"; expected atlas-ms, oxipng-ms, max-size or hangs.");
+                }
+            }
+        }
+        return new FakeToolBackend(atlasMillis, oxipngMillis, maxSize, hangs);
+    }
+
+    @Override
+    public void verify(String binaryPath, String binaryName) {
+        // Nothing to check; no binary is run.
+    }
+
+    @Override
+    public BinaryExec.Result runOnce(String binaryName, List<String> command, File workingDir, long timeoutMillis,
+                                     BinaryExec.Cancellation cancellation) throws InterruptedException {
+        final long start = System.nanoTime();
+        boolean atlasGen = "msdf-atlas-gen".equals(binaryName);
+        boolean hang = atlasGen && atlasRuns.getAndIncrement() < hangs;
+        BinaryExec.Failure stopped = await(start, hang ? Long.MAX_VALUE : atlasGen ? atlasMillis : oxipngMillis,
+                timeoutMillis, cancellation);
+        if (stopped != null) {
+            return new BinaryExec.Result(-1, "", "", stopped, System.nanoTime() - start, -1L, -1L);
+        }
+        String stderr = atlasGen ? generate(command, workingDir) : "";
+        if (!stderr.isEmpty()) System.err.println(stderr);
+        return new BinaryExec.Result(stderr.isEmpty() ? 0 : 1, "", stderr, null, System.nanoTime() - start, -1L, -1L);
+    }
+
+    /** Sleeps until {@code millis} have passed, returning early with why if stopped first. */
+    private static BinaryExec.Failure await(long start, long millis, long timeoutMillis,
+                                            BinaryExec.Cancellation cancellation) throws InterruptedException {
+        while (true) {
+            long elapsed = (System.nanoTime() - start) / 1000000L;
+            if (cancellation.isCancelled()) return BinaryExec.Failure.CANCELLED;
+            if (timeoutMillis > 0 && elapsed >= timeoutMillis) return BinaryExec.Failure.TIMEOUT;
+            if (elapsed >= millis) return null;
+            Thread.sleep(Math.min(STEP_MILLIS, millis - elapsed));
+        }
+    }
+
+    /**
+     * Writes the atlas and descriptor that msdf-atlas-gen would for
+     * {@code command}, or returns the message it would fail with.
+     */
+    private String generate(List<String> command, File workingDir) {
+        String type = arg(command, "-type", 1), imageOut = arg(command, "-imageout", 1),
+                jsonOut = arg(command, "-json", 1), charset = arg(command, "-charset", 1);
+        int width = Integer.parseInt(arg(command, "-dimensions", 1)), height = Integer.parseInt(arg(command, "-dimensions", 2));
+        int size = (int) Double.parseDouble(arg(command, "-size", 1));
+        double range = Double.parseDouble(arg(command, "-pxrange", 1));
+        int padding = Integer.parseInt(arg(command, "-outerpxpadding", 1));
+
+        IntArray codes = new IntArray();
+        for (String code : resolve(workingDir, charset).readString("UTF-8").trim().split("\\s+")) {
+            if (!code.isEmpty()) codes.add(Integer.parseInt(code));
+        }
+        if (size > maxSize) return couldNotFit(codes.size, codes.size);
+        boolean softmask = "softmask".equals(type);
+
+        // Pack first, so that sizes that don't fit cost no pixels. The bottom
+        // three rows are left empty for the marker corner Main stamps later.
+        int[] boxes = new int[codes.size * 4];
+        int x = 0, y = 0, rowHeight = 0;
+        for (int i = 0; i < codes.size; i++) {
+            int code = codes.get(i);
+            if (Character.isWhitespace(code) || Character.isSpaceChar(code)) {
+                boxes[i * 4 + 2] = -1;
+                continue;
+            }
+            int w = (int) Math.ceil((advance(code) - 0.04) * size + range) + 2 * padding;
+            int h = (int) Math.ceil((top(code) - bottom(code)) * size + range) + 2 * padding;
+            if (x + w > width) {
+                x = 0;
+                y += rowHeight;
+                rowHeight = 0;
+            }
+            if (y + h > height - 3 || w > width) return couldNotFit(codes.size - i, codes.size);
+            boxes[i * 4] = x;
+            boxes[i * 4 + 1] = y;
+            boxes[i * 4 + 2] = w;
+            boxes[i * 4 + 3] = h;
+            x += w;
+            rowHeight = Math.max(rowHeight, h);
+        }
+
+        JsonValue glyphs = new JsonValue(JsonValue.ValueType.array);
+        Pixmap atlas = new Pixmap(width, height, Pixmap.Format.RGBA8888);
+        try {
+            atlas.setBlending(Pixmap.Blending.None);
+            atlas.setColor(softmask ? 0 : 0x000000FF);
+            atlas.fill();
+            atlas.setColor(-1);
+            for (int i = 0; i < codes.size; i++) {
+                int code = codes.get(i), bx = boxes[i * 4], by = boxes[i * 4 + 1], w = boxes[i * 4 + 2], h = boxes[i * 4 + 3];
+                double advance = advance(code);
+                JsonValue glyph = new JsonValue(JsonValue.ValueType.object);
+                glyph.addChild("unicode", new JsonValue(code));
+                glyph.addChild("advance", new JsonValue(advance));
+                if (w >= 0) {
+                    atlas.fillRectangle(bx + padding + 1, by + padding + 1, w - 2 * padding - 2, h - 2 * padding - 2);
+                    glyph.addChild("planeBounds", bounds(0.02, bottom(code), advance - 0.02, top(code)));
+                    glyph.addChild("atlasBounds", bounds(bx + padding + 0.5, height - (by + h - padding) + 0.5,
+                            bx + w - padding - 0.5, height - (by + padding) - 0.5));
+                }
+                glyphs.addChild(glyph);
+            }
+            PixmapIO.writePNG(resolve(workingDir, imageOut), atlas);
+        } finally {
+            atlas.dispose();
+        }
+
+        JsonValue root = new JsonValue(JsonValue.ValueType.object);
+        JsonValue info = new JsonValue(JsonValue.ValueType.object);
+        info.addChild("type", new JsonValue(type));
+        if (!softmask) info.addChild("distanceRange", new JsonValue(range));
+        info.addChild("size", new JsonValue(size));
+        info.addChild("width", new JsonValue(width));
+        info.addChild("height", new JsonValue(height));
+        info.addChild("yOrigin", new JsonValue("bottom"));
+        root.addChild("atlas", info);
+        JsonValue metrics = new JsonValue(JsonValue.ValueType.object);
+        metrics.addChild("emSize", new JsonValue(1));
+        metrics.addChild("lineHeight", new JsonValue(1.2));
+        metrics.addChild("ascender", new JsonValue(0.95));
+        metrics.addChild("descender", new JsonValue(-0.25));
+        metrics.addChild("underlineY", new JsonValue(-0.2));
+        metrics.addChild("underlineThickness", new JsonValue(0.06));
+        root.addChild("metrics", metrics);
+        root.addChild("glyphs", glyphs);
+        JsonValue kerning = new JsonValue(JsonValue.ValueType.array);
+        for (int i = 0; i + 1 < KERNING_PAIRS.length(); i += 2) {
+            int first = KERNING_PAIRS.charAt(i), second = KERNING_PAIRS.charAt(i + 1);
+            if (!codes.contains(first) || !codes.contains(second)) continue;
+            JsonValue pair = new JsonValue(JsonValue.ValueType.object);
+            pair.addChild("unicode1", new JsonValue(first));
+            pair.addChild("unicode2", new JsonValue(second));
+            pair.addChild("advance", new JsonValue(-0.05 - (first + second) % 4 * 0.01));
+            kerning.addChild(pair);
+        }
+        root.addChild("kerning", kerning);
+        resolve(workingDir, jsonOut).writeString(root.toJson(JsonWriter.OutputType.json), false, "UTF-8");
+        return "";
+    }
+
+    private static String couldNotFit(int missing, int total) {
+        return String.format(Locale.ROOT, "Error: Could not fit %d out of %d glyphs into the atlas.", missing, total);
+    }
+
+    /** An advance between 0.3 and 0.9 em that depends only on the codepoint. */
+    private static double advance(int code) {
+        int h = code * 0x9E3779B9;
+        return (30 + (h >>> 16) % 61) / 100.0;
+    }
+
+    private static double top(int code) {
+        return (72 + code % 7) / 100.0;
+    }
+
+    private static double bottom(int code) {
+        return code % 5 == 0 ? -0.2 : -0.01;
+    }
+
+    private static JsonValue bounds(double left, double bottom, double right, double top) {
+        JsonValue b = new JsonValue(JsonValue.ValueType.object);
+        b.addChild("left", new JsonValue(left));
+        b.addChild("bottom", new JsonValue(bottom));
+        b.addChild("right", new JsonValue(right));
+        b.addChild("top", new JsonValue(top));
+        return b;
+    }
+
+    /** {@code path} as the tool would see it, relative to {@code workingDir} unless absolute. */
+    private static FileHandle resolve(File workingDir, String path) {
+        File file = new File(path);
+        return new FileHandle(file.isAbsolute() ? file : new File(workingDir, path));
+    }
+
+    /** The argument {@code offset} places after {@code flag} in {@code command}. */
+    private static String arg(List<String> command, String flag, int offset) {
+        int i = command.indexOf(flag);
+        if (i < 0 || i + offset >= command.size()) {
+            throw new IllegalArgumentException("Fake msdf-atlas-gen needs " + flag + " in " + command);
+        }
+        return command.get(i + offset);
+    }
+}
@@ -0,0 +1,197 @@
+package com.github.tommyettinger;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Java Flight Recorder events for the font pipeline, so a run can be
+ * recorded with {@code --jfr FILE} and its hot spots read in JDK Mission
+ * Control or {@code jfr print}, next to the JVM's own GC, allocation and
+ * I/O events.
+ * <p>
+ * Four event types are defined, all in the "Fontwriter" category:
+ * <ul>
+ *   <li>{@code fontwriter.Stage}: one step of {@link FontWriter#write},
+ *       as timed by {@link JobReport}, with bytes in and out;</li>
+ *   <li>{@code fontwriter.ToolRun}: one {@link BinaryExec} run, with the
+ *       command line, exit code, failure class, CPU time and peak RSS;</li>
+ *   <li>{@code fontwriter.PngWrite}: one {@link IndexedPngWriter#write},
+ *       with dimensions and bytes written;</li>
+ *   <li>{@code fontwriter.Conversion}: one {@link FontwriterUtils}
+ *       conversion of a font's JSON into a compressed format.</li>
+ * </ul>
+ * The project compiles for Java 8, where the {@code jdk.jfr} API cannot
+ * be linked against, so the event types are built at run time with
+ * {@code jdk.jfr.EventFactory}, through reflection. Events are only
+ * created when {@link #configure} enabled them: with {@code --jfr}, or
+ * when the JVM was already started with a recording
+ * ({@code -XX:StartFlightRecording}). Otherwise every method here
+ * returns at once, and {@link #begin} returns null.
+ */
+final class FlightEvents {
+
+    private FlightEvents() {} // utility class
+
+    /** An event type and the names of its fields, in order. */
+    static final class Type {
+        final String name;
+        final String[] fields;
+        Object factory;
+
+        Type(String name, String... fields) {
+            this.name = name;
+            this.fields = fields;
+        }
+    }
+
+    static final Type STAGE = new Type("fontwriter.Stage", "font", "mode", "stage", "bytesIn", "bytesOut", "runs");
+    static final Type TOOL_RUN = new Type("fontwriter.ToolRun", "tool", "command", "exitCode", "failure",
+            "cpuTime", "peakRss");
+    static final Type PNG_WRITE = new Type("fontwriter.PngWrite", "file", "width", "height", "bytes");
+    static final Type CONVERSION = new Type("fontwriter.Conversion", "format", "file", "bytesIn", "bytesOut");
+
+    private static volatile boolean enabled = false;
+    private static Object recording;
+    private static Path destination;
+    private static Method newEvent, set, beginMethod, end, commit;
+
+    /**
+     * Registers the event types if {@code config.jfrPath} is set or a
+     * recording is already running, and starts a recording to
+     * {@code config.jfrPath} if it is set. {@link Main} calls
+     * {@link #stop()} before it exits, even after a failure; for exits it
+     * can't see coming, such as Ctrl+C ending {@code --watch} or
+     * {@code --daemon}, the recording is set to dump on exit, which the
+     * JVM's own Flight Recorder shutdown hook does. A second hook here
+     * would race that one over the same file. Prints a warning and carries on without
+     * events if this JVM has no Flight Recorder.
+     */
+    static synchronized void configure(FontwriterConfig config) {
+        try {
+            Class<?> recorder = Class.forName("jdk.jfr.FlightRecorder");
+            boolean running = (Boolean) recorder.getMethod("isInitialized").invoke(null)
+                    && !((List<?>) recorder.getMethod("getRecordings")
+                    .invoke(recorder.getMethod("getFlightRecorder").invoke(null))).isEmpty();
+            if (config.jfrPath == null && !running) return;
+            register();
+            enabled = true;
+            if (config.jfrPath != null) {
+                Class<?> configuration = Class.forName("jdk.jfr.Configuration");
+                Class<?> recordingClass = Class.forName("jdk.jfr.Recording");
+                Object profile = configuration.getMethod("getConfiguration", String.class).invoke(null, "profile");
+                recording = recordingClass.getConstructor(configuration).newInstance(profile);
+                destination = Paths.get(config.jfrPath).toAbsolutePath();
+                recordingClass.getMethod("setName", String.class).invoke(recording, "fontwriter");
+                recordingClass.getMethod("setDestination", Path.class).invoke(recording, destination);
+                recordingClass.getMethod("setDumpOnExit", boolean.class).invoke(recording, true);
+                recordingClass.getMethod("start").invoke(recording);
+                System.out.println("Recording Flight Recorder events to " + destination);
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            enabled = false;
+            recording = null;
+            if (config.jfrPath != null) {
+                System.err.println("Warning: Java Flight Recorder is not available in this JVM ("
+                        + e + "); continuing without --jfr.");
+            }
+        }
+    }
+
+    /**
+     * Stops the recording started by {@link #configure}, which writes it
+     * to its file. Does nothing if none was started.
+     */
+    static synchronized void stop() {
+        if (recording == null) return;
+        try {
+            recording.getClass().getMethod("stop").invoke(recording);
+            recording.getClass().getMethod("close").invoke(recording);
+            System.out.println("Flight recording written to " + destination);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            System.err.println("Warning: could not write the flight recording: " + e);
+        }
+        recording = null;
+    }
+
+    /** Creates and begins an event of {@code type}, or returns null if events are off. */
+    static Object begin(Type type) {
+        if (!enabled) return null;
+        try {
+            Object event = newEvent.invoke(type.factory);
+            beginMethod.invoke(event);
+            return event;
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Ends {@code event} and commits it with {@code values} for its
+     * fields, in the order its {@link Type} lists them. Does nothing if
+     * {@code event} is null.
+     */
+    static void commit(Object event, Object... values) {
+        if (event == null) return;
+        try {
+            end.invoke(event);
+            for (int i = 0; i < values.length; i++) {
+                set.invoke(event, i, values[i]);
+            }
+            commit.invoke(event);
+        } catch (ReflectiveOperationException ignored) {
+            // An event that can't be written is dropped, like JFR itself does.
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void register() throws ReflectiveOperationException {
+        Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+        Class<?> eventClass = Class.forName("jdk.jfr.Event");
+        Class<?> elementClass = Class.forName("jdk.jfr.AnnotationElement");
+        Class<?> descriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+        Constructor<?> element = elementClass.getConstructor(Class.class, Object.class);
+        Constructor<?> descriptor = descriptorClass.getConstructor(Class.class, String.class, List.class);
+        Class<? extends Annotation> name = (Class<? extends Annotation>) Class.forName("jdk.jfr.Name");
+        Class<? extends Annotation> label = (Class<? extends Annotation>) Class.forName("jdk.jfr.Label");
+        Class<? extends Annotation> category = (Class<? extends Annotation>) Class.forName("jdk.jfr.Category");
+        Class<? extends Annotation> timespan = (Class<? extends Annotation>) Class.forName("jdk.jfr.Timespan");
+        Class<? extends Annotation> dataAmount = (Class<? extends Annotation>) Class.forName("jdk.jfr.DataAmount");
+        Method create = factoryClass.getMethod("create", List.class, List.class);
+        newEvent = factoryClass.getMethod("newEvent");
+        set = eventClass.getMethod("set", int.class, Object.class);
+        beginMethod = eventClass.getMethod("begin");
+        end = eventClass.getMethod("end");
+        commit = eventClass.getMethod("commit");
+
+        for (Type type : Arrays.asList(STAGE, TOOL_RUN, PNG_WRITE, CONVERSION)) {
+            List<Object> annotations = Arrays.asList(
+                    element.newInstance(name, type.name),
+                    element.newInstance(label, type.name.substring(type.name.indexOf('.') + 1)),
+                    element.newInstance(category, new String[]{"Fontwriter"}));
+            List<Object> fields = new ArrayList<>(type.fields.length);
+            for (String field : type.fields) {
+                Class<?> kind = String.class;
+                List<Object> units = Collections.emptyList();
+                if (field.startsWith("bytes") || field.equals("peakRss")) {
+                    kind = long.class;
+                    units = Collections.singletonList(element.newInstance(dataAmount, "BYTES"));
+                } else if (field.equals("cpuTime")) {
+                    kind = long.class;
+                    units = Collections.singletonList(element.newInstance(timespan, "NANOSECONDS"));
+                } else if (field.equals("runs") || field.equals("exitCode")
+                        || field.equals("width") || field.equals("height")) {
+                    kind = int.class;
+                }
+                fields.add(descriptor.newInstance(kind, field, units));
+            }
+            type.factory = create.invoke(null, annotations, fields);
+        }
+    }
+}
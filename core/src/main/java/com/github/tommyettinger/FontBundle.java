@@ -0,0 +1,227 @@
+package com.github.tommyettinger;
+
+import com.badlogic.gdx.graphics.Pixmap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reference reader for the {@code .fwb} font bundles written by
+ * {@link FontBundleWriter}.
+ * <p>
+ * A bundle is read in place: {@link #map(File)} memory-maps the file
+ * and every accessor reads directly from the resulting
+ * {@link ByteBuffer}, so opening a bundle costs a header check and
+ * nothing else. This class has no dependency on the rest of fontwriter
+ * and can be copied into a game project as-is.
+ * <p>
+ * All values are little-endian. The file is laid out as:
+ * <pre>
+ *   offset  size  field
+ *   0       4     magic "FWB1"
+ *   4       2     format version (1)
+ *   6       1     mode: 0 standard, 1 sdf, 2 msdf, 3 mtsdf, 4 psdf
+ *   7       1     channels per atlas pixel (1 = alpha, 3 = RGB)
+ *   8       4     float distanceRange
+ *   12      4     float size (pixels per em)
+ *   16      4     atlas width
+ *   20      4     atlas height
+ *   24      4     yOrigin of atlasBounds (0 bottom, 1 top)
+ *   28      24    float emSize, lineHeight, ascender, descender,
+ *                 underlineY, underlineThickness
+ *   52      8     glyph count, glyph table offset
+ *   60      12    direct index first codepoint, count, offset
+ *   72      8     kerning count, kerning table offset
+ *   80      8     pixel offset, pixel length
+ *   88      8     reserved
+ * </pre>
+ * The glyph table holds {@link #GLYPH_SIZE}-byte records sorted by
+ * codepoint: the codepoint, the advance, and the plane and atlas
+ * bounds (left, bottom, right, top). The direct index is an array of
+ * unsigned shorts mapping {@code codepoint - first} to a glyph index
+ * ({@link #NO_GLYPH} when absent, so a bundle holds fewer than 65535
+ * glyphs); codepoints outside it fall back to
+ * a binary search of the glyph table. The kerning table holds
+ * {@link #KERNING_SIZE}-byte records (first, second, advance) sorted
+ * by first then second codepoint. Pixels are stored row by row from
+ * the top of the image, matching {@link Pixmap}.
+ */
+public final class FontBundle {
+
+    public static final int MAGIC = 0x31425746; // "FWB1" read little-endian
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 96;
+    public static final int GLYPH_SIZE = 40;
+    public static final int KERNING_SIZE = 12;
+    public static final int NO_GLYPH = 0xFFFF;
+
+    public static final int MODE_STANDARD = 0, MODE_SDF = 1, MODE_MSDF = 2, MODE_MTSDF = 3, MODE_PSDF = 4;
+
+    private final ByteBuffer buf;
+    private final int glyphCount, glyphOffset, indexFirst, indexCount, indexOffset,
+            kerningCount, kerningOffset;
+
+    /**
+     * Wraps an existing buffer holding a complete bundle. The buffer's
+     * byte order is changed to little-endian.
+     *
+     * @throws IllegalArgumentException if the magic number or version
+     *         does not match
+     */
+    public FontBundle(ByteBuffer buffer) {
+        this.buf = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buf.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a fontwriter bundle (bad magic number).");
+        }
+        if ((buf.getShort(4) & 0xFFFF) != VERSION) {
+            throw new IllegalArgumentException("Unsupported bundle version " + (buf.getShort(4) & 0xFFFF) + ".");
+        }
+        glyphCount = buf.getInt(52);
+        glyphOffset = buf.getInt(56);
+        indexFirst = buf.getInt(60);
+        indexCount = buf.getInt(64);
+        indexOffset = buf.getInt(68);
+        kerningCount = buf.getInt(72);
+        kerningOffset = buf.getInt(76);
+    }
+
+    /**
+     * Memory-maps {@code file} read-only and wraps it. The mapping stays
+     * valid after the underlying channel is closed.
+     */
+    public static FontBundle map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            return new FontBundle(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Converts an msdf-atlas-gen {@code atlas.type} string to one of the
+     * {@code MODE_} constants. {@code softmask} and {@code hardmask} are
+     * both reported as {@link #MODE_STANDARD}.
+     */
+    public static int modeCode(String atlasType) {
+        switch (atlasType) {
+            case "sdf": return MODE_SDF;
+            case "msdf": return MODE_MSDF;
+            case "mtsdf": return MODE_MTSDF;
+            case "psdf": return MODE_PSDF;
+            default: return MODE_STANDARD;
+        }
+    }
+
+    public int mode() { return buf.get(6); }
+    public int channels() { return buf.get(7); }
+    public float distanceRange() { return buf.getFloat(8); }
+    public float size() { return buf.getFloat(12); }
+    public int atlasWidth() { return buf.getInt(16); }
+    public int atlasHeight() { return buf.getInt(20); }
+    public boolean yOriginTop() { return buf.getInt(24) != 0; }
+    public float emSize() { return buf.getFloat(28); }
+    public float lineHeight() { return buf.getFloat(32); }
+    public float ascender() { return buf.getFloat(36); }
+    public float descender() { return buf.getFloat(40); }
+    public float underlineY() { return buf.getFloat(44); }
+    public float underlineThickness() { return buf.getFloat(48); }
+    public int glyphCount() { return glyphCount; }
+    public int kerningCount() { return kerningCount; }
+
+    /**
+     * Finds the glyph record for a codepoint.
+     *
+     * @return an index usable with the per-glyph accessors, or
+     *         {@code -1} if the font has no such glyph
+     */
+    public int glyphIndex(int codepoint) {
+        int slot = codepoint - indexFirst;
+        if (slot >= 0 && slot < indexCount) {
+            int i = buf.getShort(indexOffset + slot * 2) & 0xFFFF;
+            return i == NO_GLYPH ? -1 : i;
+        }
+        int lo = 0, hi = glyphCount - 1;
+        while (lo <= hi) {
+            int mid = lo + hi >>> 1;
+            int c = buf.getInt(glyphOffset + mid * GLYPH_SIZE);
+            if (c < codepoint) lo = mid + 1;
+            else if (c > codepoint) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    public int codepoint(int glyph) { return buf.getInt(glyphOffset + glyph * GLYPH_SIZE); }
+    public float advance(int glyph) { return buf.getFloat(glyphOffset + glyph * GLYPH_SIZE + 4); }
+
+    /**
+     * Reads one plane bound: 0 left, 1 bottom, 2 right, 3 top, in em
+     * units relative to the pen position.
+     */
+    public float planeBound(int glyph, int side) { return buf.getFloat(glyphOffset + glyph * GLYPH_SIZE + 8 + side * 4); }
+
+    /**
+     * Reads one atlas bound: 0 left, 1 bottom, 2 right, 3 top, in
+     * pixels, measured from the edge given by {@link #yOriginTop()}.
+     */
+    public float atlasBound(int glyph, int side) { return buf.getFloat(glyphOffset + glyph * GLYPH_SIZE + 24 + side * 4); }
+
+    /**
+     * Looks up the kerning adjustment between two codepoints, in em
+     * units, or {@code 0} if the pair has none.
+     */
+    public float kerning(int first, int second) {
+        long key = (long) first << 32 | (second & 0xFFFFFFFFL);
+        int lo = 0, hi = kerningCount - 1;
+        while (lo <= hi) {
+            int mid = lo + hi >>> 1;
+            int at = kerningOffset + mid * KERNING_SIZE;
+            long k = (long) buf.getInt(at) << 32 | (buf.getInt(at + 4) & 0xFFFFFFFFL);
+            if (k < key) lo = mid + 1;
+            else if (k > key) hi = mid - 1;
+            else return buf.getFloat(at + 8);
+        }
+        return 0f;
+    }
+
+    /**
+     * Returns a read-only view of the raw atlas pixels, positioned at the
+     * first byte. Suitable for passing directly to
+     * {@code glTexImage2D} with {@code GL_ALPHA} (one channel) or
+     * {@code GL_RGB} (three channels) and an unpack alignment of 1.
+     */
+    public ByteBuffer pixels() {
+        ByteBuffer dup = buf.duplicate();
+        int offset = buf.getInt(80);
+        dup.position(offset).limit(offset + buf.getInt(84));
+        return dup.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Copies the atlas into a new RGBA8888 {@link Pixmap} that matches
+     * the post-processed PNG: single-channel atlases become white with
+     * the stored alpha, and RGB atlases become opaque. This is a
+     * convenience for code that already expects the PNG; it is not
+     * zero-copy.
+     */
+    public Pixmap toPixmap() {
+        final int w = atlasWidth(), h = atlasHeight(), channels = channels();
+        Pixmap pm = new Pixmap(w, h, Pixmap.Format.RGBA8888);
+        ByteBuffer src = pixels(), dst = pm.getPixels();
+        for (int i = 0, n = w * h; i < n; i++) {
+            if (channels == 1) {
+                dst.put((byte) -1).put((byte) -1).put((byte) -1).put(src.get());
+            } else {
+                dst.put(src.get()).put(src.get()).put(src.get()).put((byte) -1);
+            }
+        }
+        dst.flip();
+        return pm;
+    }
+}
@@ -0,0 +1,195 @@
+package com.github.tommyettinger;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Writes a Structured JSON font and its atlas PNG as a single
+ * {@code .fwb} bundle that {@link FontBundle} can read without any
+ * parsing.
+ * <p>
+ * Every other descriptor format fontwriter emits ({@code .json},
+ * {@code .dat}, {@code .ubj}, and their LZMA variants) has to be fully
+ * decoded into a tree of JSON values before a font can be built, and
+ * the PNG has to be inflated and unfiltered on top of that. A bundle
+ * instead lays everything out as fixed-size little-endian records so a
+ * runtime can map the file and read fields straight out of a
+ * {@link ByteBuffer}. The layout is documented on {@link FontBundle},
+ * which also serves as the reference reader.
+ * <p>
+ * Atlas pixels are stored uncompressed: three RGB bytes per pixel for
+ * MSDF atlases, and one alpha byte per pixel for every other mode,
+ * since those atlases keep their coverage or distance in alpha (their
+ * PNG is white with an alpha channel by the time it is bundled). Bundles are therefore larger on disk than the
+ * PNG they replace; they trade download size for load time.
+ */
+public final class FontBundleWriter {
+
+    private FontBundleWriter() {} // utility class
+
+    /**
+     * Writes {@code <json name without extension>.fwb} next to the
+     * given JSON file.
+     *
+     * @param jsonFile the Structured JSON descriptor written by
+     *                 msdf-atlas-gen (after any kerning pruning)
+     * @param pngFile  the atlas PNG after {@link Main} post-processing
+     * @return the bundle file that was written
+     * @throws FontWriterException.BadInput if the font has more glyphs
+     *         than the direct index can number (65535 or more)
+     * @throws RuntimeException wrapping any {@link IOException} raised
+     *         while writing the bundle
+     */
+    public static FileHandle write(FileHandle jsonFile, FileHandle pngFile) {
+        FileHandle outFile = jsonFile.sibling(jsonFile.nameWithoutExtension() + ".fwb");
+        JsonValue root = new JsonReader().parse(jsonFile);
+        JsonValue atlas = root.get("atlas"), metrics = root.get("metrics");
+
+        // Glyphs, sorted by codepoint so the reader can binary search.
+        Array<JsonValue> glyphs = new Array<>();
+        for (JsonValue g = root.get("glyphs").child; g != null; g = g.next) {
+            glyphs.add(g);
+        }
+        glyphs.sort((a, b) -> Integer.compare(a.getInt("unicode"), b.getInt("unicode")));
+        final int glyphCount = glyphs.size;
+        if (glyphCount >= FontBundle.NO_GLYPH) {
+            throw new FontWriterException.BadInput(jsonFile.name() + " has " + glyphCount
+                    + " glyphs, but a .fwb bundle can hold at most " + (FontBundle.NO_GLYPH - 1), null, null);
+        }
+
+        // Direct index over the dense low range: extend from the lowest
+        // codepoint for as long as at least half the slots are used.
+        int indexFirst = glyphCount == 0 ? 0 : glyphs.first().getInt("unicode"), indexCount = 0;
+        for (int i = 0; i < glyphCount; i++) {
+            int span = glyphs.get(i).getInt("unicode") - indexFirst + 1;
+            if (span <= 0x10000 && (i + 1) * 2 >= span) {
+                indexCount = span;
+            }
+        }
+
+        Array<JsonValue> kerning = new Array<>();
+        JsonValue kern = root.get("kerning");
+        for (JsonValue k = kern == null ? null : kern.child; k != null; k = k.next) {
+            kerning.add(k);
+        }
+        kerning.sort((a, b) -> {
+            int c = Integer.compare(a.getInt("unicode1"), b.getInt("unicode1"));
+            return c != 0 ? c : Integer.compare(a.getInt("unicode2"), b.getInt("unicode2"));
+        });
+
+        String type = atlas.getString("type", "softmask");
+        int modeCode = FontBundle.modeCode(type);
+        int channels = modeCode == FontBundle.MODE_MSDF ? 3 : 1;
+
+        Pixmap pm = new Pixmap(pngFile);
+        try {
+            final int w = pm.getWidth(), h = pm.getHeight();
+            int glyphOffset = FontBundle.HEADER_SIZE;
+            int indexOffset = glyphOffset + glyphCount * FontBundle.GLYPH_SIZE;
+            int kerningOffset = align4(indexOffset + indexCount * 2);
+            int pixelOffset = align4(kerningOffset + kerning.size * FontBundle.KERNING_SIZE);
+            int pixelLength = w * h * channels;
+
+            ByteBuffer buf = ByteBuffer.allocate(pixelOffset + pixelLength).order(ByteOrder.LITTLE_ENDIAN);
+            buf.putInt(FontBundle.MAGIC);
+            buf.putShort((short) FontBundle.VERSION);
+            buf.put((byte) modeCode);
+            buf.put((byte) channels);
+            buf.putFloat(atlas.getFloat("distanceRange", 0f));
+            buf.putFloat(atlas.getFloat("size", 0f));
+            buf.putInt(w);
+            buf.putInt(h);
+            buf.putInt("top".equals(atlas.getString("yOrigin", "bottom")) ? 1 : 0);
+            buf.putFloat(metrics.getFloat("emSize", 1f));
+            buf.putFloat(metrics.getFloat("lineHeight", 0f));
+            buf.putFloat(metrics.getFloat("ascender", 0f));
+            buf.putFloat(metrics.getFloat("descender", 0f));
+            buf.putFloat(metrics.getFloat("underlineY", 0f));
+            buf.putFloat(metrics.getFloat("underlineThickness", 0f));
+            buf.putInt(glyphCount);
+            buf.putInt(glyphOffset);
+            buf.putInt(indexFirst);
+            buf.putInt(indexCount);
+            buf.putInt(indexOffset);
+            buf.putInt(kerning.size);
+            buf.putInt(kerningOffset);
+            buf.putInt(pixelOffset);
+            buf.putInt(pixelLength);
+
+            buf.position(glyphOffset);
+            for (JsonValue g : glyphs) {
+                buf.putInt(g.getInt("unicode"));
+                buf.putFloat(g.getFloat("advance", 0f));
+                putBounds(buf, g.get("planeBounds"));
+                putBounds(buf, g.get("atlasBounds"));
+            }
+
+            for (int i = 0; i < indexCount; i++) {
+                buf.putShort(indexOffset + i * 2, (short) FontBundle.NO_GLYPH);
+            }
+            for (int i = 0; i < glyphCount; i++) {
+                int slot = glyphs.get(i).getInt("unicode") - indexFirst;
+                if (slot < indexCount) {
+                    buf.putShort(indexOffset + slot * 2, (short) i);
+                }
+            }
+
+            buf.position(kerningOffset);
+            for (JsonValue k : kerning) {
+                buf.putInt(k.getInt("unicode1"));
+                buf.putInt(k.getInt("unicode2"));
+                buf.putFloat(k.getFloat("advance", 0f));
+            }
+
+            buf.position(pixelOffset);
+            for (int y = 0; y < h; y++) {
+                for (int x = 0; x < w; x++) {
+                    int color = pm.getPixel(x, y);
+                    if (channels == 1) {
+                        buf.put((byte) color);
+                    } else {
+                        buf.put((byte) (color >>> 24));
+                        buf.put((byte) (color >>> 16));
+                        buf.put((byte) (color >>> 8));
+                    }
+                }
+            }
+
+            OutputStream out = outFile.write(false);
+            try {
+                out.write(buf.array(), 0, buf.capacity());
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            pm.dispose();
+        }
+        return outFile;
+    }
+
+    /** Writes left, bottom, right, top; all zero for glyphs with no bounds (such as space). */
+    private static void putBounds(ByteBuffer buf, JsonValue bounds) {
+        if (bounds == null) {
+            buf.putFloat(0f).putFloat(0f).putFloat(0f).putFloat(0f);
+        } else {
+            buf.putFloat(bounds.getFloat("left", 0f));
+            buf.putFloat(bounds.getFloat("bottom", 0f));
+            buf.putFloat(bounds.getFloat("right", 0f));
+            buf.putFloat(bounds.getFloat("top", 0f));
+        }
+    }
+
+    private static int align4(int offset) {
+        return offset + 3 & -4;
+    }
+}
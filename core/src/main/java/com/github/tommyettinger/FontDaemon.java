@@ -0,0 +1,323 @@
+package com.github.tommyettinger;
+
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+import com.badlogic.gdx.utils.JsonWriter;
+import com.badlogic.gdx.utils.SerializationException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves font jobs to other processes over a localhost socket, so a
+ * build that needs many fonts pays for JVM startup, class loading and
+ * native libraries once instead of once per font ({@code --daemon}).
+ * <p>
+ * The protocol is one JSON object per line, in UTF-8, both ways. A
+ * client sends jobs:
+ * <pre>
+ *   {"id":"title","args":["/fonts/Gentium.ttf","msdf","60","--charset","latin"],"out":"assets"}
+ * </pre>
+ * {@code args} are the command-line arguments for one font, resolved
+ * against the daemon's working directory, so absolute paths are safest.
+ * {@code out} is the folder that gets {@code fonts/}, resolved against
+ * the daemon's folder, and it defaults to that folder. The port is open
+ * to every local process, so a job whose {@code out} leads outside the
+ * daemon's folder (after following {@code ..} and symbolic links) is
+ * refused. {@code id} is echoed back, and is numbered by the daemon if
+ * left out; a job can't reuse the id of an unfinished one. Each job is
+ * answered with, in order:
+ * <ul>
+ *   <li>{@code {"id":..,"event":"queued","ahead":N}}, with the number of
+ *       jobs queued or running before it;</li>
+ *   <li>{@code {"id":..,"event":"started"}};</li>
+ *   <li>{@code {"id":..,"event":"stage","stage":"atlas-gen"}} as each
+ *       step begins;</li>
+ *   <li>then either {@code {"id":..,"event":"done","font":..,"mode":..,
+ *       "size":..,"ms":..,"outputs":[{"path":..,"bytes":..},..]}} or
+ *       {@code {"id":..,"event":"failed","error":"DoesNotFit",
+ *       "exitCode":1,"message":..}}, where {@code error} names the
+ *       {@link FontWriterException} subclass.</li>
+ * </ul>
+ * A client may send many jobs, and jobs from all clients share one
+ * {@link JobScheduler}, so their events can interleave; match them by
+ * {@code id}. A client that ends its output still gets the events of
+ * the jobs it sent before the daemon closes the connection. Three more
+ * requests are understood: {@code {"command":"status"}}, answered with
+ * the number of unfinished jobs; {@code {"command":"cancel","id":..}},
+ * which cancels that job, whoever sent it, through
+ * {@link FontWriter.Job#cancel()}, and is answered with
+ * {@code {"id":..,"event":"cancelling"}}, after which the job fails with
+ * {@code "error":"Cancelled"}; and {@code {"command":"shutdown"}},
+ * which stops accepting connections and returns from {@link #serve}
+ * once every queued job is done. Lines that can't be understood are
+ * answered with {@code {"event":"error","message":..}}.
+ * <p>
+ * Jobs run through {@link FontWriter}, so the daemon writes everything
+ * the command line does except the documentation previews; run
+ * {@code --preview} on the output folder for those.
+ */
+final class FontDaemon {
+
+    private final FontWriter writer;
+    private final File defaultOut;
+    private final JobScheduler scheduler;
+    private final AtomicLong nextId = new AtomicLong();
+    /** Queued and running jobs by id, so they can be cancelled. */
+    private final Map<String, FontWriter.Job> unfinished = new ConcurrentHashMap<>();
+    private volatile ServerSocket server;
+    private volatile boolean shuttingDown;
+
+    /**
+     * @param writer     runs the jobs
+     * @param defaultOut output folder for jobs that don't name one
+     * @param jobs       how many jobs may run at once
+     */
+    FontDaemon(FontWriter writer, File defaultOut, int jobs) {
+        this.writer = writer;
+        this.defaultOut = defaultOut.getAbsoluteFile();
+        this.scheduler = new JobScheduler(jobs);
+    }
+
+    /**
+     * Listens on {@code port} of the loopback address until a client asks
+     * for a shutdown, then waits for the queued jobs and returns.
+     *
+     * @param port the port, or 0 for any free port; the one chosen is printed
+     * @throws IOException if the port can't be listened on
+     */
+    void serve(int port) throws IOException, InterruptedException {
+        try (ServerSocket socket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            server = socket;
+            System.out.println("fontwriter daemon listening on " + socket.getInetAddress().getHostAddress() + ":"
+                    + socket.getLocalPort() + ", writing to " + defaultOut.getPath());
+            while (!shuttingDown) {
+                final Socket client;
+                try {
+                    client = socket.accept();
+                } catch (SocketException e) {
+                    if (shuttingDown) break;
+                    throw e;
+                }
+                Thread t = new Thread(() -> talk(client), "fontwriter-client-" + client.getPort());
+                t.setDaemon(true);
+                t.start();
+            }
+        }
+        scheduler.shutdown();
+        System.out.println("fontwriter daemon stopped.");
+    }
+
+    /** Reads requests from one connection until it ends, then waits for its jobs before closing it. */
+    private void talk(Socket socket) {
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8))) {
+            Client client = new Client(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8));
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!line.trim().isEmpty()) request(client, line);
+            }
+            client.awaitIdle();
+        } catch (IOException ignored) {
+            // The client went away; its jobs still run, and their events are dropped.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void request(Client client, String line) {
+        final JsonValue request;
+        try {
+            request = new JsonReader().parse(line);
+        } catch (SerializationException e) {
+            client.send(error("Not a JSON object: " + line));
+            return;
+        }
+        if (request == null || !request.isObject()) {
+            client.send(error("Not a JSON object: " + line));
+            return;
+        }
+        String command = request.getString("command", null);
+        if ("status".equals(command)) {
+            JsonValue status = event(null, "status");
+            status.addChild("unfinished", new JsonValue(scheduler.unfinished()));
+            client.send(status);
+            return;
+        }
+        if ("shutdown".equals(command)) {
+            shuttingDown = true;
+            client.send(event(null, "shutdown"));
+            try {
+                server.close();
+            } catch (IOException ignored) {
+                // Already closed.
+            }
+            return;
+        }
+        if ("cancel".equals(command)) {
+            String id = request.getString("id", null);
+            FontWriter.Job job = id == null ? null : unfinished.get(id);
+            if (job == null) {
+                client.send(error("No unfinished job with id " + id));
+                return;
+            }
+            job.cancel();
+            client.send(event(id, "cancelling"));
+            return;
+        }
+        if (command != null) {
+            client.send(error("Unknown command: " + command));
+            return;
+        }
+
+        final String id = request.getString("id", String.valueOf(nextId.incrementAndGet()));
+        JsonValue args = request.get("args");
+        if (args == null || !args.isArray()) {
+            client.send(error("A job needs an \"args\" array"));
+            return;
+        }
+        if (shuttingDown) {
+            client.send(failed(id, "Cancelled", 1, "The daemon is shutting down"));
+            return;
+        }
+        final FontWriter.Job job;
+        try {
+            job = FontWriter.Job.parse(request.has("out") ? outputDir(request.getString("out")) : defaultOut,
+                    args.asStringArray());
+        } catch (IllegalArgumentException e) {
+            client.send(failed(id, "BadInput", 1, e.getMessage()));
+            return;
+        }
+        if (unfinished.putIfAbsent(id, job) != null) {
+            client.send(failed(id, "BadInput", 1, "A job with id " + id + " is unfinished"));
+            return;
+        }
+        client.started();
+        String key = new File(job.outputDir(), job.font() + "-" + job.mode()).getPath();
+        JsonValue queued = event(id, "queued");
+        // Sent before the job can start, so "queued" always comes first.
+        synchronized (client) {
+            queued.addChild("ahead", new JsonValue(scheduler.submit(key, () -> run(client, id, job))));
+            client.send(queued);
+        }
+    }
+
+    /**
+     * Resolves a job's {@code out} against the daemon's folder.
+     *
+     * @throws IllegalArgumentException if it leads outside that folder
+     */
+    private File outputDir(String out) {
+        File dir = new File(out);
+        if (!dir.isAbsolute()) dir = new File(defaultOut, out);
+        try {
+            String root = defaultOut.getCanonicalPath(), path = dir.getCanonicalPath();
+            if (path.equals(root) || path.startsWith(root.endsWith(File.separator) ? root : root + File.separator)) {
+                return new File(path);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Can't resolve \"out\": " + out + " (" + e.getMessage() + ")");
+        }
+        throw new IllegalArgumentException("\"out\" must be inside " + defaultOut.getPath() + ": " + out);
+    }
+
+    private void run(Client client, String id, FontWriter.Job job) {
+        try {
+            job.cancellation.check(id); // cancelled while queued
+            client.send(event(id, "started"));
+            FontWriter.Result result = writer.write(job, stage -> {
+                JsonValue e = event(id, "stage");
+                e.addChild("stage", new JsonValue(stage));
+                client.send(e);
+            });
+            JsonValue done = event(id, "done");
+            done.addChild("font", new JsonValue(result.fontName()));
+            done.addChild("mode", new JsonValue(result.mode().toString()));
+            done.addChild("size", new JsonValue(result.size()));
+            done.addChild("ms", new JsonValue(result.totalNanos() / 1e6));
+            JsonValue outputs = new JsonValue(JsonValue.ValueType.array);
+            for (Map.Entry<File, Long> e : result.outputs().entrySet()) {
+                JsonValue o = new JsonValue(JsonValue.ValueType.object);
+                o.addChild("path", new JsonValue(e.getKey().getPath()));
+                o.addChild("bytes", new JsonValue(e.getValue()));
+                outputs.addChild(o);
+            }
+            done.addChild("outputs", outputs);
+            client.send(done);
+        } catch (FontWriterException e) {
+            client.send(failed(id, e.getClass().getSimpleName(), e.exitCode(), e.getMessage()));
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            client.send(failed(id, e.getClass().getSimpleName(), 1, String.valueOf(e.getMessage())));
+        } finally {
+            unfinished.remove(id);
+            client.finished();
+        }
+    }
+
+    private static JsonValue event(String id, String event) {
+        JsonValue v = new JsonValue(JsonValue.ValueType.object);
+        if (id != null) v.addChild("id", new JsonValue(id));
+        v.addChild("event", new JsonValue(event));
+        return v;
+    }
+
+    private static JsonValue failed(String id, String error, int exitCode, String message) {
+        JsonValue v = event(id, "failed");
+        v.addChild("error", new JsonValue(error));
+        v.addChild("exitCode", new JsonValue(exitCode));
+        v.addChild("message", new JsonValue(message));
+        return v;
+    }
+
+    private static JsonValue error(String message) {
+        JsonValue v = event(null, "error");
+        v.addChild("message", new JsonValue(message));
+        return v;
+    }
+
+    /** One connection's output, and how many of its jobs haven't finished. */
+    private static final class Client {
+        private final Writer out;
+        private int unfinished;
+
+        Client(Writer out) {
+            this.out = out;
+        }
+
+        synchronized void send(JsonValue message) {
+            try {
+                out.write(message.toJson(JsonWriter.OutputType.json));
+                out.write('\n');
+                out.flush();
+            } catch (IOException ignored) {
+                // The client went away; the job carries on.
+            }
+        }
+
+        synchronized void started() {
+            unfinished++;
+        }
+
+        synchronized void finished() {
+            unfinished--;
+            notifyAll();
+        }
+
+        synchronized void awaitIdle() throws InterruptedException {
+            while (unfinished > 0) wait();
+        }
+    }
+}
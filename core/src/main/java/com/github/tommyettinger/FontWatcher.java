@@ -0,0 +1,221 @@
+package com.github.tommyettinger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Regenerates fonts as their inputs change ({@code --watch}).
+ * <p>
+ * Every .ttf/.otf in the folder is generated once in each of the
+ * {@code --modes}, and then the folder, and the {@code --lang} files when
+ * they decide the charset or the kerning, are watched with a
+ * {@link WatchService}. Changes are gathered until none has arrived for
+ * {@value #DEBOUNCE_MILLIS} ms, so one save that touches a file several
+ * times is one change, and then only the affected jobs run:
+ * <ul>
+ *   <li>a font that was added or changed is generated again in every
+ *       mode;</li>
+ *   <li>a change to the {@code --lang} files rebuilds the character map
+ *       of each font, and regenerates only the fonts whose map is
+ *       different, or all of them if {@code --kerning-lang} makes the
+ *       kerning depend on the text itself;</li>
+ *   <li>a deleted font is forgotten; its outputs are left alone.</li>
+ * </ul>
+ * Two things are reused between jobs. The character map of a font is
+ * built once and given to all of its modes, since it doesn't depend on
+ * the mode. And each job starts at the size that fit the last time
+ * instead of at {@value #INITIAL_SIZE}, which saves most of the
+ * msdf-atlas-gen runs when only the charset changed; a font that changed
+ * starts from scratch. If glyphs were removed, a larger size might now
+ * fit; restart {@code --watch} to look for it.
+ * <p>
+ * A job that fails prints why and leaves the watch running. Jobs are run
+ * by a function, so the caller decides what happens around each one;
+ * {@link Main} adds the preview and job report, as for a single font.
+ */
+final class FontWatcher {
+
+    /** How long changes must stop before the affected jobs run. */
+    static final long DEBOUNCE_MILLIS = 300;
+    /** The first size tried for a font with no size that fit before, as for {@code --bulk}. */
+    static final String INITIAL_SIZE = "280";
+
+    private final File folder;
+    private final FontwriterConfig template;
+    private final FontwriterConfig.Mode[] modes;
+    private final File outputDir;
+    private final Function<FontWriter.Job, FontWriter.Result> runner;
+    /** Character map of the last successful run, by font file name. */
+    private final Map<String, String> charMaps = new HashMap<>();
+    /** Size that fit in the last successful run, by font file name and mode. */
+    private final Map<String, Long> fitSizes = new HashMap<>();
+
+    /**
+     * @param folder    the folder of fonts to watch
+     * @param config    the {@code --watch} configuration; every job gets
+     *                  its flags, such as {@code --lang} and {@code --image-size}
+     * @param outputDir the folder jobs write into
+     * @param runner    runs one job and returns its result, or throws
+     *                  {@link FontWriterException}
+     */
+    FontWatcher(File folder, FontwriterConfig config, File outputDir,
+                Function<FontWriter.Job, FontWriter.Result> runner) {
+        this.folder = folder.getAbsoluteFile();
+        this.template = config.copy();
+        template.batchCommand = null;
+        template.batchCommandPath = null;
+        this.modes = FontwriterConfig.Mode.listFromString(config.watchModes);
+        this.outputDir = outputDir;
+        this.runner = runner;
+    }
+
+    /** Generates every font, then regenerates them as they change. Never returns normally. */
+    void watch() throws IOException, InterruptedException {
+        try (WatchService service = FileSystems.getDefault().newWatchService()) {
+            Path fontDir = register(service, folder);
+            // Directories holding --lang files, each with the one file name that matters, or null for all.
+            Map<Path, String> langDirs = new HashMap<>();
+            if (template.langPath != null && (template.resolveCharsetStrategy() == FontwriterConfig.CharsetStrategy.LANG
+                    || template.kerningFromLang)) {
+                String lang = template.langPath;
+                File langFile = new File(lang).getAbsoluteFile();
+                if (lang.indexOf('*') >= 0 || lang.indexOf('?') >= 0) {
+                    langDirs.put(register(service, langFile.getParentFile()), null);
+                } else if (langFile.isDirectory()) {
+                    langDirs.put(register(service, langFile), null);
+                } else {
+                    langDirs.put(register(service, langFile.getParentFile()), langFile.getName());
+                }
+            }
+
+            Set<String> fonts = fonts();
+            System.out.println("Generating " + fonts.size() + " fonts, then watching " + folder.getPath()
+                    + (langDirs.isEmpty() ? "" : " and " + template.langPath) + " for changes...");
+            for (String font : fonts) generate(font, true);
+
+            while (true) {
+                System.out.println("Waiting for changes (Ctrl+C to stop)...");
+                WatchKey key = service.take();
+                Set<String> changed = new TreeSet<>();
+                boolean langChanged = false;
+                do {
+                    Path dir = (Path) key.watchable();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            changed.addAll(fonts());
+                            langChanged = true;
+                            continue;
+                        }
+                        String name = event.context().toString();
+                        if (dir.equals(fontDir) && isFont(name)) changed.add(name);
+                        if (langDirs.containsKey(dir) && !name.startsWith(".")
+                                && (langDirs.get(dir) == null || langDirs.get(dir).equals(name))) {
+                            langChanged = true;
+                        }
+                    }
+                    key.reset();
+                } while ((key = service.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)) != null);
+
+                for (String font : changed) {
+                    if (new File(folder, font).isFile()) {
+                        System.out.println(font + " changed.");
+                        generate(font, true);
+                    } else {
+                        System.out.println(font + " was removed; its outputs are left in place.");
+                        forget(font);
+                    }
+                }
+                if (langChanged) {
+                    System.out.println(template.langPath + " changed.");
+                    for (String font : fonts()) {
+                        if (!changed.contains(font)) generate(font, false);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the jobs for every mode of {@code font}, unless only the
+     * {@code --lang} files changed and its character map came out the same.
+     *
+     * @param fontChanged whether the font file itself changed, in which
+     *                    case the sizes that fit before are not reused
+     */
+    private void generate(String font, boolean fontChanged) {
+        FontwriterConfig config = template.copy();
+        config.fontPath = new File(folder, font).getPath();
+        final String charMap;
+        try {
+            charMap = CharMapBuilder.charMap(config, config.fontPath);
+        } catch (FontWriterException e) {
+            e.printCliMessage();
+            forget(font);
+            return;
+        }
+        String previous = charMaps.remove(font);
+        if (!fontChanged && charMap.equals(previous) && !config.kerningFromLang) {
+            System.out.println("The character map of " + font + " is unchanged; skipping it.");
+            charMaps.put(font, charMap);
+            return;
+        }
+        if (fontChanged) forget(font);
+        boolean failed = false;
+        for (FontwriterConfig.Mode mode : modes) {
+            String key = font + "-" + mode;
+            config.mode = mode;
+            Long fit = fitSizes.remove(key);
+            config.initialSize = fit != null ? String.valueOf(fit) : INITIAL_SIZE;
+            try {
+                fitSizes.put(key, runner.apply(new FontWriter.Job(config, outputDir, charMap)).size());
+            } catch (FontWriterException e) {
+                e.printCliMessage();
+                failed = true;
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                failed = true;
+            }
+        }
+        // A font with a failed job is regenerated on the next change, even if its map is the same.
+        if (!failed) charMaps.put(font, charMap);
+    }
+
+    private void forget(String font) {
+        charMaps.remove(font);
+        for (FontwriterConfig.Mode mode : modes) fitSizes.remove(font + "-" + mode);
+    }
+
+    private Set<String> fonts() {
+        Set<String> fonts = new TreeSet<>();
+        String[] names = folder.list();
+        if (names != null) {
+            for (String name : names) {
+                if (isFont(name) && new File(folder, name).isFile()) fonts.add(name);
+            }
+        }
+        return fonts;
+    }
+
+    private static boolean isFont(String name) {
+        return name.endsWith("ttf") || name.endsWith("otf");
+    }
+
+    private static Path register(WatchService service, File dir) throws IOException {
+        Path path = dir.toPath();
+        path.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+        return path;
+    }
+}
@@ -0,0 +1,574 @@
+package com.github.tommyettinger;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.PixmapIO;
+import com.badlogic.gdx.utils.ByteArray;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import com.github.tommyettinger.textra.utils.LZBCompression;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Generates fonts from another program, without the command line.
+ * <p>
+ * A {@link Job} names one font, one mode and a folder to write into; a
+ * {@link Job} can be built from a {@link FontwriterConfig} or parsed
+ * from the same arguments the command line takes. {@link #write(Job)}
+ * runs the whole single-font pipeline for it, exactly as the command
+ * line does apart from the documentation preview, and returns a
+ * {@link Result} describing what was written:
+ * <pre>
+ *   FontWriter writer = new FontWriter(new File("fontwriter"));
+ *   FontWriter.Result result = writer.write(FontWriter.Job.parse(new File("out"),
+ *       "MyFont.ttf", "msdf", "60", "--charset", "latin"));
+ * </pre>
+ * Nothing here exits the JVM; every failure is a
+ * {@link FontWriterException}. One FontWriter can run any number of
+ * jobs, on any number of threads at once, as long as no two concurrent
+ * jobs write the same font and mode into the same folder. Each job
+ * reads its timeouts, retries and tools from its own configuration,
+ * and runs its tools in its own output folder.
+ * <p>
+ * libGDX doesn't need to be running: the constructor loads its natives,
+ * and no step uses {@code Gdx.files} or a GL context.
+ */
+public final class FontWriter {
+
+    /**
+     * Sentinel value for {@link #process} meaning
+     * "no caller-supplied color": the method then validates that the
+     * bottom-right 3x3 corner of the atlas is safe to stamp over and
+     * falls back to opaque white ({@code -1}) as the palette RGB.
+     * Chosen as 256 in TextraTypist because RGBA 256, 0x00000100, is
+     * fully transparent but extremely dark blue (nearly black), and
+     * should never really be needed as its own color when fully
+     * transparent black is available as RGBA 0.
+     */
+    public static final int NO_COLOR_OVERRIDE = 256;
+
+    /**
+     * How many msdf-atlas-gen failures in a row with no recognized
+     * message (see {@link BinaryExec.Failure#UNKNOWN}) are retried at a
+     * smaller size before giving up.
+     */
+    static final int MAX_UNKNOWN_FAILURES = 3;
+
+    private final String atlasGenPath, oxipngPath;
+
+    /**
+     * The parts of {@link #write} that {@link BuildManifest} can skip
+     * separately, each with the files it writes.
+     */
+    enum Step {
+        /** Steps [2] to [5]: the character map, and the raw atlas PNG and JSON from msdf-atlas-gen. */
+        ATLAS,
+        /** Step [6]: kerning and the compressed JSON, LZMA, shared-dictionary, LZB and UBJ files. */
+        DESCRIPTOR,
+        /** Steps [7] and [8] but the bundle: the finished atlas PNG, KTX textures and color preview. */
+        IMAGE,
+        /** The .fwb bundle of step [7], written only with {@code --fwb}. */
+        BUNDLE
+    }
+
+    /**
+     * @param home the folder holding fontwriter's {@code distbin/}
+     *             folder, with the msdf-atlas-gen and oxipng binaries
+     *             for this platform
+     */
+    public FontWriter(File home) {
+        GdxNativesLoader.load();
+        File bin = new File(home.getAbsoluteFile(), BinaryExec.archPath());
+        atlasGenPath = new File(bin, BinaryExec.atlasGenBinary()).getPath();
+        oxipngPath = new File(bin, BinaryExec.oxipngBinary()).getPath();
+    }
+
+    /** The msdf-atlas-gen binary jobs run, unless {@code --fake-tools} replaces it. */
+    String atlasGenPath() {
+        return atlasGenPath;
+    }
+
+    /** The oxipng binary jobs run, unless {@code --fake-tools} replaces it. */
+    String oxipngPath() {
+        return oxipngPath;
+    }
+
+    /**
+     * One font in one mode, with the folder its files go to. Immutable:
+     * the configuration is copied when the job is made.
+     */
+    public static final class Job {
+        private final FontwriterConfig config;
+        private final File outputDir;
+        /** A character map already built for this font and configuration, or null to build one. */
+        final String charMap;
+        /** Stops this job's tool runs, and the job itself at its next step, when cancelled. */
+        final BinaryExec.Cancellation cancellation = new BinaryExec.Cancellation();
+
+        /**
+         * @param config    a single-font configuration; its
+         *                  {@link FontwriterConfig#fontPath fontPath} and
+         *                  {@link FontwriterConfig#mode mode} must be set
+         * @param outputDir the folder that gets {@code fonts/} and
+         *                  {@code previews/}; created if missing
+         * @throws IllegalArgumentException if {@code config} names no font or mode
+         */
+        public Job(FontwriterConfig config, File outputDir) {
+            this(config, outputDir, null);
+        }
+
+        /**
+         * @param charMap the content {@link CharMapBuilder#charMap} gave
+         *                for this font and configuration, or null to
+         *                build it as part of the job
+         */
+        Job(FontwriterConfig config, File outputDir, String charMap) {
+            if (config.fontPath == null || config.mode == null) {
+                throw new IllegalArgumentException("A job needs a font and a mode");
+            }
+            this.config = config.copy();
+            this.outputDir = outputDir.getAbsoluteFile();
+            this.charMap = charMap;
+        }
+
+        /**
+         * Parses a job from command-line arguments, such as
+         * {@code "MyFont.ttf", "msdf", "60", "--charset", "latin"}.
+         *
+         * @throws IllegalArgumentException if the arguments are invalid,
+         *         or ask for something other than a single font
+         */
+        public static Job parse(File outputDir, String... args) {
+            FontwriterConfig config = ConfigParser.parse(args);
+            if (!config.isStandardRun()) {
+                throw new IllegalArgumentException("Not a single-font job: " + String.join(" ", args));
+            }
+            return new Job(config, outputDir);
+        }
+
+        /** The font's file name without its extension, as used in the names of everything written. */
+        public String font() {
+            return new FileHandle(new File(config.fontPath)).nameWithoutExtension();
+        }
+
+        public FontwriterConfig.Mode mode() {
+            return config.mode;
+        }
+
+        public File outputDir() {
+            return outputDir;
+        }
+
+        /** The job's own copy of its configuration; not to be changed. */
+        FontwriterConfig config() {
+            return config;
+        }
+
+        /**
+         * Cancels this job from any thread. Its running msdf-atlas-gen or
+         * oxipng is killed along with any processes it started, and
+         * {@link FontWriter#write(Job)} throws
+         * {@link FontWriterException.Cancelled} instead of starting its next
+         * step. A job cancelled before it starts fails at once. Other jobs
+         * are not affected.
+         */
+        public void cancel() {
+            cancellation.cancel();
+        }
+    }
+
+    /** What one {@link Job} produced. Immutable. */
+    public static final class Result {
+        private final String fontName;
+        private final FontwriterConfig.Mode mode;
+        private final long size;
+        private final Map<File, Long> outputs;
+        private final File colorPreview;
+        private final Map<String, Long> stageNanos;
+        private final long totalNanos;
+        /** Stage timings; {@link Main} adds its preview stage and writes it. */
+        final JobReport report;
+
+        Result(String fontName, FontwriterConfig.Mode mode, long size, Map<File, Long> outputs, File colorPreview,
+               JobReport report) {
+            this.fontName = fontName;
+            this.mode = mode;
+            this.size = size;
+            this.outputs = Collections.unmodifiableMap(outputs);
+            this.colorPreview = colorPreview;
+            this.report = report;
+            Map<String, Long> stages = new LinkedHashMap<>();
+            for (JobReport.Stage s : report.stages) stages.put(s.name, s.wallNanos);
+            this.stageNanos = Collections.unmodifiableMap(stages);
+            this.totalNanos = report.totalWallNanos();
+        }
+
+        public String fontName() {
+            return fontName;
+        }
+
+        public FontwriterConfig.Mode mode() {
+            return mode;
+        }
+
+        /** The font size msdf-atlas-gen fit into the atlas. */
+        public long size() {
+            return size;
+        }
+
+        /** Every file written, with its size in bytes, in the order the command line lists them. */
+        public Map<File, Long> outputs() {
+            return outputs;
+        }
+
+        /** The {@code --color} preview atlas, or null if none was asked for. */
+        public File colorPreview() {
+            return colorPreview;
+        }
+
+        /** Wall time of each stage, in nanoseconds, in the order they ran. */
+        public Map<String, Long> stageNanos() {
+            return stageNanos;
+        }
+
+        public long totalNanos() {
+            return totalNanos;
+        }
+    }
+
+    /**
+     * Runs the full single-font generation pipeline for {@code job}:
+     * everything the command line does for one {@code (font, mode)}
+     * pair except the documentation preview.
+     * <p>
+     * Step [5] is the one non-obvious part: msdf-atlas-gen fails with a
+     * non-zero exit code when the requested glyphs don't fit into the
+     * chosen image dimensions at the chosen font size. Rather than
+     * asking the user to guess, this retries with {@code size - 1} on
+     * every such failure and gives up only when size drops to zero.
+     * {@link BinaryExec} classifies each failure from the tool's output:
+     * errors that no size can fix (an unreadable font, a binary that
+     * can't load) stop the job at once, and failures with no recognized
+     * message are retried at most {@value #MAX_UNKNOWN_FAILURES} times in
+     * a row. The
+     * {@code -pxrange} argument is recomputed on every retry because
+     * it's derived from the current size.
+     * <p>
+     * Every step from [2] on is timed as a stage of the result's
+     * {@link JobReport}.
+     *
+     * @throws FontWriterException if the job can't be finished
+     */
+    public Result write(Job job) {
+        return write(job, null);
+    }
+
+    /**
+     * Like {@link #write(Job)}, but also tells {@code onStage} the name
+     * of each stage as it begins ({@code cmap}, {@code atlas-gen},
+     * {@code kerning}, {@code compress}, {@code process}, {@code bundle}
+     * with {@code --fwb}, {@code oxipng}), on the thread running the job.
+     *
+     * @param onStage progress listener, or null
+     * @throws FontWriterException if the job can't be finished
+     */
+    public Result write(Job job, Consumer<String> onStage) {
+        return write(job, onStage, null);
+    }
+
+    /**
+     * Like {@link #write(Job, Consumer)}, but runs only the steps that
+     * {@code plan} says are stale. Each skipped step leaves its files as
+     * they are. When msdf-atlas-gen is skipped, its raw JSON and PNG are
+     * restored from the plan's cache for the steps that rewrite them, and
+     * the size is the one that fit last time; when it runs, they are
+     * copied into the cache for next time.
+     *
+     * @param plan what {@link BuildManifest#plan} found stale, or null to run everything
+     * @throws FontWriterException if the job can't be finished
+     */
+    Result write(Job job, Consumer<String> onStage, BuildManifest.Plan plan) {
+        final boolean atlas = plan == null || plan.runs(Step.ATLAS),
+                descriptor = plan == null || plan.runs(Step.DESCRIPTOR),
+                image = plan == null || plan.runs(Step.IMAGE),
+                bundle = (plan == null || plan.runs(Step.BUNDLE)) && job.config().writeBundle;
+        final FontwriterConfig config = job.config();
+        final BinaryExec.Settings settings = new BinaryExec.Settings(config, job.cancellation);
+        final File outputDir = job.outputDir();
+        final IndexedPngWriter indexedPngWriter = new IndexedPngWriter();
+        final FileHandle out = new FileHandle(outputDir);
+        out.child("fonts").mkdirs();
+        out.child("previews").mkdirs();
+
+        // [1] Resolve the font file
+        FontwriterConfig.Mode mode = config.mode;
+        FileHandle fontHandle = new FileHandle(new File(config.fontPath).getAbsoluteFile());
+        String fontFileName = fontHandle.path();
+        String fontName = fontHandle.nameWithoutExtension();
+        String nameAndMode = fontName + "-" + mode;
+        JobReport report = new JobReport(fontName, mode.toString());
+        report.listener = stage -> {
+            job.cancellation.check(nameAndMode);
+            if (onStage != null) onStage.accept(stage);
+        };
+
+        // [2] Build the character map (cmap) file for msdf-atlas-gen; it lives with the outputs,
+        //     not the font, so jobs for the same font can run at once
+        FileHandle cmap = out.child("fonts/" + nameAndMode + ".cmap.txt");
+        int cmapLength = 0;
+        if (atlas || descriptor) {
+            report.begin("cmap");
+            report.in(fontHandle);
+            if (job.charMap != null) {
+                System.out.println("Reusing the character map already built for " + fontName + "...");
+                cmap.writeString(job.charMap, false, "UTF-8");
+                cmapLength = job.charMap.length();
+            } else {
+                cmapLength = CharMapBuilder.build(config, fontFileName, cmap);
+            }
+            report.out(cmap);
+        }
+
+        // [3] Pick initial atlas size and image dimensions
+        long size = Math.round(Double.parseDouble(config.initialSize));
+        size = Math.min(cmapLength >= 30000 ? 55 : 280, size);
+        String imageSize = config.resolveImageSize(cmapLength);
+        boolean fullPreview = config.hasPreviewColor();
+        int fullPreviewColor;
+        if (fullPreview)
+            fullPreviewColor = FontwriterUtils.stringToColor(config.color);
+        else {
+            fullPreviewColor = -1;
+        }
+        FileHandle jsonHandle = out.child("fonts/" + nameAndMode + ".json");
+        FileHandle imageFile = out.child("fonts/" + nameAndMode + ".png");
+
+        if (atlas) {
+            // [4] Assemble the msdf-atlas-gen command
+            System.out.println("Generating structured JSON font and PNG using msdf-atlas-gen...");
+            List<String> commandList = new ArrayList<>();
+            commandList.add(atlasGenPath);
+            commandList.add("-font");
+            commandList.add(fontFileName);
+            commandList.add("-charset");
+            commandList.add(cmap.path());
+            commandList.add("-type");
+            commandList.add(mode.atlasGenType);
+            commandList.add("-imageout");
+            commandList.add("fonts/" + nameAndMode + ".png");
+            commandList.add("-json");
+            commandList.add("fonts/" + nameAndMode + ".json");
+            commandList.add("-pxrange");
+            commandList.add(String.valueOf(mode == FontwriterConfig.Mode.SDF ? size * 0.15f : size * 0.09f));
+            commandList.add("-dimensions");
+            String[] dims = imageSize.trim().split("[x ]+");
+            commandList.add(dims[0]);
+            commandList.add(dims[1]);
+            commandList.add("-size");
+            commandList.add(String.valueOf(size));
+            commandList.add("-outerpxpadding");
+            commandList.add("1");
+
+            // [5] Run msdf-atlas-gen, shrinking the font size on failure until it fits
+            report.begin("atlas-gen");
+            report.in(fontHandle, cmap);
+            System.out.println("Running command: " + String.join(" ", commandList));
+            int unknownFailures = 0;
+            while (true) {
+                commandList.set(commandList.size() - 3, String.valueOf(size));
+                commandList.set(commandList.size() - 8, mode == FontwriterConfig.Mode.SDF ? String.valueOf(size * 0.15f) : String.valueOf(size * 0.1));
+                System.out.print("Trying size: " + size + "... ");
+                BinaryExec.Result result = BinaryExec.exec(settings, atlasGenPath, "msdf-atlas-gen", commandList, outputDir);
+                report.tool(result);
+                if (result.failure == BinaryExec.Failure.NONE) {
+                    System.out.println("\nSuccessfully generated atlas using font size " + size + " (" + result.usage() + ").");
+                    break;
+                }
+                System.out.println("failed (" + result.usage() + ").");
+                if (result.failure == BinaryExec.Failure.TIMEOUT || result.failure == BinaryExec.Failure.CANCELLED) {
+                    BinaryExec.throwOnFailure(settings, "msdf-atlas-gen", result);
+                }
+                if (result.failure == BinaryExec.Failure.FATAL
+                        || result.failure == BinaryExec.Failure.UNKNOWN && ++unknownFailures >= MAX_UNKNOWN_FAILURES) {
+                    throw new FontWriterException.ToolFailed("msdf-atlas-gen", result,
+                            "msdf-atlas-gen failed with exit code " + result.exitCode + ": " + result.reason(),
+                            () -> CliMessages.printBinaryFatalFailure("msdf-atlas-gen", result.exitCode, result.reason()));
+                }
+                if (result.failure == BinaryExec.Failure.FIT) unknownFailures = 0;
+                long failedSize = size;
+                if (--size <= 0) {
+                    String message = "msdf-atlas-gen could not fit glyphs into the atlas at any size "
+                            + "(last attempted: " + failedSize + ")";
+                    throw new FontWriterException.DoesNotFit(message, result.exitCode,
+                            () -> System.err.println("Error: " + message + ". Terminating."));
+                }
+            }
+            report.out(jsonHandle, imageFile);
+            if (plan != null) plan.keepRaw(jsonHandle, imageFile);
+        } else {
+            size = plan.size();
+            System.out.println("The atlas is up to date (font size " + size + ").");
+            if (descriptor) plan.restoreRaw(jsonHandle);
+            if (image) plan.restoreRaw(imageFile);
+        }
+
+        // [6] Prune unusable kerning pairs, then compress the generated JSON
+        //     into UBJ, LZMA, and LZB (.dat) companion files
+        if (descriptor) {
+            report.begin("kerning");
+            report.in(jsonHandle);
+            System.out.println("Pruning kerning pairs...");
+            KerningPruner.prune(config, jsonHandle, cmap);
+            report.out(jsonHandle);
+            report.begin("compress");
+            report.in(jsonHandle);
+            System.out.println("Compressing .JSON file (optional)...");
+            FontwriterUtils.convertToUBJSON(jsonHandle);
+            FontwriterUtils.convertToLzma(jsonHandle);
+            ByteArray ba = LZBCompression.compressToByteArray(jsonHandle.readString("UTF8"));
+            FileHandle datHandle = out.child("fonts/" + nameAndMode + ".dat");
+            datHandle.writeBytes(ba.items, 0, ba.size, false);
+            FileHandle sharedDictionary = out.child("fonts/" + FontwriterUtils.SHARED_DICTIONARY_NAME);
+            if (config.writeSharedDictionary && sharedDictionary.exists()) {
+                FontwriterUtils.convertToSharedDictionary(jsonHandle, sharedDictionary.readBytes());
+            }
+            report.out(datHandle, jsonHandle.sibling(jsonHandle.name() + ".lzma"), jsonHandle.sibling(jsonHandle.name() + ".sdz"),
+                    out.child("fonts/ubj/" + nameAndMode + ".ubj"),
+                    out.child("fonts/ubj/" + nameAndMode + ".ubj.lzma"));
+        }
+
+        // [7] Post-process the atlas PNG (stamp marker corner, optional color preview, palette convert),
+        //     then, with --fwb, pack the JSON and final atlas pixels into a .fwb bundle
+        FileHandle fullPreviewFile = fullPreview
+                ? out.child("previews/full-" + config.color + "-" + nameAndMode + ".png") : imageFile;
+        if (image) {
+            System.out.println("Applying changes for improved TextraTypist usage...");
+            report.begin("process");
+            report.in(imageFile);
+            if (fullPreview) {
+                imageFile.copyTo(fullPreviewFile);
+                process(config, indexedPngWriter, fullPreviewFile, fullPreviewColor);
+                report.out(fullPreviewFile);
+            }
+            process(config, indexedPngWriter, imageFile, NO_COLOR_OVERRIDE);
+            report.out(imageFile);
+        }
+        if (bundle) {
+            report.begin("bundle");
+            report.in(jsonHandle, imageFile);
+            System.out.println("Writing memory-mappable .fwb bundle...");
+            FontBundleWriter.write(jsonHandle, imageFile);
+            report.out(out.child("fonts/" + nameAndMode + ".fwb"));
+        }
+
+        // [8] Optimize the atlas PNG (and color preview, if any) with oxipng
+        if (image) {
+            report.begin("oxipng");
+            report.in(imageFile);
+            System.out.println("Optimizing result with oxipng...");
+
+            List<String> oxiCmd = new ArrayList<>();
+            oxiCmd.add(oxipngPath);
+            oxiCmd.add("-o");
+            oxiCmd.add("6");
+            oxiCmd.add("--ng");
+            oxiCmd.add("-s");
+            oxiCmd.add(imageFile.path());
+
+            System.out.println("Running command: " + String.join(" ", oxiCmd));
+            report.tool(BinaryExec.runOrThrow(settings, oxipngPath, "oxipng", oxiCmd, outputDir));
+            report.out(imageFile);
+
+            if (fullPreview) {
+                report.in(fullPreviewFile);
+                oxiCmd.set(oxiCmd.size() - 1, fullPreviewFile.path());
+                System.out.println("Running command: " + String.join(" ", oxiCmd));
+                report.tool(BinaryExec.runOrThrow(settings, oxipngPath, "oxipng", oxiCmd, outputDir));
+                report.out(fullPreviewFile);
+            }
+        }
+        report.end();
+
+        Map<File, Long> outputs = new LinkedHashMap<>();
+        String[] extensions = {".png", ".ktx", ".r11.ktx", ".etc2.ktx", ".json", ".json.lzma", ".json.sdz", ".dat", ".ubj", ".ubj.lzma", ".fwb"};
+        for (String ext : extensions) {
+            if (ext.equals(".fwb") && !config.writeBundle) continue;
+            if (ext.equals(".json.sdz") && !config.writeSharedDictionary) continue;
+            FileHandle f = out.child((ext.contains("ubj") ? "fonts/ubj/" : "fonts/") + nameAndMode + ext);
+            if (f.exists()) outputs.put(f.file(), f.length());
+        }
+        File colorPreview = null;
+        if (fullPreview && fullPreviewFile.exists()) {
+            colorPreview = fullPreviewFile.file();
+            outputs.put(colorPreview, fullPreviewFile.length());
+        }
+        return new Result(fontName, mode, size, outputs, colorPreview, report);
+    }
+
+    /**
+     * Post-processes an atlas PNG generated by msdf-atlas-gen so that it
+     * works correctly as a TextraTypist bitmap font texture.
+     * <p>
+     * Two things happen here:
+     * <ol>
+     *   <li>The bottom-right 3x3 corner is stamped opaque white. This
+     *       corner is reserved as a solid pixel that TextraTypist can
+     *       sample for color-tinted effects and rectangle fills without
+     *       having to allocate a second texture. If the caller did not
+     *       supply an explicit palette color ({@link #NO_COLOR_OVERRIDE}),
+     *       the corner is first checked to make sure no real glyph
+     *       pixels will be overwritten; finding any non-transparent
+     *       pixels there is treated as a fatal error.</li>
+     *   <li>MSDF atlases are left as full RGBA PNGs. STANDARD and SDF
+     *       atlases are instead rewritten through {@link IndexedPngWriter}
+     *       as 8-bit palette PNGs, which is drastically smaller for the
+     *       single-channel data these modes produce.</li>
+     * </ol>
+     *
+     * @param file the atlas PNG to rewrite in place
+     * @param rgba either an RGBA8888 palette color for the color preview,
+     *             or {@link #NO_COLOR_OVERRIDE} for the normal atlas path
+     */
+    private static void process(FontwriterConfig config, IndexedPngWriter indexedPngWriter, FileHandle file, int rgba) {
+        if (!file.exists()) {
+            System.out.println("The specified file " + file + " does not exist; skipping.");
+            return;
+        }
+        Pixmap pm = new Pixmap(file);
+        try {
+            final int w = pm.getWidth(), h = pm.getHeight();
+            final boolean atlas = rgba == NO_COLOR_OVERRIDE;
+            if (atlas) {
+                for (int x = w - 3; x < w; x++) {
+                    for (int y = h - 3; y < h; y++) {
+                        int color = pm.getPixel(x, y);
+                        if (!((color & 0xFF) == 0 || (color >>> 8) == 0)) {
+                            throw new FontWriterException.BadInput("Had a transparency problem with " + file.name()
+                                    + ": its bottom-right corner should be transparent", null, null);
+                        }
+                    }
+                }
+                rgba = -1;
+            }
+            pm.setColor(-1);
+            pm.fillRectangle(w - 3, h - 3, 3, 3);
+            if (atlas && config.writeKtx) {
+                System.out.println("Writing KTX textures...");
+                KtxWriter.write(file, pm, config.mode);
+            }
+            if(config.mode == FontwriterConfig.Mode.MSDF){
+                PixmapIO.writePNG(file, pm, 0, false);
+            } else {
+                indexedPngWriter.write(file, pm, rgba);
+            }
+        } finally {
+            pm.dispose();
+        }
+    }
+}
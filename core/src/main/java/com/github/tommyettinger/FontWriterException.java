@@ -0,0 +1,122 @@
+package com.github.tommyettinger;
+
+/**
+ * Why a font job failed. Thrown by {@link FontWriter} and by everything
+ * it calls, in place of printing an error and exiting, so that a job can
+ * fail without taking the JVM with it.
+ * <p>
+ * Each subclass is one kind of failure that a caller may want to handle
+ * differently: bad input, a tool that can't run, a tool that failed,
+ * glyphs that fit at no size, and cancellation. The command line catches
+ * these in {@link Main}, prints the same guidance it always has (see
+ * {@link #printCliMessage()}), and exits with {@link #exitCode()}.
+ */
+public class FontWriterException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int exitCode;
+    /** Prints the command line's explanation of this failure; not serialized. */
+    private final transient Runnable cliMessage;
+
+    FontWriterException(String message, int exitCode, Runnable cliMessage, Throwable cause) {
+        super(message, cause);
+        this.exitCode = exitCode;
+        this.cliMessage = cliMessage;
+    }
+
+    /** The exit code the command line uses for this failure. */
+    public int exitCode() {
+        return exitCode;
+    }
+
+    /**
+     * Prints the explanation the command line gives for this failure,
+     * with its platform-specific hints, or just the message if there is
+     * no longer one.
+     */
+    void printCliMessage() {
+        if (cliMessage != null) {
+            cliMessage.run();
+        } else {
+            System.err.println("Error: " + getMessage());
+        }
+    }
+
+    /**
+     * The input can't be used: the font can't be read, {@code --lang}
+     * matched nothing, the atlas made from the font is unusable, or a
+     * folder a batch command needs is missing.
+     */
+    public static class BadInput extends FontWriterException {
+        private static final long serialVersionUID = 1L;
+
+        BadInput(String message, Runnable cliMessage, Throwable cause) {
+            super(message, 1, cliMessage, cause);
+        }
+    }
+
+    /** msdf-atlas-gen or oxipng is missing, not executable, or couldn't be started. */
+    public static class ToolUnavailable extends FontWriterException {
+        private static final long serialVersionUID = 1L;
+
+        private final String tool;
+
+        ToolUnavailable(String tool, String message, Runnable cliMessage, Throwable cause) {
+            super(message, 1, cliMessage, cause);
+            this.tool = tool;
+        }
+
+        /** The tool's name, {@code "msdf-atlas-gen"} or {@code "oxipng"}. */
+        public String tool() {
+            return tool;
+        }
+    }
+
+    /** A tool ran and failed, or ran past its timeout on every attempt. */
+    public static class ToolFailed extends FontWriterException {
+        private static final long serialVersionUID = 1L;
+
+        private final String tool, failure, output;
+
+        ToolFailed(String tool, BinaryExec.Result result, String message, Runnable cliMessage) {
+            super(message, result.exitCode == 0 ? 1 : result.exitCode, cliMessage, null);
+            this.tool = tool;
+            this.failure = result.failure.name();
+            this.output = result.stderr.isEmpty() ? result.stdout : result.stderr;
+        }
+
+        /** The tool's name, {@code "msdf-atlas-gen"} or {@code "oxipng"}. */
+        public String tool() {
+            return tool;
+        }
+
+        /** How it failed: {@code FATAL}, {@code UNKNOWN}, {@code TIMEOUT} and so on. */
+        public String failure() {
+            return failure;
+        }
+
+        /** The end of what the tool wrote to stderr, or to stdout if stderr was empty. */
+        public String output() {
+            return output;
+        }
+    }
+
+    /** msdf-atlas-gen could not fit the glyphs into the atlas at any size. */
+    public static class DoesNotFit extends FontWriterException {
+        private static final long serialVersionUID = 1L;
+
+        DoesNotFit(String message, int exitCode, Runnable cliMessage) {
+            super(message, exitCode, cliMessage, null);
+        }
+    }
+
+    /** The job was cancelled, or its thread interrupted, before it finished. */
+    public static class Cancelled extends FontWriterException {
+        private static final long serialVersionUID = 1L;
+
+        Cancelled(String message, Runnable cliMessage, Throwable cause) {
+            super(message, 1, cliMessage, cause);
+        }
+    }
+}
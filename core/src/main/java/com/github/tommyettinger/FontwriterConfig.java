@@ -1,5 +1,7 @@
 package com.github.tommyettinger;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
 
 /**
@@ -15,6 +17,7 @@ import java.util.Locale;
  *   java -jar fontwriter.jar MyFont.otf msdf 60 --image-size 4096x4096
  *   java -jar fontwriter.jar MyFont.otf msdf 60 --lang i18n/de --color black
  *   java -jar fontwriter.jar MyFont.otf sdf 200 --charset latin
+ *   java -jar fontwriter.jar MyFont.otf msdf 60 --lang i18n/de --kerning-lang --kerning-threshold 0.01
  * </pre>
  * <b>Usage (batch commands):</b>
  * <pre>
@@ -22,6 +25,9 @@ import java.util.Locale;
  *   java -jar fontwriter.jar --preview [folder]
  *   java -jar fontwriter.jar --ubj [folder]
  *   java -jar fontwriter.jar --lzma [folder]
+ *   java -jar fontwriter.jar --bundle [folder]
+ *   java -jar fontwriter.jar --dict [folder]
+ *   java -jar fontwriter.jar --columnar [folder]
  * </pre>
  *
  * <h3>Character set resolution — fallback hierarchy</h3>
@@ -41,7 +47,7 @@ import java.util.Locale;
  * narrows it to what your translations actually use. Adding {@code --charset}
  * narrows it to a well-known fixed set regardless of font contents.
  */
-public class FontwriterConfig {
+public class FontwriterConfig implements Cloneable {
 
     // ---------------------------------------------------------------
     //  Enums for fixed-choice parameters.
@@ -104,6 +110,20 @@ public class FontwriterConfig {
                     + "Valid values: standard, sdf, msdf, mtsdf, psdf");
         }
 
+        /**
+         * Resolves a comma-separated list of CLI mode names, such as
+         * {@code "standard,msdf"}.
+         * @throws IllegalArgumentException if any name is not recognized, or none is given
+         */
+        public static Mode[] listFromString(String value) {
+            String[] names = value.split(",");
+            Mode[] modes = new Mode[names.length];
+            for (int i = 0; i < names.length; i++) {
+                modes[i] = fromString(names[i].trim());
+            }
+            return modes;
+        }
+
         @Override
         public String toString() {
             return cliName;
@@ -173,6 +193,19 @@ public class FontwriterConfig {
         }
     }
 
+    /** Options that change what a font generates, which --bulk passes on to each font. */
+    private static final String BULK_GENERATION_OPTIONS =
+            "--color --lang --charset --kerning-threshold --kerning-lang --ktx --fwb --sdz";
+
+    /** Options that change what a font generates, which --watch passes on to each font. */
+    private static final String GENERATION_OPTIONS = "--image-size " + BULK_GENERATION_OPTIONS;
+
+    /** Options for oxipng runs, used by every command that writes previews. */
+    private static final String OXIPNG_OPTIONS = "--oxipng-timeout --tool-retries --fake-tools";
+
+    /** Options for msdf-atlas-gen and oxipng runs, used by commands that generate fonts. */
+    private static final String TOOL_OPTIONS = "--atlas-timeout " + OXIPNG_OPTIONS;
+
     /**
      * Batch command keywords — mutually exclusive with standard font
      * generation. Each value owns its own CLI flag and default input
@@ -181,16 +214,49 @@ public class FontwriterConfig {
      */
     public enum BatchCommand {
         /** Process every .ttf/.otf in the folder. Default folder: "input". */
-        BULK("--bulk", "input"),
+        BULK("--bulk", "input",
+                "--preview-memory --metrics --rebuild " + BULK_GENERATION_OPTIONS + " " + TOOL_OPTIONS),
 
         /** Generate previews for .json fonts in the folder. Default: "fonts". */
-        PREVIEW("--preview", "fonts"),
+        PREVIEW("--preview", "fonts", "--preview-memory " + OXIPNG_OPTIONS),
+
+        /** Generate previews on the CPU, several at once, without a GL context. Default: "fonts". */
+        CPU_PREVIEW("--cpu-preview", "fonts", OXIPNG_OPTIONS),
+
+        /** Render every .json font in the folder into paginated contact sheets. Default: "fonts". */
+        CONTACT("--contact", "fonts", OXIPNG_OPTIONS),
+
+        /** Compare the previews in the folder with a baseline set using SSIM. Default: "previews". */
+        COMPARE("--compare", "previews", "--baseline --ssim-threshold"),
+
+        /** Build a paginated static gallery with thumbnails for the fonts and
+         *  previews in the folder. Default: "docs/knownFonts". */
+        GALLERY("--gallery", "docs/knownFonts", ""),
 
         /** Convert .json fonts to .ubj + .ubj.lzma. Default folder: "fonts". */
-        UBJ("--ubj", "fonts"),
+        UBJ("--ubj", "fonts", ""),
 
         /** Compress .json fonts with LZMA. Default folder: "fonts". */
-        LZMA("--lzma", "fonts");
+        LZMA("--lzma", "fonts", ""),
+
+        /** Pack .json fonts and their .png atlases into .fwb bundles. Default folder: "fonts". */
+        BUNDLE("--bundle", "fonts", ""),
+
+        /** Train (if missing) a shared dictionary from the .json fonts in the
+         *  folder, then write .json.sdz files primed with it. Default folder: "fonts". */
+        DICT("--dict", "fonts", ""),
+
+        /** Convert .json fonts to columnar .fwc files, and restore .json for
+         *  any .fwc that has none. Default folder: "fonts". */
+        COLUMNAR("--columnar", "fonts", ""),
+
+        /** Keep running and serve font jobs over a localhost socket, writing
+         *  into the folder unless a job names its own. Default folder: ".". */
+        DAEMON("--daemon", ".", "--port --jobs"),
+
+        /** Generate every .ttf/.otf in the folder, then regenerate the affected
+         *  fonts whenever they or their --lang files change. Default folder: "input". */
+        WATCH("--watch", "input", "--preview-memory --modes " + GENERATION_OPTIONS + " " + TOOL_OPTIONS);
 
         /** The user-facing CLI flag including leading dashes (e.g. "--bulk"). */
         public final String flag;
@@ -198,9 +264,22 @@ public class FontwriterConfig {
         /** Default folder used when the user did not pass an explicit path. */
         public final String defaultPath;
 
-        BatchCommand(String flag, String defaultPath) {
+        /** The options this command uses, besides --jfr, which every command accepts. */
+        private final List<String> options;
+
+        BatchCommand(String flag, String defaultPath, String options) {
             this.flag = flag;
             this.defaultPath = defaultPath;
+            this.options = Arrays.asList(("--jfr " + options).trim().split(" "));
+        }
+
+        /**
+         * Whether this command uses an option, so it may follow the command on the command line.
+         * @param option the long form of the option (e.g. "--metrics")
+         * @return true if this command reads {@code option}
+         */
+        public boolean accepts(String option) {
+            return options.contains(option);
         }
 
         /**
@@ -395,6 +474,216 @@ public class FontwriterConfig {
      */
     public Charset charset = Charset.ALL;
 
+    /**
+     * Minimum absolute kerning advance, in em units, for a kerning pair
+     * to be kept in the generated JSON. Pairs that refer to codepoints
+     * outside the cmap, and pairs with an advance of exactly zero, are
+     * always dropped.
+     * <p>
+     * Recommended: {@code 0.01} for body text; smaller adjustments are
+     * rarely visible at typical UI sizes.
+     * <p>
+     * <b>Flag:</b> {@code --kerning-threshold <em>}
+     * <p>
+     * <b>Default:</b> {@code 0} — no pairs are dropped for magnitude.
+     */
+    public double kerningThreshold = 0.0;
+
+    /**
+     * When true, kerning pairs are only kept if the two characters
+     * appear next to each other somewhere in the {@code --lang} files.
+     * Has no effect unless the charset strategy is
+     * {@link CharsetStrategy#LANG}.
+     * <p>
+     * <b>Flag:</b> {@code --kerning-lang} (takes no value)
+     * <p>
+     * <b>Default:</b> {@code false}.
+     */
+    public boolean kerningFromLang = false;
+
+    /**
+     * When true, the finished atlas is also written as KTX textures that
+     * load without PNG decoding: uncompressed alpha for standard and SDF
+     * fonts, EAC R11 for SDF fonts, and ETC2 RGB for multichannel fonts.
+     * See {@link KtxWriter}.
+     * <p>
+     * <b>Flag:</b> {@code --ktx} (takes no value)
+     * <p>
+     * <b>Default:</b> {@code false}.
+     */
+    public boolean writeKtx = false;
+
+    /**
+     * When true, the finished font is also packed into a memory-mappable
+     * {@code .fwb} bundle of its descriptor and raw atlas pixels. The
+     * pixels are uncompressed, so a bundle takes about 3 bytes per atlas
+     * pixel for msdf and 1 otherwise (12 MB for a 2048x2048 msdf atlas).
+     * See {@link FontBundleWriter}; {@code --bundle} makes bundles for
+     * fonts that already exist.
+     * <p>
+     * <b>Flag:</b> {@code --fwb} (takes no value)
+     * <p>
+     * <b>Default:</b> {@code false}.
+     */
+    public boolean writeBundle = false;
+
+    /**
+     * When true, and {@code fonts/fontwriter.dict} exists (see
+     * {@code --dict}), the descriptor is also written as a
+     * {@code .json.sdz} file primed with that shared dictionary. Off by
+     * default: measured on the known fonts, {@code .json.sdz} files are
+     * larger than the {@code .json.lzma} files written anyway.
+     * <p>
+     * <b>Flag:</b> {@code --sdz} (takes no value)
+     * <p>
+     * <b>Default:</b> {@code false}.
+     */
+    public boolean writeSharedDictionary = false;
+
+    /**
+     * How much memory, in megabytes, preview rendering may spend on
+     * captured frames waiting to be written as PNGs. Atlas textures are
+     * released as soon as each preview is drawn, so this is what bounds
+     * memory use when previewing a large folder.
+     * See {@link PreviewRenderer}.
+     * <p>
+     * <b>Flag:</b> {@code --preview-memory}
+     * <p>
+     * <b>Default:</b> {@code 64}.
+     */
+    public double previewMemoryMb = 64.0;
+
+    /**
+     * Folder of earlier previews that {@code --compare} checks the
+     * current previews against. See {@link PreviewComparator}.
+     * <p>
+     * <b>Flag:</b> {@code --baseline}
+     * <p>
+     * <b>Default:</b> {@code "previews-baseline"}.
+     */
+    public String baselinePath = "previews-baseline";
+
+    /**
+     * Mean SSIM below which {@code --compare} counts a preview as
+     * changed and writes a heatmap for it. 1.0 means identical. A
+     * preview with any single badly damaged tile counts as changed
+     * regardless; see {@link PreviewComparator}.
+     * <p>
+     * <b>Flag:</b> {@code --ssim-threshold}
+     * <p>
+     * <b>Default:</b> {@code 0.99}.
+     */
+    public double ssimThreshold = 0.99;
+
+    /**
+     * Longest one msdf-atlas-gen run may take, in seconds, before its
+     * process tree is killed. 0 means no limit. See {@link BinaryExec}.
+     * <p>
+     * <b>Flag:</b> {@code --atlas-timeout}
+     * <p>
+     * <b>Default:</b> {@code 600}.
+     */
+    public double atlasGenTimeoutSeconds = 600.0;
+
+    /**
+     * Longest one oxipng run may take, in seconds, before its process
+     * tree is killed. 0 means no limit.
+     * <p>
+     * <b>Flag:</b> {@code --oxipng-timeout}
+     * <p>
+     * <b>Default:</b> {@code 300}.
+     */
+    public double oxipngTimeoutSeconds = 300.0;
+
+    /**
+     * How many more times a tool run is attempted after it times out
+     * or fails to start for a temporary reason (such as the binary
+     * still being open for writing). Other failures are never retried
+     * here; msdf-atlas-gen's own size retries are separate.
+     * <p>
+     * <b>Flag:</b> {@code --tool-retries}
+     * <p>
+     * <b>Default:</b> {@code 1}.
+     */
+    public int toolRetries = 1;
+
+    /**
+     * File to write a Java Flight Recorder recording of the run to,
+     * including fontwriter's own stage, tool, PNG and conversion events
+     * (see {@link FlightEvents}). Null means no recording.
+     * <p>
+     * <b>Flag:</b> {@code --jfr}
+     * <p>
+     * <b>Default:</b> {@code null}.
+     */
+    public String jfrPath = null;
+
+    /**
+     * OpenMetrics textfile that {@code --bulk} keeps up to date with its
+     * progress, ETA and per-stage totals, for a local collector to
+     * scrape. See {@link ProgressTracker}.
+     * <p>
+     * <b>Flag:</b> {@code --metrics}
+     * <p>
+     * <b>Default:</b> {@code "reports/fontwriter.prom"}.
+     */
+    public String metricsPath = "reports/fontwriter.prom";
+
+    /**
+     * Runs in-process stand-ins for msdf-atlas-gen and oxipng instead of
+     * the bundled binaries, for measuring and testing everything around
+     * them. The value is {@code default} or a list such as
+     * {@code atlas-ms=200,max-size=40}; see {@link FakeToolBackend}.
+     * Null means the real binaries.
+     * <p>
+     * <b>Flag:</b> {@code --fake-tools}
+     * <p>
+     * <b>Default:</b> {@code null}.
+     */
+    public String fakeTools = null;
+
+    /**
+     * Loopback port that {@code --daemon} listens on for jobs; 0 picks
+     * any free port and prints it. See {@link FontDaemon}.
+     * <p>
+     * <b>Flag:</b> {@code --port}
+     * <p>
+     * <b>Default:</b> {@code 7450}.
+     */
+    public int daemonPort = 7450;
+
+    /**
+     * How many jobs {@code --daemon} runs at once. msdf-atlas-gen uses
+     * several threads itself, so 0 means half the available processors,
+     * and at least one.
+     * <p>
+     * <b>Flag:</b> {@code --jobs}
+     * <p>
+     * <b>Default:</b> {@code 0}.
+     */
+    public int daemonJobs = 0;
+
+    /**
+     * Comma-separated modes that {@code --watch} generates for every
+     * font. See {@link FontWatcher}.
+     * <p>
+     * <b>Flag:</b> {@code --modes}
+     * <p>
+     * <b>Default:</b> {@code "standard,sdf,msdf"}, the modes of {@code --bulk}.
+     */
+    public String watchModes = "standard,sdf,msdf";
+
+    /**
+     * When true, {@code --bulk} regenerates every job in full instead of
+     * skipping the stages its manifest says are up to date, and then
+     * records the results as usual. See {@link BuildManifest}.
+     * <p>
+     * <b>Flag:</b> {@code --rebuild} (takes no value)
+     * <p>
+     * <b>Default:</b> {@code false}.
+     */
+    public boolean bulkRebuild = false;
+
     // ---------------------------------------------------------------
     //  Convenience queries.
     // ---------------------------------------------------------------
@@ -458,6 +747,19 @@ public class FontwriterConfig {
      */
     public boolean charsetExplicitlySet = false;
 
+    /**
+     * Returns an independent copy of this configuration. Every field is
+     * a primitive, a String or an enum constant, so a shallow copy is
+     * enough; later changes to either object don't affect the other.
+     */
+    public FontwriterConfig copy() {
+        try {
+            return (FontwriterConfig) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e); // Cloneable is implemented
+        }
+    }
+
     @Override
     public String toString() {
         if (!isStandardRun()) {
@@ -465,6 +767,28 @@ public class FontwriterConfig {
             if (versionRequested) return "FontwriterConfig{--version}";
             return "FontwriterConfig{" + batchCommand
                     + (batchCommandPath != null ? " " + batchCommandPath : "")
+                    + (imageSize != null ? ", imageSize=" + imageSize : "")
+                    + (color != null ? ", color=" + color : "")
+                    + (charset != Charset.ALL ? ", charset=" + charset : "")
+                    + (langPath != null ? ", lang=" + langPath : "")
+                    + (kerningThreshold > 0.0 ? ", kerningThreshold=" + kerningThreshold : "")
+                    + (kerningFromLang ? ", kerningLang=true" : "")
+                    + (writeKtx ? ", ktx=true" : "")
+                    + (writeBundle ? ", fwb=true" : "")
+                    + (writeSharedDictionary ? ", sdz=true" : "")
+                    + (previewMemoryMb != 64.0 ? ", previewMemory=" + previewMemoryMb : "")
+                    + (!"previews-baseline".equals(baselinePath) ? ", baseline=" + baselinePath : "")
+                    + (ssimThreshold != 0.99 ? ", ssimThreshold=" + ssimThreshold : "")
+                    + (atlasGenTimeoutSeconds != 600.0 ? ", atlasTimeout=" + atlasGenTimeoutSeconds : "")
+                    + (oxipngTimeoutSeconds != 300.0 ? ", oxipngTimeout=" + oxipngTimeoutSeconds : "")
+                    + (toolRetries != 1 ? ", toolRetries=" + toolRetries : "")
+                    + (jfrPath != null ? ", jfr=" + jfrPath : "")
+                    + (!"reports/fontwriter.prom".equals(metricsPath) ? ", metrics=" + metricsPath : "")
+                    + (fakeTools != null ? ", fakeTools=" + fakeTools : "")
+                    + (daemonPort != 7450 ? ", port=" + daemonPort : "")
+                    + (daemonJobs != 0 ? ", jobs=" + daemonJobs : "")
+                    + (!"standard,sdf,msdf".equals(watchModes) ? ", modes=" + watchModes : "")
+                    + (bulkRebuild ? ", rebuild=true" : "")
                     + "}";
         }
         StringBuilder sb = new StringBuilder("FontwriterConfig{");
@@ -475,6 +799,17 @@ public class FontwriterConfig {
         if (color != null) sb.append(", color=").append(color);
         if (charset != null) sb.append(", charset=").append(charset);
         if (langPath != null) sb.append(", lang=").append(langPath);
+        if (kerningThreshold > 0.0) sb.append(", kerningThreshold=").append(kerningThreshold);
+        if (kerningFromLang) sb.append(", kerningLang=true");
+        if (writeKtx) sb.append(", ktx=true");
+        if (writeBundle) sb.append(", fwb=true");
+        if (writeSharedDictionary) sb.append(", sdz=true");
+        if (previewMemoryMb != 64.0) sb.append(", previewMemory=").append(previewMemoryMb);
+        if (atlasGenTimeoutSeconds != 600.0) sb.append(", atlasTimeout=").append(atlasGenTimeoutSeconds);
+        if (oxipngTimeoutSeconds != 300.0) sb.append(", oxipngTimeout=").append(oxipngTimeoutSeconds);
+        if (toolRetries != 1) sb.append(", toolRetries=").append(toolRetries);
+        if (jfrPath != null) sb.append(", jfr=").append(jfrPath);
+        if (fakeTools != null) sb.append(", fakeTools=").append(fakeTools);
         sb.append('}');
         return sb.toString();
     }
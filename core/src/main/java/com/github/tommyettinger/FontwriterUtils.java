@@ -19,8 +19,8 @@ import java.io.OutputStream;
  * instance state, so it's grouped into one place rather than cluttering
  * the main class with small private helpers. Each method is
  * independently testable; collectively they cover the CLI color
- * parsing and the JSON→UBJ/LZMA conversions that follow atlas
- * generation.
+ * parsing and the JSON→UBJ/LZMA/shared-dictionary conversions that
+ * follow atlas generation.
  */
 final class FontwriterUtils {
 
@@ -53,7 +53,7 @@ final class FontwriterUtils {
             // Try to parse named color
             ColorLookup lookup = ColorLookup.DESCRIPTIVE;
             int namedColor = lookup.getRgba(str);
-            if (namedColor != Main.NO_COLOR_OVERRIDE) {
+            if (namedColor != FontWriter.NO_COLOR_OVERRIDE) {
                 return namedColor;
             }
             // Try to parse hex
@@ -95,6 +95,7 @@ final class FontwriterUtils {
      *         by the UBJ or LZMA pipelines
      */
     public static void convertToUBJSON(FileHandle inFile) {
+        final Object event = FlightEvents.begin(FlightEvents.CONVERSION);
         try {
             FileHandle ubjDir = inFile.sibling("ubj/");
             ubjDir.mkdirs();
@@ -109,11 +110,36 @@ final class FontwriterUtils {
             OutputStream lzmaOut = outLzmaFile.write(false);
             Lzma.compress(bais, lzmaOut);
             lzmaOut.close();
+            if (event != null) FlightEvents.commit(event, "ubj", inFile.path(), inFile.length(),
+                    outFile.length() + outLzmaFile.length());
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Name of the shared dictionary file that {@code --dict} trains and
+     * that {@link #convertToSharedDictionary(FileHandle, byte[])} output
+     * must be decompressed with. Lives in the same folder as the fonts.
+     */
+    public static final String SHARED_DICTIONARY_NAME = "fontwriter.dict";
+
+    /**
+     * Compresses a JSON file with {@link DictionaryCompression} using the
+     * given shared dictionary. Given {@code foo.json} this produces
+     * {@code foo.json.sdz} as a sibling.
+     *
+     * @param inFile     the source JSON file; left untouched
+     * @param dictionary the shared dictionary, usually read from
+     *                   {@link #SHARED_DICTIONARY_NAME}
+     */
+    public static void convertToSharedDictionary(FileHandle inFile, byte[] dictionary) {
+        final Object event = FlightEvents.begin(FlightEvents.CONVERSION);
+        FileHandle outFile = inFile.sibling(inFile.nameWithoutExtension() + ".json.sdz");
+        outFile.writeBytes(DictionaryCompression.compress(inFile.readBytes(), dictionary), false);
+        if (event != null) FlightEvents.commit(event, "sdz", inFile.path(), inFile.length(), outFile.length());
+    }
+
     /**
      * LZMA-compresses a JSON file alongside itself. Given
      * {@code foo.json} this produces {@code foo.json.lzma} as a sibling.
@@ -123,6 +149,7 @@ final class FontwriterUtils {
      *         by the LZMA pipeline
      */
     public static void convertToLzma(FileHandle inFile) {
+        final Object event = FlightEvents.begin(FlightEvents.CONVERSION);
         try {
             FileHandle outLzmaFile = inFile.sibling(inFile.nameWithoutExtension() + ".json.lzma");
 
@@ -130,6 +157,7 @@ final class FontwriterUtils {
             OutputStream lzmaOut = outLzmaFile.write(false);
             Lzma.compress(bais, lzmaOut);
             lzmaOut.close();
+            if (event != null) FlightEvents.commit(event, "lzma", inFile.path(), inFile.length(), outLzmaFile.length());
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
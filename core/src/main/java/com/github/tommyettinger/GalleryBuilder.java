@@ -0,0 +1,269 @@
+package com.github.tommyettinger;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.PixmapIO;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+import com.badlogic.gdx.utils.JsonWriter;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/**
+ * Builds a paginated static gallery for a folder of generated fonts,
+ * such as {@code docs/knownFonts}, so that browsing it doesn't mean
+ * downloading hundreds of full-size previews at once.
+ * <p>
+ * The folder is expected to hold {@code <name>-<mode>.json} fonts with
+ * their atlases and licenses, and a {@code previews/} subfolder of
+ * full-size previews. The gallery is written next to it, in a sibling
+ * {@code gallery/} folder:
+ * <ul>
+ *   <li>{@code thumbs/<name>-<mode>.png}: {@value #THUMB_WIDTH}x{@value #THUMB_HEIGHT}
+ *       thumbnails, area-averaged from each preview.</li>
+ *   <li>{@code fonts.json}: one entry per preview, with the font's name,
+ *       mode, glyph and kerning counts, atlas size, the sizes of its
+ *       files, and a CRC-32 of the preview the thumbnail was made from.</li>
+ *   <li>{@code index.html}, {@code page-2.html}, ...: {@value #PER_PAGE}
+ *       fonts per page, with {@code loading="lazy"} thumbnails that link
+ *       to the full preview.</li>
+ * </ul>
+ * Thumbnails and metadata are made in parallel. A thumbnail is only
+ * regenerated when its preview's CRC differs from the one recorded in
+ * the previous {@code fonts.json}, or when the thumbnail is missing.
+ */
+final class GalleryBuilder {
+
+    private GalleryBuilder() {} // utility class
+
+    static final int THUMB_WIDTH = 400, THUMB_HEIGHT = 225;
+    static final int PER_PAGE = 60;
+
+    /** What {@link #build} did, for the caller to report. */
+    static final class Summary {
+        int fonts, pages, thumbnailsWritten, thumbnailsReused;
+        FileHandle index;
+    }
+
+    /**
+     * Builds (or incrementally updates) the gallery for {@code fontsDir}.
+     *
+     * @param fontsDir folder of fonts, with a {@code previews/} subfolder
+     * @param threads  how many thumbnails to make at once
+     */
+    static Summary build(FileHandle fontsDir, int threads) {
+        FileHandle previews = fontsDir.child("previews");
+        FileHandle out = fontsDir.parent().child("gallery");
+        FileHandle thumbs = out.child("thumbs");
+        thumbs.mkdirs();
+
+        // CRCs recorded last time, by preview name.
+        Map<String, String> previousCrcs = new HashMap<>();
+        FileHandle indexJson = out.child("fonts.json");
+        if (indexJson.exists()) {
+            for (JsonValue e = new JsonReader().parse(indexJson).child; e != null; e = e.next) {
+                previousCrcs.put(e.getString("id"), e.getString("previewCrc", ""));
+            }
+        }
+
+        FileHandle[] files = previews.list(".png");
+        Arrays.sort(files, (a, b) -> a.name().compareTo(b.name()));
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        List<Future<JsonValue>> futures = new ArrayList<>(files.length);
+        Summary summary = new Summary();
+        try {
+            for (final FileHandle preview : files) {
+                futures.add(workers.submit(() -> describe(fontsDir, preview, thumbs,
+                        previousCrcs.get(preview.nameWithoutExtension()))));
+            }
+            JsonValue entries = new JsonValue(JsonValue.ValueType.array);
+            for (Future<JsonValue> f : futures) {
+                JsonValue entry = f.get();
+                if (entry.getBoolean("thumbWritten")) summary.thumbnailsWritten++;
+                else summary.thumbnailsReused++;
+                entry.remove("thumbWritten");
+                entries.addChild(entry);
+            }
+            summary.fonts = entries.size;
+            indexJson.writeString(entries.toJson(JsonWriter.OutputType.json), false, "UTF-8");
+            summary.pages = writePages(out, fontsDir, entries);
+            summary.index = out.child("index.html");
+            return summary;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Gallery generation failed", e.getCause());
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    /**
+     * Makes the thumbnail for one preview if needed, and gathers the
+     * metadata for its index entry.
+     */
+    private static JsonValue describe(FileHandle fontsDir, FileHandle preview, FileHandle thumbs, String previousCrc) {
+        final String id = preview.nameWithoutExtension();
+        final int dash = id.lastIndexOf('-');
+        final String name = dash < 0 ? id : id.substring(0, dash), mode = dash < 0 ? "" : id.substring(dash + 1);
+
+        byte[] bytes = preview.readBytes();
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        String previewCrc = Long.toHexString(crc.getValue());
+
+        FileHandle thumb = thumbs.child(id + ".png");
+        boolean written = false;
+        if (!thumb.exists() || !previewCrc.equals(previousCrc)) {
+            Pixmap full = new Pixmap(bytes, 0, bytes.length);
+            try {
+                Pixmap small = downscale(full, THUMB_WIDTH, THUMB_HEIGHT);
+                try {
+                    PixmapIO.writePNG(thumb, small, 9, false);
+                } finally {
+                    small.dispose();
+                }
+            } finally {
+                full.dispose();
+            }
+            written = true;
+        }
+
+        JsonValue entry = new JsonValue(JsonValue.ValueType.object);
+        entry.addChild("id", new JsonValue(id));
+        entry.addChild("name", new JsonValue(name));
+        entry.addChild("mode", new JsonValue(mode));
+        FileHandle json = fontsDir.child(id + ".json");
+        if (json.exists()) {
+            JsonValue font = new JsonReader().parse(json);
+            JsonValue atlas = font.get("atlas");
+            if (atlas != null) {
+                entry.addChild("atlasWidth", new JsonValue(atlas.getInt("width", 0)));
+                entry.addChild("atlasHeight", new JsonValue(atlas.getInt("height", 0)));
+            }
+            JsonValue glyphs = font.get("glyphs"), kerning = font.get("kerning");
+            entry.addChild("glyphs", new JsonValue(glyphs == null ? 0 : glyphs.size));
+            entry.addChild("kerningPairs", new JsonValue(kerning == null ? 0 : kerning.size));
+        }
+        JsonValue sizes = new JsonValue(JsonValue.ValueType.object);
+        for (String ext : new String[]{".png", ".json", ".json.lzma", ".dat"}) {
+            FileHandle f = fontsDir.child(id + ext);
+            if (f.exists()) sizes.addChild(ext.substring(1), new JsonValue(f.length()));
+        }
+        entry.addChild("fileSizes", sizes);
+        for (String ext : new String[]{"-License.txt", "-License.md"}) {
+            if (fontsDir.child(name + ext).exists()) {
+                entry.addChild("license", new JsonValue(name + ext));
+                break;
+            }
+        }
+        entry.addChild("previewCrc", new JsonValue(previewCrc));
+        entry.addChild("thumbWritten", new JsonValue(written));
+        return entry;
+    }
+
+    /**
+     * Area-averaging downscale to an RGB thumbnail, which keeps thin
+     * strokes visible where bilinear sampling would skip them.
+     */
+    static Pixmap downscale(Pixmap src, int w, int h) {
+        final int sw = src.getWidth(), sh = src.getHeight();
+        Pixmap dst = new Pixmap(w, h, Pixmap.Format.RGB888);
+        ByteBuffer out = dst.getPixels();
+        for (int y = 0; y < h; y++) {
+            int y0 = y * sh / h, y1 = Math.max(y0 + 1, (y + 1) * sh / h);
+            for (int x = 0; x < w; x++) {
+                int x0 = x * sw / w, x1 = Math.max(x0 + 1, (x + 1) * sw / w);
+                int r = 0, g = 0, b = 0, n = 0;
+                for (int sy = y0; sy < y1; sy++) {
+                    for (int sx = x0; sx < x1; sx++) {
+                        int c = src.getPixel(sx, sy);
+                        r += c >>> 24;
+                        g += c >>> 16 & 255;
+                        b += c >>> 8 & 255;
+                        n++;
+                    }
+                }
+                out.put((byte) (r / n)).put((byte) (g / n)).put((byte) (b / n));
+            }
+        }
+        out.flip();
+        return dst;
+    }
+
+    private static int writePages(FileHandle out, FileHandle fontsDir, JsonValue entries) {
+        final String fonts = "../" + fontsDir.name() + "/";
+        final int pages = Math.max(1, (entries.size + PER_PAGE - 1) / PER_PAGE);
+        // Remove pages left over from a bigger collection.
+        for (FileHandle old : out.list((dir, n) -> n.startsWith("page-") && n.endsWith(".html"))) {
+            old.delete();
+        }
+        JsonValue e = entries.child;
+        for (int page = 1; page <= pages; page++) {
+            StringBuilder sb = new StringBuilder(32 * 1024);
+            sb.append("<!DOCTYPE HTML>\n<html lang=\"en\">\n<head>\n")
+              .append("    <meta http-equiv=\"Content-Type\" content=\"text/html; charset=UTF-8\">\n")
+              .append("    <title>Known Fonts, page ").append(page).append(" of ").append(pages).append("</title>\n")
+              .append("    <style>\n")
+              .append("        body { font-family: sans-serif; }\n")
+              .append("        .grid { display: flex; flex-wrap: wrap; gap: 16px; }\n")
+              .append("        .font { width: ").append(THUMB_WIDTH).append("px; font-size: 13px; }\n")
+              .append("        .font h2 { font-size: 15px; margin: 4px 0; }\n")
+              .append("    </style>\n</head>\n<body>\n<h1>Known Fonts</h1>\n");
+            appendNav(sb, page, pages);
+            sb.append("<div class=\"grid\">\n");
+            for (int i = 0; i < PER_PAGE && e != null; i++, e = e.next) {
+                String id = e.getString("id"), name = e.getString("name");
+                sb.append("<div class=\"font\"><h2>").append(id).append("</h2>")
+                  .append("<a href=\"").append(fonts).append("previews/").append(id).append(".png\">")
+                  .append("<img src=\"thumbs/").append(id).append(".png\" alt=\"").append(id)
+                  .append("\" width=\"").append(THUMB_WIDTH).append("\" height=\"").append(THUMB_HEIGHT)
+                  .append("\" loading=\"lazy\" decoding=\"async\"></a><br>");
+                if (e.has("glyphs")) {
+                    sb.append(e.getInt("glyphs")).append(" glyphs, ")
+                      .append(e.getInt("atlasWidth", 0)).append('x').append(e.getInt("atlasHeight", 0)).append(" atlas<br>");
+                }
+                for (JsonValue size = e.get("fileSizes").child; size != null; size = size.next) {
+                    sb.append("<a href=\"").append(fonts).append(id).append('.').append(size.name).append("\">")
+                      .append(size.name).append("</a> (").append(size.asLong() / 1024).append(" KB) ");
+                }
+                if (e.has("license")) {
+                    sb.append("<a href=\"").append(fonts).append(e.getString("license")).append("\">license</a>");
+                }
+                sb.append("</div>\n");
+            }
+            sb.append("</div>\n");
+            appendNav(sb, page, pages);
+            sb.append("<p><a href=\"fonts.json\">fonts.json</a> lists every font with its metadata.</p>\n")
+              .append("</body>\n</html>\n");
+            out.child(pageName(page)).writeString(sb.toString(), false, "UTF-8");
+        }
+        return pages;
+    }
+
+    private static void appendNav(StringBuilder sb, int page, int pages) {
+        sb.append("<p>");
+        if (page > 1) sb.append("<a href=\"").append(pageName(page - 1)).append("\">&laquo; previous</a> ");
+        for (int p = 1; p <= pages; p++) {
+            if (p == page) sb.append("<b>").append(p).append("</b> ");
+            else sb.append("<a href=\"").append(pageName(p)).append("\">").append(p).append("</a> ");
+        }
+        if (page < pages) sb.append("<a href=\"").append(pageName(page + 1)).append("\">next &raquo;</a>");
+        sb.append("</p>\n");
+    }
+
+    private static String pageName(int page) {
+        return page == 1 ? "index.html" : "page-" + page + ".html";
+    }
+}
@@ -0,0 +1,425 @@
+package com.github.tommyettinger;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+import com.badlogic.gdx.utils.JsonWriter;
+import com.badlogic.gdx.utils.compression.Lzma;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * Column-oriented binary form of a Structured JSON font, written as
+ * {@code .fwc} files.
+ * <p>
+ * In Structured JSON every glyph is an object, so the codepoint, the
+ * advance and eight bounds values of one glyph sit next to each other
+ * and next to the key names. LZMA then has to model unrelated numbers
+ * that happen to be adjacent. This class instead stores each field as
+ * its own column: codepoints as deltas from the previous glyph, and
+ * every metric as a zigzag varint, so that long runs of similar small
+ * numbers end up together before the whole payload is LZMA-compressed.
+ * <p>
+ * The conversion is lossless by value: {@link #decode(byte[])} returns
+ * a tree whose numbers are bit-for-bit the doubles the original JSON
+ * parses to. Each group of related columns (the advances, the plane
+ * bounds, the atlas bounds, the kerning advances) picks a denominator
+ * {@code D}; every value {@code v} is stored as {@code q = rint(v * D)}
+ * plus the difference between the bits of {@code v} and the bits of
+ * {@code q / D}. Atlas bounds are exact multiples of one half, so their
+ * residuals are all zero; plane bounds are pixel positions divided by
+ * the atlas size with some rounding noise, which leaves residuals of a
+ * few units in the last place. Right and top bounds are stored
+ * relative to left and bottom, so they become glyph widths and heights.
+ * <p>
+ * Only the fields msdf-atlas-gen writes are supported: {@code unicode},
+ * {@code advance}, {@code planeBounds} and {@code atlasBounds} on
+ * glyphs, and {@code unicode1}, {@code unicode2} and {@code advance} on
+ * kerning pairs. Anything else in {@code atlas}, {@code metrics} or the
+ * root object is kept as a compact JSON string. After decoding, the
+ * {@code glyphs} and {@code kerning} arrays come after every other root
+ * key, which is where msdf-atlas-gen puts them.
+ */
+public final class GlyphColumns {
+
+    private GlyphColumns() {} // utility class
+
+    public static final int MAGIC = 0x46574331; // "FWC1"
+    public static final int VERSION = 1;
+
+    private static final String[] SIDES = {"left", "bottom", "right", "top"};
+    private static final int HAS_PLANE = 1, HAS_ATLAS = 2;
+
+    /**
+     * Writes {@code <json name without extension>.fwc} next to the given
+     * JSON file.
+     *
+     * @return the file that was written
+     */
+    public static FileHandle write(FileHandle jsonFile) {
+        FileHandle outFile = jsonFile.sibling(jsonFile.nameWithoutExtension() + ".fwc");
+        outFile.writeBytes(encode(new JsonReader().parse(jsonFile)), false);
+        return outFile;
+    }
+
+    /**
+     * Converts a {@code .fwc} file back to Structured JSON text.
+     */
+    public static String toJson(FileHandle fwcFile) {
+        return decode(fwcFile.readBytes()).toJson(JsonWriter.OutputType.json);
+    }
+
+    /**
+     * Encodes a parsed Structured JSON font and LZMA-compresses the
+     * result.
+     *
+     * @throws IllegalArgumentException if a glyph or kerning pair has a
+     *         field this format cannot store
+     */
+    public static byte[] encode(JsonValue root) {
+        JsonValue glyphs = root.get("glyphs"), kerning = root.get("kerning");
+        if (glyphs == null) {
+            throw new IllegalArgumentException("Structured JSON font has no glyphs array.");
+        }
+        JsonValue atlas = root.get("atlas");
+        double size = atlas == null ? 0.0 : atlas.getDouble("size", 0.0);
+
+        JsonValue skeleton = new JsonValue(JsonValue.ValueType.object);
+        JsonValue tail = null;
+        for (JsonValue c = root.child; c != null; c = c.next) {
+            if ("glyphs".equals(c.name) || "kerning".equals(c.name)) continue;
+            JsonValue copy = new JsonReader().parse(c.toJson(JsonWriter.OutputType.json));
+            tail = append(skeleton, tail, c.name, copy);
+        }
+
+        try {
+            ByteArrayOutputStream raw = new ByteArrayOutputStream(glyphs.size * 24 + 1024);
+            DataOutputStream out = new DataOutputStream(raw);
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            byte[] skeletonBytes = skeleton.toJson(JsonWriter.OutputType.json).getBytes("UTF-8");
+            writeVarLong(out, skeletonBytes.length);
+            out.write(skeletonBytes);
+
+            final int n = glyphs.size;
+            writeVarLong(out, n);
+            int[] flags = new int[n];
+            double[][] advance = new double[1][n];
+            double[][] plane = new double[4][n], atlasBounds = new double[4][n];
+            int planeCount = 0, atlasCount = 0, prev = 0, i = 0;
+            for (JsonValue g = glyphs.child; g != null; g = g.next, i++) {
+                for (JsonValue f = g.child; f != null; f = f.next) {
+                    switch (f.name) {
+                        case "unicode":
+                        case "advance":
+                            break;
+                        case "planeBounds":
+                            flags[i] |= HAS_PLANE;
+                            readBounds(f, plane, planeCount++);
+                            break;
+                        case "atlasBounds":
+                            flags[i] |= HAS_ATLAS;
+                            readBounds(f, atlasBounds, atlasCount++);
+                            break;
+                        default:
+                            throw new IllegalArgumentException("Unsupported glyph field \"" + f.name + "\".");
+                    }
+                }
+                int unicode = g.getInt("unicode");
+                writeVarLong(out, zigzag(unicode - prev));
+                prev = unicode;
+                advance[0][i] = g.getDouble("advance");
+            }
+            for (int flag : flags) {
+                out.writeByte(flag);
+            }
+            writeGroup(out, advance, n, false, size);
+            writeGroup(out, plane, planeCount, true, size);
+            writeGroup(out, atlasBounds, atlasCount, true, size);
+
+            out.writeBoolean(kerning != null);
+            if (kerning != null) {
+                final int k = kerning.size;
+                writeVarLong(out, k);
+                double[][] kernAdvance = new double[1][k];
+                int prevFirst = 0, prevSecond = 0, j = 0;
+                for (JsonValue p = kerning.child; p != null; p = p.next, j++) {
+                    for (JsonValue f = p.child; f != null; f = f.next) {
+                        if (!"unicode1".equals(f.name) && !"unicode2".equals(f.name) && !"advance".equals(f.name)) {
+                            throw new IllegalArgumentException("Unsupported kerning field \"" + f.name + "\".");
+                        }
+                    }
+                    int first = p.getInt("unicode1");
+                    writeVarLong(out, zigzag(first - prevFirst));
+                    prevFirst = first;
+                    kernAdvance[0][j] = p.getDouble("advance");
+                }
+                j = 0;
+                for (JsonValue p = kerning.child; p != null; p = p.next, j++) {
+                    int second = p.getInt("unicode2");
+                    writeVarLong(out, zigzag(second - prevSecond));
+                    prevSecond = second;
+                }
+                writeGroup(out, kernAdvance, k, false, size);
+            }
+            out.flush();
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.size() / 4 + 64);
+            Lzma.compress(new ByteArrayInputStream(raw.toByteArray()), compressed);
+            return compressed.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reverses {@link #encode(JsonValue)}.
+     *
+     * @throws IllegalArgumentException if the data is not a version
+     *         {@value #VERSION} {@code .fwc} payload or is truncated
+     */
+    public static JsonValue decode(byte[] data) {
+        try {
+            ByteArrayOutputStream raw = new ByteArrayOutputStream(data.length * 4);
+            Lzma.decompress(new ByteArrayInputStream(data), raw);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw.toByteArray()));
+            if (in.readInt() != MAGIC) {
+                throw new IllegalArgumentException("Not a fontwriter columnar font (bad magic number).");
+            }
+            int version = in.readUnsignedShort();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported columnar font version " + version + ".");
+            }
+            byte[] skeletonBytes = new byte[(int) readVarLong(in)];
+            in.readFully(skeletonBytes);
+            JsonValue root = new JsonReader().parse(new String(skeletonBytes, "UTF-8"));
+            JsonValue tail = root.child;
+            while (tail != null && tail.next != null) tail = tail.next;
+            JsonValue atlas = root.get("atlas");
+            double size = atlas == null ? 0.0 : atlas.getDouble("size", 0.0);
+
+            final int n = (int) readVarLong(in);
+            int[] unicode = new int[n], flags = new int[n];
+            for (int i = 0, prev = 0; i < n; i++) {
+                unicode[i] = prev += unzigzag(readVarLong(in));
+            }
+            int planeCount = 0, atlasCount = 0;
+            for (int i = 0; i < n; i++) {
+                flags[i] = in.readUnsignedByte();
+                if ((flags[i] & HAS_PLANE) != 0) planeCount++;
+                if ((flags[i] & HAS_ATLAS) != 0) atlasCount++;
+            }
+            double[][] advance = readGroup(in, 1, n, false);
+            double[][] plane = readGroup(in, 4, planeCount, true);
+            double[][] atlasBounds = readGroup(in, 4, atlasCount, true);
+
+            JsonValue glyphs = new JsonValue(JsonValue.ValueType.array), lastGlyph = null;
+            for (int i = 0, p = 0, a = 0; i < n; i++) {
+                JsonValue g = new JsonValue(JsonValue.ValueType.object), t;
+                t = append(g, null, "unicode", new JsonValue(unicode[i]));
+                t = append(g, t, "advance", new JsonValue(advance[0][i]));
+                if ((flags[i] & HAS_PLANE) != 0) t = append(g, t, "planeBounds", bounds(plane, p++));
+                if ((flags[i] & HAS_ATLAS) != 0) append(g, t, "atlasBounds", bounds(atlasBounds, a++));
+                lastGlyph = append(glyphs, lastGlyph, null, g);
+            }
+            tail = append(root, tail, "glyphs", glyphs);
+
+            if (in.readBoolean()) {
+                final int k = (int) readVarLong(in);
+                int[] first = new int[k], second = new int[k];
+                for (int j = 0, prev = 0; j < k; j++) {
+                    first[j] = prev += unzigzag(readVarLong(in));
+                }
+                for (int j = 0, prev = 0; j < k; j++) {
+                    second[j] = prev += unzigzag(readVarLong(in));
+                }
+                double[][] kernAdvance = readGroup(in, 1, k, false);
+                JsonValue kerning = new JsonValue(JsonValue.ValueType.array), lastPair = null;
+                for (int j = 0; j < k; j++) {
+                    JsonValue pair = new JsonValue(JsonValue.ValueType.object), t;
+                    t = append(pair, null, "unicode1", new JsonValue(first[j]));
+                    t = append(pair, t, "unicode2", new JsonValue(second[j]));
+                    append(pair, t, "advance", new JsonValue(kernAdvance[0][j]));
+                    lastPair = append(kerning, lastPair, null, pair);
+                }
+                append(root, tail, "kerning", kerning);
+            }
+            return root;
+        } catch (EOFException e) {
+            throw new IllegalArgumentException("Truncated columnar font.", e);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void readBounds(JsonValue bounds, double[][] columns, int row) {
+        if (bounds.size != 4) {
+            throw new IllegalArgumentException("Bounds must have exactly left, bottom, right and top.");
+        }
+        for (int s = 0; s < 4; s++) {
+            JsonValue side = bounds.get(SIDES[s]);
+            if (side == null) {
+                throw new IllegalArgumentException("Bounds are missing \"" + SIDES[s] + "\".");
+            }
+            columns[s][row] = side.asDouble();
+        }
+    }
+
+    private static JsonValue bounds(double[][] columns, int row) {
+        JsonValue b = new JsonValue(JsonValue.ValueType.object), t = null;
+        for (int s = 0; s < 4; s++) {
+            t = append(b, t, SIDES[s], new JsonValue(columns[s][row]));
+        }
+        return b;
+    }
+
+    /**
+     * Appends in constant time; {@link JsonValue#addChild(JsonValue)}
+     * walks the whole child list, which is quadratic for large fonts.
+     *
+     * @return the new last child
+     */
+    private static JsonValue append(JsonValue parent, JsonValue last, String name, JsonValue child) {
+        child.name = name;
+        child.parent = parent;
+        child.prev = last;
+        if (last == null) parent.child = child;
+        else last.next = child;
+        parent.size++;
+        return child;
+    }
+
+    /**
+     * Writes a group of columns that share one denominator. With
+     * {@code bounds} set, the four columns are left, bottom, right, top,
+     * and right and top are stored relative to left and bottom;
+     * otherwise every column is stored as deltas from its previous row.
+     */
+    private static void writeGroup(DataOutputStream out, double[][] columns, int rows, boolean bounds,
+                                   double size) throws IOException {
+        double d = chooseDenominator(columns, rows, bounds, size);
+        out.writeDouble(d);
+        long[][] q = quantize(columns, rows, d);
+        for (int c = 0; c < columns.length; c++) {
+            for (int r = 0; r < rows; r++) {
+                writeVarLong(out, zigzag(q[c][r] - reference(q, c, r, bounds)));
+            }
+        }
+        for (int c = 0; c < columns.length; c++) {
+            for (int r = 0; r < rows; r++) {
+                writeVarLong(out, zigzag(Double.doubleToRawLongBits(columns[c][r])
+                        - Double.doubleToRawLongBits(q[c][r] / d)));
+            }
+        }
+    }
+
+    private static double[][] readGroup(DataInputStream in, int columnCount, int rows, boolean bounds)
+            throws IOException {
+        double d = in.readDouble();
+        long[][] q = new long[columnCount][rows];
+        for (int c = 0; c < columnCount; c++) {
+            for (int r = 0; r < rows; r++) {
+                q[c][r] = unzigzag(readVarLong(in)) + reference(q, c, r, bounds);
+            }
+        }
+        double[][] columns = new double[columnCount][rows];
+        for (int c = 0; c < columnCount; c++) {
+            for (int r = 0; r < rows; r++) {
+                columns[c][r] = Double.longBitsToDouble(Double.doubleToRawLongBits(q[c][r] / d)
+                        + unzigzag(readVarLong(in)));
+            }
+        }
+        return columns;
+    }
+
+    /** The already-known value that {@code q[c][r]} is stored relative to. */
+    private static long reference(long[][] q, int c, int r, boolean bounds) {
+        if (bounds && c >= 2) return q[c - 2][r];
+        return r == 0 ? 0L : q[c][r - 1];
+    }
+
+    private static long[][] quantize(double[][] columns, int rows, double d) {
+        long[][] q = new long[columns.length][rows];
+        for (int c = 0; c < columns.length; c++) {
+            for (int r = 0; r < rows; r++) {
+                q[c][r] = (long) Math.rint(columns[c][r] * d);
+            }
+        }
+        return q;
+    }
+
+    /**
+     * Tries powers of two, and powers of two times the atlas size, and
+     * keeps whichever gives the fewest varint bytes in total.
+     */
+    private static double chooseDenominator(double[][] columns, int rows, boolean bounds, double size) {
+        double max = 0.0;
+        for (double[] column : columns) {
+            for (int r = 0; r < rows; r++) max = Math.max(max, Math.abs(column[r]));
+        }
+        double best = 1.0;
+        long bestCost = Long.MAX_VALUE;
+        for (int pass = 0; pass < 2; pass++) {
+            double base = pass == 0 ? 1.0 : size;
+            if (base <= 0.0) continue;
+            for (int shift = 0; shift <= (pass == 0 ? 24 : 8); shift++) {
+                double d = base * (1 << shift);
+                if (max * d > 0x1p50) break;
+                long[][] q = quantize(columns, rows, d);
+                long cost = 0L;
+                for (int c = 0; c < columns.length; c++) {
+                    for (int r = 0; r < rows; r++) {
+                        cost += varLongSize(zigzag(q[c][r] - reference(q, c, r, bounds)));
+                        cost += varLongSize(zigzag(Double.doubleToRawLongBits(columns[c][r])
+                                - Double.doubleToRawLongBits(q[c][r] / d)));
+                    }
+                }
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    best = d;
+                }
+            }
+        }
+        return best;
+    }
+
+    private static long zigzag(long n) {
+        return n << 1 ^ n >> 63;
+    }
+
+    private static long unzigzag(long n) {
+        return n >>> 1 ^ -(n & 1L);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long n) throws IOException {
+        while ((n & ~0x7FL) != 0L) {
+            out.writeByte((int) (n & 0x7F) | 0x80);
+            n >>>= 7;
+        }
+        out.writeByte((int) n);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long n = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            n |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return n;
+        }
+        throw new IllegalArgumentException("Malformed varint in columnar font.");
+    }
+
+    private static int varLongSize(long n) {
+        int size = 1;
+        while ((n & ~0x7FL) != 0L) {
+            n >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
@@ -1,6 +1,5 @@
 package com.github.tommyettinger;
 
-import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.utils.ByteArray;
@@ -10,6 +9,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.zip.CRC32;
 import java.util.zip.CheckedOutputStream;
 import java.util.zip.Deflater;
@@ -65,9 +65,11 @@ class IndexedPngWriter {
      * @param pm   source pixmap
      * @param rgba 32-bit color whose top 24 bits provide the palette's
      *             shared RGB values
+     * @throws UncheckedIOException if {@code file} can't be written
      */
     public void write(FileHandle file, Pixmap pm, int rgba) {
         final int w = pm.getWidth(), h = pm.getHeight();
+        final Object event = FlightEvents.begin(FlightEvents.PNG_WRITE);
         OutputStream output = file.write(false);
         try {
             DeflaterOutputStream deflaterOutput = new DeflaterOutputStream(buffer, deflater);
@@ -147,11 +149,12 @@ class IndexedPngWriter {
 
                 output.flush();
             } catch (IOException e) {
-                Gdx.app.error("transparency", e.getMessage());
+                throw new UncheckedIOException("Could not write " + file.path(), e);
             }
         } finally {
             StreamUtils.closeQuietly(output);
         }
+        if (event != null) FlightEvents.commit(event, file.path(), w, h, file.length());
     }
 
     /**
@@ -0,0 +1,251 @@
+package com.github.tommyettinger;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.JsonValue;
+import com.badlogic.gdx.utils.JsonWriter;
+
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Records where the time and memory of one font job go, stage by stage,
+ * so that slow fonts and slow steps can be found without a profiler.
+ * <p>
+ * {@link FontWriter#write} calls {@link #begin(String)} at the start of
+ * each step, which also ends the previous one, and {@link #end()} after
+ * the last. For every stage this keeps:
+ * <ul>
+ *   <li>wall time, and CPU time of this JVM (all threads, so background
+ *       PNG writers from earlier jobs are included) plus CPU time of the
+ *       binaries run during the stage, as reported by {@link BinaryExec};</li>
+ *   <li>bytes read and written, as the sizes of the files the caller
+ *       names with {@link #in} and {@link #out};</li>
+ *   <li>how many times a binary was run, which for msdf-atlas-gen is the
+ *       number of sizes tried;</li>
+ *   <li>peak Java heap during the stage, direct buffer memory and
+ *       resident set size at its end (Linux only), and the peak RSS of
+ *       any binary it ran. Pixmaps are allocated natively by libGDX, so
+ *       they show up in RSS but not in the heap.</li>
+ * </ul>
+ * Each stage is also a {@link FlightEvents#STAGE} event when flight
+ * recording is on. Unknown values are -1. {@link #write} saves one job as JSON, and
+ * {@link #writeSummary} aggregates a whole {@code --bulk} run.
+ */
+final class JobReport {
+
+    /** Measurements for one stage of one job. */
+    static final class Stage {
+        final String name;
+        long wallNanos, cpuNanos = -1L, childCpuNanos, bytesIn, bytesOut;
+        long peakHeapBytes = -1L, directBytes = -1L, rssBytes = -1L, childPeakRssBytes = -1L;
+        int runs;
+
+        Stage(String name) {
+            this.name = name;
+        }
+    }
+
+    final String font;
+    final String mode;
+    final List<Stage> stages = new ArrayList<>();
+    /** Told the name of each stage as it begins; may be null. */
+    Consumer<String> listener;
+    private Stage current;
+    private Object event;
+    private long startNanos, startCpu;
+
+    JobReport(String font, String mode) {
+        this.font = font;
+        this.mode = mode;
+    }
+
+    /** Ends the current stage, if any, and starts one called {@code name}. */
+    void begin(String name) {
+        end();
+        current = new Stage(name);
+        stages.add(current);
+        if (listener != null) listener.accept(name);
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) pool.resetPeakUsage();
+        }
+        event = FlightEvents.begin(FlightEvents.STAGE);
+        startCpu = processCpuNanos();
+        startNanos = System.nanoTime();
+    }
+
+    /** Ends the current stage. Does nothing if none is running. */
+    void end() {
+        if (current == null) return;
+        current.wallNanos = System.nanoTime() - startNanos;
+        long cpu = processCpuNanos();
+        if (cpu >= 0 && startCpu >= 0) current.cpuNanos = cpu - startCpu + current.childCpuNanos;
+        long heap = 0L;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) heap += pool.getPeakUsage().getUsed();
+        }
+        current.peakHeapBytes = heap;
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName())) current.directBytes = pool.getMemoryUsed();
+        }
+        current.rssBytes = ownRss();
+        FlightEvents.commit(event, font, mode, current.name, current.bytesIn, current.bytesOut, current.runs);
+        event = null;
+        current = null;
+    }
+
+    /** Counts the current sizes of {@code files} as read by the current stage. */
+    void in(FileHandle... files) {
+        for (FileHandle f : files) {
+            if (current != null && f.exists()) current.bytesIn += f.length();
+        }
+    }
+
+    /** Counts the current sizes of {@code files} as written by the current stage. */
+    void out(FileHandle... files) {
+        for (FileHandle f : files) {
+            if (current != null && f.exists()) current.bytesOut += f.length();
+        }
+    }
+
+    /** Adds one binary run to the current stage. */
+    void tool(BinaryExec.Result result) {
+        if (current == null) return;
+        current.runs++;
+        if (result.cpuNanos > 0) current.childCpuNanos += result.cpuNanos;
+        current.childPeakRssBytes = Math.max(current.childPeakRssBytes, result.peakRssBytes);
+    }
+
+    long totalWallNanos() {
+        long sum = 0L;
+        for (Stage s : stages) sum += s.wallNanos;
+        return sum;
+    }
+
+    JsonValue toJson() {
+        JsonValue job = new JsonValue(JsonValue.ValueType.object);
+        job.addChild("font", new JsonValue(font));
+        job.addChild("mode", new JsonValue(mode));
+        job.addChild("wallMs", new JsonValue(totalWallNanos() / 1e6));
+        JsonValue list = new JsonValue(JsonValue.ValueType.array);
+        for (Stage s : stages) {
+            JsonValue o = new JsonValue(JsonValue.ValueType.object);
+            o.addChild("stage", new JsonValue(s.name));
+            o.addChild("wallMs", new JsonValue(s.wallNanos / 1e6));
+            o.addChild("cpuMs", new JsonValue(s.cpuNanos < 0 ? -1.0 : s.cpuNanos / 1e6));
+            o.addChild("childCpuMs", new JsonValue(s.childCpuNanos / 1e6));
+            o.addChild("bytesIn", new JsonValue(s.bytesIn));
+            o.addChild("bytesOut", new JsonValue(s.bytesOut));
+            o.addChild("runs", new JsonValue(s.runs));
+            o.addChild("peakHeapBytes", new JsonValue(s.peakHeapBytes));
+            o.addChild("directBytes", new JsonValue(s.directBytes));
+            o.addChild("rssBytes", new JsonValue(s.rssBytes));
+            o.addChild("childPeakRssBytes", new JsonValue(s.childPeakRssBytes));
+            list.addChild(o);
+        }
+        job.addChild("stages", list);
+        return job;
+    }
+
+    /** Writes this job to {@code <font>-<mode>.json} in {@code dir}, and returns the file. */
+    FileHandle write(FileHandle dir) {
+        FileHandle file = dir.child(font + "-" + mode + ".json");
+        file.writeString(toJson().prettyPrint(JsonWriter.OutputType.json, 0), false, "UTF-8");
+        return file;
+    }
+
+    /**
+     * Writes per-stage totals, means and maximums over {@code jobs} to
+     * {@code file}, with the ten slowest jobs, and prints the totals.
+     */
+    static void writeSummary(List<JobReport> jobs, FileHandle file) {
+        Map<String, long[]> totals = new LinkedHashMap<>(); // wall, cpu, max wall, bytes in, bytes out, runs, count
+        for (JobReport job : jobs) {
+            for (Stage s : job.stages) {
+                long[] t = totals.computeIfAbsent(s.name, k -> new long[7]);
+                t[0] += s.wallNanos;
+                t[1] += Math.max(0L, s.cpuNanos);
+                t[2] = Math.max(t[2], s.wallNanos);
+                t[3] += s.bytesIn;
+                t[4] += s.bytesOut;
+                t[5] += s.runs;
+                t[6]++;
+            }
+        }
+        JsonValue root = new JsonValue(JsonValue.ValueType.object);
+        root.addChild("jobs", new JsonValue(jobs.size()));
+        long wall = 0L;
+        for (JobReport job : jobs) wall += job.totalWallNanos();
+        root.addChild("wallMs", new JsonValue(wall / 1e6));
+        JsonValue stages = new JsonValue(JsonValue.ValueType.array);
+        System.out.println();
+        System.out.println(String.format(Locale.ROOT, "Stage timings over %d jobs:", jobs.size()));
+        System.out.println(String.format(Locale.ROOT, "  %-12s %10s %10s %10s %10s %6s",
+                "stage", "total s", "mean ms", "max ms", "CPU s", "runs"));
+        for (Map.Entry<String, long[]> e : totals.entrySet()) {
+            long[] t = e.getValue();
+            JsonValue o = new JsonValue(JsonValue.ValueType.object);
+            o.addChild("stage", new JsonValue(e.getKey()));
+            o.addChild("totalWallMs", new JsonValue(t[0] / 1e6));
+            o.addChild("meanWallMs", new JsonValue(t[0] / 1e6 / t[6]));
+            o.addChild("maxWallMs", new JsonValue(t[2] / 1e6));
+            o.addChild("totalCpuMs", new JsonValue(t[1] / 1e6));
+            o.addChild("bytesIn", new JsonValue(t[3]));
+            o.addChild("bytesOut", new JsonValue(t[4]));
+            o.addChild("runs", new JsonValue(t[5]));
+            o.addChild("share", new JsonValue(wall == 0L ? 0.0 : (double) t[0] / wall));
+            stages.addChild(o);
+            System.out.println(String.format(Locale.ROOT, "  %-12s %10.2f %10.1f %10.1f %10.2f %6d",
+                    e.getKey(), t[0] / 1e9, t[0] / 1e6 / t[6], t[2] / 1e6, t[1] / 1e9, t[5]));
+        }
+        root.addChild("stages", stages);
+        List<JobReport> slowest = new ArrayList<>(jobs);
+        slowest.sort((a, b) -> Long.compare(b.totalWallNanos(), a.totalWallNanos()));
+        JsonValue slow = new JsonValue(JsonValue.ValueType.array);
+        for (JobReport job : slowest.subList(0, Math.min(10, slowest.size()))) {
+            JsonValue o = new JsonValue(JsonValue.ValueType.object);
+            o.addChild("font", new JsonValue(job.font));
+            o.addChild("mode", new JsonValue(job.mode));
+            o.addChild("wallMs", new JsonValue(job.totalWallNanos() / 1e6));
+            slow.addChild(o);
+        }
+        root.addChild("slowest", slow);
+        file.writeString(root.prettyPrint(JsonWriter.OutputType.json, 0), false, "UTF-8");
+        System.out.println("Summary written to " + file.file().getAbsolutePath());
+    }
+
+    /** CPU time of this whole JVM so far, or -1 if the platform doesn't say. */
+    private static long processCpuNanos() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        return -1L;
+    }
+
+    /** This JVM's resident set size from {@code /proc/self/status}, or -1 off Linux. */
+    private static long ownRss() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"), StandardCharsets.UTF_8)) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024L;
+                }
+            }
+        } catch (IOException | NumberFormatException | SecurityException ignored) {
+            // Not Linux.
+        }
+        return -1L;
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.tommyettinger;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs {@link FontDaemon}'s jobs on a fixed number of threads, in the
+ * order they arrive, with one exception: jobs with the same key never
+ * run at the same time. The daemon keys jobs by output folder, font and
+ * mode, because two such jobs would write the same files (see
+ * {@link FontWriter}). A job whose key is busy waits behind it, and is
+ * handed to the threads as soon as the job before it ends, so it can't
+ * hold up jobs for other fonts.
+ */
+final class JobScheduler {
+
+    private final ExecutorService threads;
+    /** Jobs waiting behind the running job with each key; a key is present while one runs. */
+    private final Map<String, ArrayDeque<Runnable>> waiting = new HashMap<>();
+    private int unfinished;
+
+    JobScheduler(int threadCount) {
+        final AtomicInteger count = new AtomicInteger();
+        threads = Executors.newFixedThreadPool(threadCount, r -> {
+            Thread t = new Thread(r, "fontwriter-job-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Queues {@code job}, which must not throw.
+     *
+     * @return how many jobs were queued or running before it
+     */
+    synchronized int submit(String key, Runnable job) {
+        int ahead = unfinished++;
+        ArrayDeque<Runnable> queue = waiting.get(key);
+        if (queue != null) {
+            queue.add(job);
+        } else {
+            waiting.put(key, new ArrayDeque<>());
+            threads.execute(() -> run(key, job));
+        }
+        return ahead;
+    }
+
+    /** How many jobs are queued or running. */
+    synchronized int unfinished() {
+        return unfinished;
+    }
+
+    private void run(String key, Runnable job) {
+        try {
+            job.run();
+        } finally {
+            synchronized (this) {
+                unfinished--;
+                Runnable next = waiting.get(key).poll();
+                if (next == null) {
+                    waiting.remove(key);
+                } else {
+                    threads.execute(() -> run(key, next));
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    /** Waits for every job submitted so far to finish, then stops the threads. */
+    void shutdown() throws InterruptedException {
+        synchronized (this) {
+            while (unfinished > 0) wait();
+        }
+        threads.shutdown();
+    }
+}
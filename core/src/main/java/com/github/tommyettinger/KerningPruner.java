@@ -0,0 +1,124 @@
+package com.github.tommyettinger;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.IntSet;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+import com.badlogic.gdx.utils.JsonWriter;
+
+/**
+ * Shrinks the {@code kerning} array of a Structured JSON font written
+ * by msdf-atlas-gen before it is compressed.
+ * <p>
+ * Pan-Unicode fonts can carry many thousands of kerning pairs, and
+ * every one of them is stored in each {@code .json}, {@code .dat},
+ * {@code .ubj}, and LZMA variant and parsed again at load time. A pair
+ * is dropped when any of these hold:
+ * <ol>
+ *   <li>Either codepoint is not in the cmap the atlas was built from,
+ *       so the pair can never be drawn with this font.</li>
+ *   <li>The absolute kerning advance is zero, or smaller than
+ *       {@link FontwriterConfig#kerningThreshold} (in em units).</li>
+ *   <li>{@link FontwriterConfig#kerningFromLang} is set and the pair
+ *       never appears as two adjacent characters in any {@code --lang}
+ *       file.</li>
+ * </ol>
+ * The JSON is rewritten in place. Number formatting may change (libGDX
+ * writes the shortest representation of each double), but every value
+ * parses back to the same number.
+ */
+final class KerningPruner {
+
+    private KerningPruner() {} // utility class
+
+    /**
+     * Prunes the kerning pairs in {@code jsonHandle} and rewrites the
+     * file if anything was removed.
+     *
+     * @param config     parsed CLI configuration (supplies the
+     *                   threshold, the bigram switch, and {@code --lang})
+     * @param jsonHandle the Structured JSON written by msdf-atlas-gen
+     * @param cmap       the cmap file the atlas was generated from
+     * @return the number of kerning pairs removed
+     */
+    public static int prune(FontwriterConfig config, FileHandle jsonHandle, FileHandle cmap) {
+        JsonValue root = new JsonReader().parse(jsonHandle);
+        JsonValue kerning = root.get("kerning");
+        if (kerning == null || kerning.size == 0) {
+            return 0;
+        }
+
+        IntSet codepoints = readCmap(cmap);
+        IntSet bigrams = null;
+        if (config.kerningFromLang) {
+            if (config.resolveCharsetStrategy() == FontwriterConfig.CharsetStrategy.LANG) {
+                bigrams = readBigrams(config.langPath);
+            } else {
+                System.out.println("  --kerning-lang has no effect without --lang; keeping all used pairs.");
+            }
+        }
+        double threshold = Math.max(0.0, config.kerningThreshold);
+
+        int before = kerning.size, removed = 0;
+        for (JsonValue.JsonIterator it = kerning.iterator(); it.hasNext(); ) {
+            JsonValue pair = it.next();
+            int first = pair.getInt("unicode1", -1), second = pair.getInt("unicode2", -1);
+            double advance = Math.abs(pair.getDouble("advance", 0.0));
+            if (!codepoints.contains(first) || !codepoints.contains(second)
+                    || advance == 0.0 || advance < threshold
+                    || (bigrams != null && (first > 0xFFFF || second > 0xFFFF
+                        || !bigrams.contains(first << 16 | second)))) {
+                it.remove();
+                removed++;
+            }
+        }
+
+        if (removed > 0) {
+            jsonHandle.writeString(root.toJson(JsonWriter.OutputType.json), false, "UTF-8");
+        }
+        System.out.println("  Kept " + (before - removed) + " of " + before + " kerning pairs.");
+        return removed;
+    }
+
+    /**
+     * Reads the space-separated decimal codepoints written by
+     * {@link CharMapBuilder#build}.
+     */
+    private static IntSet readCmap(FileHandle cmap) {
+        String content = cmap.readString("UTF-8").trim();
+        IntSet codepoints = new IntSet(content.length() >>> 2);
+        if (content.isEmpty()) {
+            return codepoints;
+        }
+        for (String code : content.split(" +")) {
+            codepoints.add(Integer.parseInt(code));
+        }
+        return codepoints;
+    }
+
+    /**
+     * Collects every pair of adjacent characters in the {@code --lang}
+     * files, packed as {@code first << 16 | second}. Only BMP chars
+     * are considered, matching how {@link CharMapBuilder} reads the
+     * same files.
+     */
+    private static IntSet readBigrams(String langPath) {
+        IntSet bigrams = new IntSet(4096);
+        FileHandle[] langFiles = LangFileResolver.resolve(langPath);
+        if (langFiles == null) {
+            return bigrams;
+        }
+        for (FileHandle f : langFiles) {
+            try {
+                String content = f.readString("UTF-8");
+                for (int i = 1; i < content.length(); i++) {
+                    bigrams.add(content.charAt(i - 1) << 16 | content.charAt(i));
+                }
+            } catch (Exception e) {
+                System.err.println("Failed to read " + f.path() + ": " + e.getMessage());
+            }
+        }
+        System.out.println("  Unique character pairs found: " + bigrams.size);
+        return bigrams;
+    }
+}
@@ -0,0 +1,218 @@
+package com.github.tommyettinger;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.glutils.ETC1;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Writes finished atlases as KTX textures that libGDX loads with
+ * {@code new Texture("name.ktx")}, without decoding a PNG and without
+ * expanding single-channel data to RGBA.
+ * <p>
+ * Which files are written depends on the mode, next to the PNG:
+ * <ul>
+ *   <li>{@code standard}: {@code <name>.ktx}, uncompressed
+ *       {@code GL_ALPHA} (one byte per pixel).</li>
+ *   <li>{@code sdf}, {@code psdf}, {@code mtsdf}: the same
+ *       {@code <name>.ktx}, plus {@code <name>.r11.ktx} compressed as
+ *       EAC R11 (half a byte per pixel). EAC stores the distance in the
+ *       red channel, so a shader that reads {@code .a} must read
+ *       {@code .r} instead. For mtsdf this is the true distance in
+ *       alpha, the only channel its finished PNG keeps.</li>
+ *   <li>{@code msdf}: {@code <name>.etc2.ktx}, compressed as ETC2 RGB8
+ *       (half a byte per pixel).</li>
+ * </ul>
+ * KTX 2 is not used because libGDX's {@code KTXTextureData} only reads
+ * version 1 containers. Blocks are encoded on the CPU: EAC R11 with a
+ * small search in this class, and ETC2 RGB8 with libGDX's native ETC1
+ * encoder, whose output is a valid subset of ETC2 RGB8. The compressed
+ * formats need OpenGL ES 3.0, or desktop GL 4.3 or
+ * {@code ARB_ES3_compatibility}.
+ */
+final class KtxWriter {
+
+    private KtxWriter() {} // utility class
+
+    private static final byte[] IDENTIFIER = {(byte) 0xAB, 'K', 'T', 'X', ' ', '1', '1', (byte) 0xBB, '\r', '\n', 0x1A, '\n'};
+    private static final int HEADER_SIZE = 64;
+
+    private static final int GL_UNSIGNED_BYTE = 0x1401, GL_RED = 0x1903, GL_ALPHA = 0x1906, GL_RGB = 0x1907,
+            GL_COMPRESSED_R11_EAC = 0x9270, GL_COMPRESSED_RGB8_ETC2 = 0x9274;
+
+    /** EAC modifier tables, indexed by table then by the 3-bit pixel index. */
+    private static final int[][] EAC_MODIFIERS = {
+            {-3, -6, -9, -15, 2, 5, 8, 14}, {-3, -7, -10, -13, 2, 6, 9, 12},
+            {-2, -5, -8, -13, 1, 4, 7, 12}, {-2, -4, -6, -13, 1, 3, 5, 12},
+            {-3, -6, -8, -12, 2, 5, 7, 11}, {-3, -7, -9, -11, 2, 6, 8, 10},
+            {-4, -7, -8, -11, 3, 6, 7, 10}, {-3, -5, -8, -11, 2, 4, 7, 10},
+            {-2, -6, -8, -10, 1, 5, 7, 9}, {-2, -5, -8, -10, 1, 4, 7, 9},
+            {-2, -4, -8, -10, 1, 3, 7, 9}, {-2, -5, -7, -10, 1, 4, 6, 9},
+            {-3, -4, -7, -10, 2, 3, 6, 9}, {-1, -2, -3, -10, 0, 1, 2, 9},
+            {-4, -6, -8, -9, 3, 5, 7, 8}, {-3, -5, -7, -9, 2, 4, 6, 8},
+    };
+
+    /**
+     * Writes every texture that suits {@code mode}, next to {@code pngFile}.
+     *
+     * @param pngFile the atlas PNG; only its name and folder are used
+     * @param pm      the post-processed atlas pixels, alpha holding
+     *                coverage or distance for every mode but msdf
+     * @param mode    the atlas mode
+     */
+    static void write(FileHandle pngFile, Pixmap pm, FontwriterConfig.Mode mode) {
+        String name = pngFile.nameWithoutExtension();
+        switch (mode) {
+            case STANDARD:
+                writeAlpha(pngFile.sibling(name + ".ktx"), pm);
+                break;
+            case SDF:
+            case PSDF:
+            case MTSDF:
+                writeAlpha(pngFile.sibling(name + ".ktx"), pm);
+                writeR11(pngFile.sibling(name + ".r11.ktx"), pm);
+                break;
+            case MSDF:
+                writeEtc2(pngFile.sibling(name + ".etc2.ktx"), pm);
+                break;
+        }
+    }
+
+    private static void writeAlpha(FileHandle file, Pixmap pm) {
+        final int w = pm.getWidth(), h = pm.getHeight(), stride = w + 3 & -4;
+        ByteBuffer buf = header(GL_UNSIGNED_BYTE, GL_ALPHA, GL_ALPHA, GL_ALPHA, w, h, stride * h);
+        for (int y = 0; y < h; y++) {
+            int row = buf.position();
+            for (int x = 0; x < w; x++) {
+                buf.put((byte) pm.getPixel(x, y));
+            }
+            buf.position(row + stride);
+        }
+        save(file, buf);
+    }
+
+    private static void writeR11(FileHandle file, Pixmap pm) {
+        final int w = pm.getWidth(), h = pm.getHeight(), bw = w + 3 >> 2, bh = h + 3 >> 2;
+        ByteBuffer buf = header(0, 0, GL_COMPRESSED_R11_EAC, GL_RED, w, h, bw * bh * 8);
+        buf.order(ByteOrder.BIG_ENDIAN);
+        int[] block = new int[16];
+        for (int by = 0; by < bh; by++) {
+            for (int bx = 0; bx < bw; bx++) {
+                for (int x = 0; x < 4; x++) {
+                    for (int y = 0; y < 4; y++) {
+                        int a = pm.getPixel(Math.min(bx * 4 + x, w - 1), Math.min(by * 4 + y, h - 1)) & 255;
+                        block[x * 4 + y] = a << 3 | a >>> 5;
+                    }
+                }
+                buf.putLong(encodeR11(block));
+            }
+        }
+        save(file, buf.order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    private static void writeEtc2(FileHandle file, Pixmap pm) {
+        final int w = pm.getWidth(), h = pm.getHeight();
+        Pixmap rgb = new Pixmap(w, h, Pixmap.Format.RGB888);
+        rgb.setBlending(Pixmap.Blending.None);
+        rgb.drawPixmap(pm, 0, 0);
+        ETC1.ETC1Data etc = ETC1.encodeImage(rgb);
+        try {
+            ByteBuffer data = etc.compressedData;
+            data.position(etc.dataOffset);
+            ByteBuffer buf = header(0, 0, GL_COMPRESSED_RGB8_ETC2, GL_RGB, w, h, data.remaining());
+            buf.put(data);
+            save(file, buf);
+        } finally {
+            etc.dispose();
+            rgb.dispose();
+        }
+    }
+
+    /**
+     * Finds a good EAC R11 block for 16 target values in 0..2047, given
+     * in the column-major order the format uses. For each table the
+     * multipliers closest to the block's spread are tried with the base
+     * values around its centre.
+     */
+    static long encodeR11(int[] values) {
+        int min = 2047, max = 0;
+        for (int v : values) {
+            min = Math.min(min, v);
+            max = Math.max(max, v);
+        }
+        int[] decoded = new int[8];
+        long bestError = Long.MAX_VALUE, bestBlock = 0L;
+        for (int t = 0; t < 16 && bestError > 0; t++) {
+            int[] mods = EAC_MODIFIERS[t];
+            int span = mods[7] - mods[3];
+            int ideal = (max - min) / (span * 8);
+            for (int m = Math.max(0, ideal - 1); m <= Math.min(15, ideal + 2) && bestError > 0; m++) {
+                int step = m == 0 ? 1 : m * 8;
+                int centre = (min + max >> 1) - (mods[7] + mods[3]) * step / 2;
+                int baseGuess = Math.round((centre - 4) / 8f);
+                for (int base = Math.max(0, baseGuess - 2); base <= Math.min(255, baseGuess + 2); base++) {
+                    for (int i = 0; i < 8; i++) {
+                        decoded[i] = Math.min(2047, Math.max(0, base * 8 + 4 + mods[i] * step));
+                    }
+                    long error = 0L, indices = 0L;
+                    for (int p = 0; p < 16 && error < bestError; p++) {
+                        int bestIndex = 0, bestDiff = Integer.MAX_VALUE;
+                        for (int i = 0; i < 8; i++) {
+                            int diff = Math.abs(decoded[i] - values[p]);
+                            if (diff < bestDiff) {
+                                bestDiff = diff;
+                                bestIndex = i;
+                            }
+                        }
+                        error += (long) bestDiff * bestDiff;
+                        indices = indices << 3 | bestIndex;
+                    }
+                    if (error < bestError) {
+                        bestError = error;
+                        bestBlock = (long) base << 56 | (long) m << 52 | (long) t << 48 | indices;
+                    }
+                }
+            }
+        }
+        return bestBlock;
+    }
+
+    private static ByteBuffer header(int glType, int glFormat, int glInternalFormat, int glBaseInternalFormat,
+                                     int width, int height, int imageSize) {
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + 4 + imageSize).order(ByteOrder.LITTLE_ENDIAN);
+        buf.put(IDENTIFIER);
+        buf.putInt(0x04030201);
+        buf.putInt(glType);
+        buf.putInt(1); // glTypeSize
+        buf.putInt(glFormat);
+        buf.putInt(glInternalFormat);
+        buf.putInt(glBaseInternalFormat);
+        buf.putInt(width);
+        buf.putInt(height);
+        buf.putInt(0); // pixelDepth
+        buf.putInt(0); // numberOfArrayElements
+        buf.putInt(1); // numberOfFaces
+        buf.putInt(1); // numberOfMipmapLevels
+        buf.putInt(0); // bytesOfKeyValueData
+        buf.putInt(imageSize);
+        return buf;
+    }
+
+    private static void save(FileHandle file, ByteBuffer buf) {
+        OutputStream out = file.write(false);
+        try {
+            out.write(buf.array(), 0, buf.capacity());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            try {
+                out.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -1,8 +1,9 @@
 package com.github.tommyettinger;
 
-import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.files.FileHandle;
 
+import java.io.File;
+
 /**
  * Resolves the {@code --lang} CLI value into an array of files whose
  * contents are then scanned to build the font's character map.
@@ -51,8 +52,7 @@ final class LangFileResolver {
                 globPattern = langPath;
             }
 
-            FileHandle parentDir = Gdx.files.absolute(parentPath);
-            if (!parentDir.exists()) parentDir = Gdx.files.local(parentPath);
+            FileHandle parentDir = new FileHandle(new File(parentPath));
             if (!parentDir.exists() || !parentDir.isDirectory()) {
                 CliMessages.printLangParentMissing(parentPath);
                 return null;
@@ -75,8 +75,7 @@ final class LangFileResolver {
         }
 
         // --- Mode 2 & 3: resolve as absolute or local path ---
-        FileHandle resolved = Gdx.files.absolute(langPath);
-        if (!resolved.exists()) resolved = Gdx.files.local(langPath);
+        FileHandle resolved = new FileHandle(new File(langPath));
 
         if (!resolved.exists()) {
             CliMessages.printLangPathMissing(langPath);
@@ -5,11 +5,11 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.*;
 import com.badlogic.gdx.utils.*;
-import com.github.tommyettinger.textra.utils.LZBCompression;
 
 import java.io.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * {@link com.badlogic.gdx.ApplicationListener} implementation shared by all platforms.
@@ -20,23 +20,47 @@ import java.util.List;
  * msdf-atlas-gen and oxipng binaries, and then — once libGDX has
  * created a GL context in {@link #create()} — either dispatches to
  * {@link #runBatchCommand()} (for {@code --bulk}, {@code --preview},
- * {@code --ubj}, {@code --lzma}) or runs {@link #mainProcess()} once
+ * {@code --cpu-preview}, {@code --contact}, {@code --compare}, {@code --gallery}, {@code --ubj},
+ * {@code --lzma}, {@code --bundle}, {@code --dict}, {@code --columnar}, {@code --daemon}, {@code --watch}) or runs {@link #mainProcess()} once
  * for the single font requested on the command line.
  * <p>
  * The heavy lifting is delegated to small single-purpose classes in
- * this package: {@link CharMapBuilder}, {@link FontwriterUtils},
- * {@link PreviewRenderer}, {@link IndexedPngWriter}, {@link BinaryExec},
- * and {@link LangFileResolver}. Main itself is just the orchestrator.
+ * this package: {@link FontWriter} runs the pipeline for one font, with
+ * {@link CharMapBuilder}, {@link FontwriterUtils}, {@link IndexedPngWriter},
+ * {@link BinaryExec} and {@link LangFileResolver}, and {@link PreviewRenderer}
+ * draws the previews. Main itself is just the orchestrator, and the
+ * only place that turns a {@link FontWriterException} into an exit code.
  */
 public class Main extends ApplicationAdapter {
 
-    private final IndexedPngWriter indexedPngWriter = new IndexedPngWriter();
     private FontwriterConfig config;
+    private FontWriter fontWriter;
     private PreviewRenderer previewRenderer;
+    private SoftwarePreviewRenderer softwarePreviewRenderer;
+    /** Stage timings of the job {@link #mainProcess()} ran last. */
+    private JobReport report;
+    /** The exit code of a run that finished but failed a check, such as {@code --compare}; 0 if none did. */
+    private int exitCode = 0;
+
+    /** The exit code of {@code --compare} when a preview changed; errors exit with 1. */
+    static final int EXIT_PREVIEWS_CHANGED = 2;
+
+    private final PixelReadback pixelReadback;
 
     String archPath, atlasGenBinary, oxipngBinary = "oxipng";
 
     public Main(String[] args) {
+        this(args, null);
+    }
+
+    /**
+     * @param args          the raw CLI arguments
+     * @param pixelReadback asynchronous framebuffer readback supplied by
+     *                      the backend, or null to read previews back
+     *                      synchronously; see {@link PixelReadback}
+     */
+    public Main(String[] args, PixelReadback pixelReadback) {
+        this.pixelReadback = pixelReadback;
         try {
             this.config = ConfigParser.parse(args);
         } catch (IllegalArgumentException e) {
@@ -54,39 +78,80 @@ public class Main extends ApplicationAdapter {
             System.exit(0);
         }
 
-        switch (SharedLibraryLoader.os){
-            case Windows: archPath = "distbin/win-x64/";
-                atlasGenBinary = "msdf-atlas-gen.exe";
-                oxipngBinary = "oxipng.exe";
-                break;
-            case MacOsX: archPath = SharedLibraryLoader.architecture == Architecture.ARM
-                ? "distbin/mac-arm64/"
-                : "distbin/mac-x64/";
-                atlasGenBinary = "msdf-atlas-gen";
-                break;
-            default:
-                archPath = "distbin/linux-x64/";
-                atlasGenBinary = "msdf-atlas-gen";
-        }
-
+        archPath = BinaryExec.archPath();
+        atlasGenBinary = BinaryExec.atlasGenBinary();
+        oxipngBinary = BinaryExec.oxipngBinary();
     }
 
+    /**
+     * Runs the whole job and then exits. Under the headless backend
+     * there is no GL context ({@code Gdx.gl} is null), so previews are
+     * drawn by a {@link SoftwarePreviewRenderer} instead of a
+     * {@link PreviewRenderer}. {@code --cpu-preview} always uses the
+     * software renderer.
+     * <p>
+     * A {@link FontWriterException} from any step ends the run with its
+     * message and exit code. {@code --compare} exits with
+     * {@value #EXIT_PREVIEWS_CHANGED} if any preview changed.
+     */
     @Override
     public void create() {
-        previewRenderer = new PreviewRenderer(archPath, oxipngBinary);
+        BinaryExec.configure(config);
+        FlightEvents.configure(config);
+        fontWriter = new FontWriter(new File(Gdx.files.getLocalStoragePath()));
+        if (Gdx.gl == null || config.batchCommand == FontwriterConfig.BatchCommand.CPU_PREVIEW) {
+            softwarePreviewRenderer = new SoftwarePreviewRenderer(archPath, oxipngBinary,
+                    Runtime.getRuntime().availableProcessors());
+        } else {
+            previewRenderer = new PreviewRenderer(archPath, oxipngBinary, pixelReadback, config.previewMemoryMb);
+        }
         Gdx.files.local("fonts").mkdirs();
         Gdx.files.local("previews").mkdirs();
 
-        if (config.batchCommand != null) {
-            runBatchCommand();
-        } else {
-            mainProcess();
-        }
+        try {
+            if (config.batchCommand != null) {
+                runBatchCommand();
+            } else {
+                mainProcess();
+            }
 
-        previewRenderer.dispose();
+            if (previewRenderer != null) {
+                previewRenderer.dispose();
+            }
+            if (softwarePreviewRenderer != null) {
+                softwarePreviewRenderer.dispose();
+            }
+        } catch (FontWriterException e) {
+            e.printCliMessage();
+            exit(e.exitCode());
+        }
+        if (exitCode != 0) exit(exitCode);
+        FlightEvents.stop();
         Gdx.app.exit();
     }
 
+    /**
+     * Ends the run with {@code code}, after writing the {@code --jfr}
+     * recording, which a failed run is most in need of.
+     */
+    private static void exit(int code) {
+        FlightEvents.stop();
+        System.exit(code);
+    }
+
+    /**
+     * Renders one preview with whichever renderer {@link #create()} set
+     * up. Both renderers write the PNG in the background, so the
+     * returned file may not exist until they are disposed.
+     */
+    private FileHandle renderPreview(String inPath, String fontName) {
+        if (previewRenderer != null) {
+            return previewRenderer.render(config, inPath, fontName);
+        } else {
+            return softwarePreviewRenderer.render(config, inPath, fontName);
+        }
+    }
+
     private void runBatchCommand() {
         FontwriterConfig.BatchCommand command = config.batchCommand;
         String inPath = config.resolveBatchCommandPath();
@@ -96,9 +161,23 @@ public class Main extends ApplicationAdapter {
                 FileHandle[] files = Gdx.files.local(inPath).list(
                         (dir, name) -> name.endsWith("ttf") || name.endsWith("otf"));
                 FontwriterConfig.Mode[] modes = {FontwriterConfig.Mode.STANDARD, FontwriterConfig.Mode.SDF, FontwriterConfig.Mode.MSDF};
+                List<JobReport> reports = new ArrayList<>();
+                List<String> jobModes = new ArrayList<>();
+                for (FileHandle file : files) {
+                    for (FontwriterConfig.Mode m : modes) jobModes.add(m.toString());
+                }
+                ProgressTracker progress = new ProgressTracker(jobModes, Gdx.files.local(config.metricsPath));
+                File outputDir = new File(Gdx.files.getLocalStoragePath());
+                BuildManifest manifest = BuildManifest.load(outputDir, fontWriter);
+                final FontwriterConfig bulk = config;
                 for (FileHandle file : files) {
+                    // Built once per font, for all of its modes and for the manifest's fingerprint of the charset
+                    String charMap = null;
                     for (FontwriterConfig.Mode m : modes) {
-                        FontwriterConfig bulkConfig = new FontwriterConfig();
+                        // Keeps the generation and tool options given after --bulk
+                        FontwriterConfig bulkConfig = bulk.copy();
+                        bulkConfig.batchCommand = null;
+                        bulkConfig.batchCommandPath = null;
                         bulkConfig.fontPath = file.path();
                         bulkConfig.mode = m;
                         if (file.name().startsWith("Go-Noto")) {
@@ -108,14 +187,32 @@ public class Main extends ApplicationAdapter {
                             bulkConfig.initialSize = "280";
                             bulkConfig.imageSize = "2048x2048";
                         }
-                        bulkConfig.color = "black";
+                        if (bulk.color == null) bulkConfig.color = "black";
+                        if (charMap == null) charMap = CharMapBuilder.charMap(bulkConfig, file.path());
+                        BuildManifest.Plan plan = manifest.plan(bulkConfig, charMap, bulk.bulkRebuild);
+                        if (plan.upToDate() && Gdx.files.local("previews/" + plan.key + ".png").exists()) {
+                            progress.skipped(file.nameWithoutExtension(), m.toString());
+                            continue;
+                        }
+                        progress.starting(file.nameWithoutExtension(), m.toString());
+                        System.out.println(plan.upToDate() ? "Only the preview is missing." : "Running " + plan.describe());
                         this.config = bulkConfig;
-                        mainProcess();
+                        manifest.record(plan, mainProcess(new FontWriter.Job(bulkConfig, outputDir, charMap), plan));
+                        manifest.save();
+                        reports.add(report);
+                        progress.finished(report);
                     }
                 }
+                progress.close();
+                if (reports.isEmpty()) {
+                    System.out.println("All " + jobModes.size() + " jobs are up to date; use --rebuild to regenerate them.");
+                } else {
+                    JobReport.writeSummary(reports, Gdx.files.local("reports/bulk-summary.json"));
+                }
                 break;
             }
-            case PREVIEW: {
+            case PREVIEW:
+            case CPU_PREVIEW: {
                 FileHandle[] files = Gdx.files.local(inPath).list(
                         (dir, name) -> name.endsWith("json"));
                 for (FileHandle file : files) {
@@ -127,8 +224,51 @@ public class Main extends ApplicationAdapter {
                     previewConfig.fontPath = filePath;
                     previewConfig.mode = FontwriterConfig.Mode.fromString(fileMode);
                     this.config = previewConfig;
-                    previewRenderer.render(config, inPath + "/", fontName);
+                    renderPreview(inPath + "/", fontName);
+                }
+                break;
+            }
+            case CONTACT: {
+                if (previewRenderer == null) {
+                    System.out.println("No GL context (headless backend); --contact needs the desktop launcher.");
+                    break;
+                }
+                ContactSheetRenderer contactSheets = new ContactSheetRenderer(archPath, oxipngBinary);
+                try {
+                    for (FileHandle sheet : contactSheets.render(Gdx.files.local(inPath))) {
+                        System.out.println("  " + sheet.file().getAbsolutePath());
+                    }
+                } finally {
+                    contactSheets.dispose();
+                }
+                break;
+            }
+            case COMPARE: {
+                FileHandle current = Gdx.files.local(inPath);
+                FileHandle baseline = Gdx.files.local(config.baselinePath);
+                if (!baseline.isDirectory()) {
+                    throw new FontWriterException.BadInput("baseline folder not found: " + baseline.path(), null, null);
+                }
+                FileHandle outDir = Gdx.files.local(current.path() + "-diff");
+                List<PreviewComparator.Result> results = PreviewComparator.compare(current, baseline, outDir,
+                        config.ssimThreshold, Runtime.getRuntime().availableProcessors());
+                int changed = 0;
+                for (PreviewComparator.Result r : results) {
+                    if (r.changed) changed++;
+                }
+                System.out.println(changed + " of " + results.size() + " previews changed. Report: " + outDir.child("report.txt").file().getAbsolutePath());
+                if (changed > 0) exitCode = EXIT_PREVIEWS_CHANGED;
+                break;
+            }
+            case GALLERY: {
+                FileHandle fontsDir = Gdx.files.local(inPath);
+                if (!fontsDir.child("previews").isDirectory()) {
+                    throw new FontWriterException.BadInput("no previews folder in " + fontsDir.path(), null, null);
                 }
+                GalleryBuilder.Summary summary = GalleryBuilder.build(fontsDir, Runtime.getRuntime().availableProcessors());
+                System.out.println("Gallery of " + summary.fonts + " fonts on " + summary.pages + " pages ("
+                        + summary.thumbnailsWritten + " thumbnails written, " + summary.thumbnailsReused
+                        + " unchanged): " + summary.index.file().getAbsolutePath());
                 break;
             }
             case UBJ: {
@@ -147,229 +287,150 @@ public class Main extends ApplicationAdapter {
                 }
                 break;
             }
+            case DICT: {
+                FileHandle[] files = Gdx.files.local(inPath).list(
+                        (dir, name) -> name.endsWith("json"));
+                FileHandle dictFile = Gdx.files.local(inPath).child(FontwriterUtils.SHARED_DICTIONARY_NAME);
+                if (!dictFile.exists()) {
+                    System.out.println("Training shared dictionary from " + files.length + " files...");
+                    List<byte[]> samples = new ArrayList<>(files.length);
+                    for (FileHandle file : files) {
+                        samples.add(file.readBytes());
+                    }
+                    dictFile.writeBytes(DictionaryCompression.train(samples, DictionaryCompression.MAX_DICTIONARY_SIZE), false);
+                }
+                byte[] dictionary = dictFile.readBytes();
+                long jsonBytes = 0L, sdzBytes = 0L;
+                for (FileHandle file : files) {
+                    FontwriterUtils.convertToSharedDictionary(file, dictionary);
+                    jsonBytes += file.length();
+                    sdzBytes += file.sibling(file.nameWithoutExtension() + ".json.sdz").length();
+                }
+                System.out.println(jsonBytes + " bytes of JSON became " + sdzBytes
+                        + " bytes of .json.sdz, plus a " + dictionary.length + "-byte shared dictionary.");
+                break;
+            }
+            case COLUMNAR: {
+                FileHandle folder = Gdx.files.local(inPath);
+                for (FileHandle file : folder.list((dir, name) -> name.endsWith("json"))) {
+                    GlyphColumns.write(file);
+                }
+                for (FileHandle file : folder.list((dir, name) -> name.endsWith(".fwc"))) {
+                    FileHandle json = file.sibling(file.nameWithoutExtension() + ".json");
+                    if (!json.exists()) {
+                        json.writeString(GlyphColumns.toJson(file), false, "UTF8");
+                    }
+                }
+                break;
+            }
+            case BUNDLE: {
+                FileHandle[] files = Gdx.files.local(inPath).list(
+                        (dir, name) -> name.endsWith("json"));
+                for (FileHandle file : files) {
+                    FileHandle png = file.sibling(file.nameWithoutExtension() + ".png");
+                    if (png.exists()) {
+                        FontBundleWriter.write(file, png);
+                    } else {
+                        System.out.println("No atlas " + png.name() + " for " + file.name() + "; skipping.");
+                    }
+                }
+                break;
+            }
+            case WATCH: {
+                FontWatcher watcher = new FontWatcher(Gdx.files.local(inPath).file(), config,
+                        new File(Gdx.files.getLocalStoragePath()), job -> {
+                            this.config = job.config();
+                            return mainProcess(job);
+                        });
+                try {
+                    watcher.watch();
+                } catch (IOException e) {
+                    System.err.println("Error: could not watch " + inPath + ": " + e.getMessage());
+                    exit(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                break;
+            }
+            case DAEMON: {
+                int jobs = config.daemonJobs > 0 ? config.daemonJobs
+                        : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+                FontDaemon daemon = new FontDaemon(fontWriter, new File(inPath), jobs);
+                try {
+                    daemon.serve(config.daemonPort);
+                } catch (IOException e) {
+                    System.err.println("Error: could not listen on port " + config.daemonPort + ": " + e.getMessage());
+                    exit(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                break;
+            }
         }
     }
 
     /**
-     * Runs the full single-font generation pipeline for the currently
-     * active {@link #config}. This is the method that actually produces
-     * the deliverables for one {@code (font, mode)} pair.
-     * <p>
-     * Step [5] is the one non-obvious part: msdf-atlas-gen fails with a
-     * non-zero exit code when the requested glyphs don't fit into the
-     * chosen image dimensions at the chosen font size. Rather than
-     * asking the user to guess, Main retries with {@code size - 1} on
-     * every failure and gives up only when size drops to zero. The
-     * {@code -pxrange} argument is recomputed on every retry because
-     * it's derived from the current size.
+     * Runs the full single-font pipeline for the currently active
+     * {@link #config} with {@link FontWriter#write}, writing into the
+     * working directory, then renders the documentation preview, writes
+     * the job report to {@code reports/<font>-<mode>.json}, and prints a
+     * summary of every file produced.
      * <p>
      * This method assumes it's being called on the libGDX render thread
      * because step [9] (preview rendering) uses a shared {@link SpriteBatch}
-     * and reads back the GL back buffer.
+     * and reads back an offscreen framebuffer.
+     *
+     * @throws FontWriterException if the job can't be finished
      */
     public void mainProcess() {
-        // [1] Resolve font file handle (absolute path preferred, local fallback)
-        String fontFileName = config.fontPath;
-        FontwriterConfig.Mode mode = config.mode;
-        FileHandle fontHandle = Gdx.files.absolute(fontFileName);
-        if (!fontHandle.exists()) {
-            fontHandle = Gdx.files.local(fontFileName);
-        }
-        String fontName = fontHandle.nameWithoutExtension();
-
-        // [2] Build the character map (cmap) file for msdf-atlas-gen
-        FileHandle cmap = fontHandle.sibling(fontHandle.name() + ".cmap.txt");
-        int cmapLength = CharMapBuilder.build(config, fontFileName, cmap);
-
-        // [3] Pick initial atlas size and image dimensions
-        long size = Math.round(Double.parseDouble(config.initialSize));
-        size = Math.min(cmapLength >= 30000 ? 55 : 280, size);
-        String imageSize = config.resolveImageSize(cmapLength);
-        boolean fullPreview = config.hasPreviewColor();
-        int fullPreviewColor;
-        if (fullPreview)
-            fullPreviewColor = FontwriterUtils.stringToColor(config.color);
-        else {
-            fullPreviewColor = -1;
-        }
-
-        // [4] Assemble the msdf-atlas-gen command
-        System.out.println("Generating structured JSON font and PNG using msdf-atlas-gen...");
-        List<String> commandList = new ArrayList<>();
-        commandList.add(archPath + atlasGenBinary);
-        commandList.add("-font");
-        commandList.add(fontFileName);
-        commandList.add("-charset");
-        commandList.add(fontFileName + ".cmap.txt");
-        commandList.add("-type");
-        commandList.add(mode.atlasGenType);
-        commandList.add("-imageout");
-        commandList.add("fonts/" + fontName + "-" + mode + ".png");
-        commandList.add("-json");
-        commandList.add("fonts/" + fontName + "-" + mode + ".json");
-        commandList.add("-pxrange");
-        commandList.add(String.valueOf(mode == FontwriterConfig.Mode.SDF ? size * 0.15f : size * 0.09f));
-        commandList.add("-dimensions");
-        String[] dims = imageSize.trim().split("[x ]+");
-        commandList.add(dims[0]);
-        commandList.add(dims[1]);
-        commandList.add("-size");
-        commandList.add(String.valueOf(size));
-        commandList.add("-outerpxpadding");
-        commandList.add("1");
-
-        // [5] Run msdf-atlas-gen, shrinking the font size on failure until it fits
-        File workingDir = new File(Gdx.files.getLocalStoragePath());
-        System.out.println("Running command: " + String.join(" ", commandList));
-        while (true) {
-            commandList.set(commandList.size() - 3, String.valueOf(size));
-            commandList.set(commandList.size() - 8, mode == FontwriterConfig.Mode.SDF ? String.valueOf(size * 0.15f) : String.valueOf(size * 0.1));
-            System.out.print("Trying size: " + size + "... ");
-            int exitCode = BinaryExec.run(archPath + atlasGenBinary, "msdf-atlas-gen", commandList, workingDir);
-            if (exitCode != 0) {
-                long failedSize = size;
-                if (--size <= 0) {
-                    System.err.println("Error: msdf-atlas-gen could not fit glyphs into the atlas at any size "
-                        + "(last attempted: " + failedSize + "). Terminating.");
-                    System.exit(exitCode);
-                    break;
-                }
-            } else {
-                System.out.println("\nSuccessfully generated atlas using font size " + size + ".");
-                break;
-            }
-        }
-
-        // [6] Compress the generated JSON into UBJ, LZMA, and LZB (.dat) companion files
-        System.out.println("Compressing .JSON file (optional)...");
-        FileHandle jsonHandle = Gdx.files.local("fonts/" + fontName + "-" + mode + ".json");
-        FontwriterUtils.convertToUBJSON(jsonHandle);
-        FontwriterUtils.convertToLzma(jsonHandle);
-        ByteArray ba = LZBCompression.compressToByteArray(jsonHandle.readString("UTF8"));
-        Gdx.files.local("fonts/" + fontName + "-" + mode + ".dat").writeBytes(ba.items, 0, ba.size, false);
-
-        // [7] Post-process the atlas PNG (stamp marker corner, optional color preview, palette convert)
-        System.out.println("Applying changes for improved TextraTypist usage...");
-        FileHandle imageFile = Gdx.files.local("fonts/" + fontName + "-" + mode + ".png");
-        FileHandle fullPreviewFile = imageFile;
-        if (fullPreview) {
-            fullPreviewFile = Gdx.files.local("previews/full-" + config.color + "-" + fontName + "-" + mode + ".png");
-            imageFile.copyTo(fullPreviewFile);
-            process(fullPreviewFile, fullPreviewColor);
-        }
-        process(imageFile, NO_COLOR_OVERRIDE);
-
-        // [8] Optimize the atlas PNG (and color preview, if any) with oxipng
-        System.out.println("Optimizing result with oxipng...");
+        mainProcess(new FontWriter.Job(config, new File(Gdx.files.getLocalStoragePath())));
+    }
 
-        List<String> oxiCmd = new ArrayList<>();
-        oxiCmd.add(archPath + oxipngBinary);
-        oxiCmd.add("-o");
-        oxiCmd.add("6");
-        oxiCmd.add("--ng");
-        oxiCmd.add("-s");
-        oxiCmd.add(imageFile.path());
+    /**
+     * {@link #mainProcess()} for a job already made from {@link #config},
+     * which must write into the working directory.
+     */
+    private FontWriter.Result mainProcess(FontWriter.Job job) {
+        return mainProcess(job, null);
+    }
 
-        System.out.println("Running command: " + String.join(" ", oxiCmd));
-        BinaryExec.runOrExit(archPath + oxipngBinary, "oxipng", oxiCmd, workingDir);
+    /**
+     * {@link #mainProcess(FontWriter.Job)} running only the steps
+     * {@code plan} found stale, or every step if it is null. The preview
+     * is always drawn.
+     */
+    private FontWriter.Result mainProcess(FontWriter.Job job, BuildManifest.Plan plan) {
+        // [1]-[8] Generate the font, as any other FontWriter caller would
+        FontWriter.Result result = fontWriter.write(job, null, plan);
+        report = result.report;
+        String fontName = result.fontName();
 
-        if (fullPreview) {
-            oxiCmd.set(oxiCmd.size() - 1, fullPreviewFile.path());
-            System.out.println("Running command: " + String.join(" ", oxiCmd));
-            BinaryExec.runOrExit(archPath + oxipngBinary, "oxipng", oxiCmd, workingDir);
-        }
         // [9] Render the documentation preview PNG for the generated font
-        previewRenderer.render(config, "fonts/", fontName);
+        // (written in the background, so the summary below lists it unconditionally,
+        // and its stage only covers drawing and handing off, not the PNG and oxipng work)
+        report.begin("preview");
+        String nameAndMode = fontName + "-" + result.mode();
+        report.in(Gdx.files.local("fonts/" + nameAndMode + ".json"), Gdx.files.local("fonts/" + nameAndMode + ".png"));
+        FileHandle previewFile = renderPreview("fonts/", fontName);
+        report.end();
+        FileHandle reportFile = report.write(Gdx.files.local("reports"));
 
         // [10] Print a summary listing every file produced for this font
-        // --- Summary: list all generated files with full paths ---
         System.out.println();
         System.out.println("Done! Generated files:");
-        String basePath = "fonts/";
-        String ubjPath = "fonts/ubj/";
-        String nameAndMode = fontName + "-" + mode;
-        String[] extensions = {".png", ".json", ".json.lzma", ".dat", ".ubj", ".ubj.lzma"};
-        for (String ext : extensions) {
-            FileHandle f = Gdx.files.local((ext.contains("ubj") ? ubjPath : basePath) + nameAndMode + ext);
-            if (f.exists()) {
-                System.out.println("  " + f.file().getAbsolutePath());
-            }
+        for (File f : result.outputs().keySet()) {
+            if (f != result.colorPreview()) System.out.println("  " + f.getAbsolutePath());
         }
-        FileHandle previewFile = Gdx.files.local("previews/" + fontName + "-" + mode + ".png");
-        if (previewFile.exists()) {
-            System.out.println("  " + previewFile.file().getAbsolutePath());
-        }
-        if (fullPreview) {
-            FileHandle colorPreview = Gdx.files.local("previews/full-" + config.color + "-" + fontName + "-" + mode + ".png");
-            if (colorPreview.exists()) {
-                System.out.println("  " + colorPreview.file().getAbsolutePath());
-            }
+        System.out.println("  " + previewFile.file().getAbsolutePath());
+        if (result.colorPreview() != null) {
+            System.out.println("  " + result.colorPreview().getAbsolutePath());
         }
+        System.out.println(String.format(Locale.ROOT, "  %s (%.2f s in total)",
+                reportFile.file().getAbsolutePath(), report.totalWallNanos() / 1e9));
+        return result;
     }
 
-    /**
-     * Sentinel value for {@link #process(FileHandle, int)} meaning
-     * "no caller-supplied color": the method then validates that the
-     * bottom-right 3x3 corner of the atlas is safe to stamp over and
-     * falls back to opaque white ({@code -1}) as the palette RGB.
-     * Chosen as 256 in TextraTypist because RGBA 256, 0x00000100, is
-     * fully transparent but extremely dark blue (nearly black), and
-     * should never really be needed as its own color when fully
-     * transparent black is available as RGBA 0.
-     */
-    public static final int NO_COLOR_OVERRIDE = 256;
-
-    /**
-     * Post-processes an atlas PNG generated by msdf-atlas-gen so that it
-     * works correctly as a TextraTypist bitmap font texture.
-     * <p>
-     * Two things happen here:
-     * <ol>
-     *   <li>The bottom-right 3x3 corner is stamped opaque white. This
-     *       corner is reserved as a solid pixel that TextraTypist can
-     *       sample for color-tinted effects and rectangle fills without
-     *       having to allocate a second texture. If the caller did not
-     *       supply an explicit palette color ({@link #NO_COLOR_OVERRIDE}),
-     *       the corner is first checked to make sure no real glyph
-     *       pixels will be overwritten; finding any non-transparent
-     *       pixels there is treated as a fatal error.</li>
-     *   <li>MSDF atlases are left as full RGBA PNGs. STANDARD and SDF
-     *       atlases are instead rewritten through {@link IndexedPngWriter}
-     *       as 8-bit palette PNGs, which is drastically smaller for the
-     *       single-channel data these modes produce.</li>
-     * </ol>
-     *
-     * @param file the atlas PNG to rewrite in place
-     * @param rgba either an RGBA8888 palette color for the color preview,
-     *             or {@link #NO_COLOR_OVERRIDE} for the normal atlas path
-     */
-    private void process (FileHandle file, int rgba) {
-        if (!file.exists()) {
-            System.out.println("The specified file " + file + " does not exist; skipping.");
-            return;
-        }
-        Pixmap pm = new Pixmap(file);
-
-        final int w = pm.getWidth(), h = pm.getHeight();
-        if (rgba == NO_COLOR_OVERRIDE) {
-            for (int x = w - 3; x < w; x++) {
-                for (int y = h - 3; y < h; y++) {
-                    int color = pm.getPixel(x, y);
-                    if (!((color & 0xFF) == 0 || (color >>> 8) == 0)) {
-                        throw new GdxRuntimeException("Had a transparency problem with " + file.name());
-                    }
-                }
-            }
-            rgba = -1;
-        }
-        pm.setColor(-1);
-        pm.fillRectangle(w - 3, h - 3, 3, 3);
-        if(config.mode == FontwriterConfig.Mode.MSDF){
-            PixmapIO.writePNG(file, pm, 0, false);
-            return;
-        }
-
-        indexedPngWriter.write(file, pm, rgba);
-    }
+    /** Same as {@link FontWriter#NO_COLOR_OVERRIDE}; kept here for existing callers. */
+    public static final int NO_COLOR_OVERRIDE = FontWriter.NO_COLOR_OVERRIDE;
 
 }
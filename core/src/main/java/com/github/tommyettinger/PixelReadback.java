@@ -0,0 +1,51 @@
+package com.github.tommyettinger;
+
+import com.badlogic.gdx.utils.Disposable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Copies the currently bound framebuffer into memory without stalling
+ * the render thread, using pixel buffer objects.
+ * <p>
+ * libGDX's {@code GL20}/{@code GL30} interfaces only offer a
+ * {@code glReadPixels} that writes straight into a client-side buffer,
+ * and that call waits for the GPU to finish. Reading into a bound
+ * {@code GL_PIXEL_PACK_BUFFER} needs the variant that takes a byte
+ * offset, which only a backend can provide. The desktop launcher
+ * passes an implementation to {@link Main#Main(String[], PixelReadback)};
+ * without one, {@link PreviewRenderer} falls back to a synchronous read.
+ * <p>
+ * Readback is double-buffered by slot: the caller starts a copy into
+ * one slot, draws the next frame, and only then finishes the copy in
+ * the other slot, by which time the GPU has long since written it. All
+ * methods must be called on the render thread.
+ */
+public interface PixelReadback extends Disposable {
+
+    /**
+     * Whether the current GL context can do asynchronous readback. Only
+     * called once the context exists.
+     */
+    boolean isSupported();
+
+    /**
+     * Queues a copy of the bound framebuffer's {@code width x height}
+     * pixels, as tightly packed {@code GL_RGB} bytes, into {@code slot}.
+     * Returns without waiting for the copy.
+     *
+     * @param slot   0 or 1
+     * @param width  width in pixels
+     * @param height height in pixels
+     */
+    void start(int slot, int width, int height);
+
+    /**
+     * Waits for the copy queued in {@code slot} and puts its bytes into
+     * {@code pixels}, from position 0.
+     *
+     * @param slot   0 or 1
+     * @param pixels destination with room for every byte of the copy
+     */
+    void finish(int slot, ByteBuffer pixels);
+}
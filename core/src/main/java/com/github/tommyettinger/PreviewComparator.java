@@ -0,0 +1,211 @@
+package com.github.tommyettinger;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.PixmapIO;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compares freshly rendered previews against a stored baseline, so a
+ * change of msdf-atlas-gen or TextraTypist version can be checked for
+ * visual regressions across a whole collection.
+ * <p>
+ * The metric is SSIM (structural similarity) on luminance, computed
+ * over non-overlapping {@value #TILE}x{@value #TILE} tiles with the
+ * usual constants {@code C1 = (0.01 * 255)^2} and
+ * {@code C2 = (0.03 * 255)^2}. A font's score is the mean over its
+ * tiles. A single broken glyph barely moves the mean, so a preview
+ * also counts as changed if any one tile falls below
+ * {@value #WORST_TILE_LIMIT}. Each font is compared on its own worker.
+ * <p>
+ * Changed fonts get a heatmap next to the report:
+ * the new preview in faded gray, with each tile tinted red in
+ * proportion to how dissimilar it is. Previews missing from either set,
+ * or whose sizes differ, score 0.
+ */
+final class PreviewComparator {
+
+    private PreviewComparator() {} // utility class
+
+    static final int TILE = 8;
+    static final double WORST_TILE_LIMIT = 0.5;
+    private static final double C1 = (0.01 * 255) * (0.01 * 255), C2 = (0.03 * 255) * (0.03 * 255);
+
+    /** The comparison of one preview against its baseline. */
+    static final class Result {
+        final String name;
+        /** Mean SSIM over all tiles, from -1 to 1 (1 means identical). */
+        final double ssim;
+        /** Lowest SSIM of any single tile. */
+        final double worstTile;
+        /** Why no score could be computed, or null. */
+        final String problem;
+        /** Whether the mean or the worst tile crossed its limit. */
+        final boolean changed;
+        /** The heatmap written for this font, or null if none was needed. */
+        FileHandle heatmap;
+
+        Result(String name, double ssim, double worstTile, String problem, double threshold) {
+            this.name = name;
+            this.ssim = ssim;
+            this.worstTile = worstTile;
+            this.problem = problem;
+            this.changed = ssim < threshold || worstTile < WORST_TILE_LIMIT;
+        }
+    }
+
+    /**
+     * Compares every PNG in {@code current} with the PNG of the same name
+     * in {@code baseline}, writes heatmaps and {@code report.txt} to
+     * {@code outDir}, and returns the results from most to least changed
+     * (changed previews first, then by mean SSIM).
+     *
+     * @param current   folder of newly rendered previews
+     * @param baseline  folder of previews to compare against
+     * @param outDir    folder for the report and heatmaps
+     * @param threshold mean SSIM below which a preview counts as changed
+     * @param threads   number of comparisons to run at once
+     */
+    static List<Result> compare(FileHandle current, FileHandle baseline, FileHandle outDir,
+                                double threshold, int threads) {
+        List<String> names = new ArrayList<>();
+        for (FileHandle f : current.list(".png")) names.add(f.name());
+        for (FileHandle f : baseline.list(".png")) {
+            if (!names.contains(f.name())) names.add(f.name());
+        }
+        outDir.mkdirs();
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        List<Future<Result>> futures = new ArrayList<>(names.size());
+        try {
+            for (final String name : names) {
+                futures.add(workers.submit(() -> compareOne(name, current.child(name), baseline.child(name),
+                        outDir, threshold)));
+            }
+            List<Result> results = new ArrayList<>(futures.size());
+            for (Future<Result> f : futures) {
+                results.add(f.get());
+            }
+            results.sort(Comparator.comparing((Result r) -> !r.changed)
+                    .thenComparingDouble(r -> r.ssim).thenComparing(r -> r.name));
+            writeReport(outDir.child("report.txt"), results, threshold);
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Preview comparison failed", e.getCause());
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    private static Result compareOne(String name, FileHandle now, FileHandle before, FileHandle outDir,
+                                     double threshold) {
+        if (!before.exists()) return new Result(name, 0.0, 0.0, "not in baseline", threshold);
+        if (!now.exists()) return new Result(name, 0.0, 0.0, "missing from current previews", threshold);
+        Pixmap a = new Pixmap(now), b = new Pixmap(before);
+        try {
+            final int w = a.getWidth(), h = a.getHeight();
+            if (w != b.getWidth() || h != b.getHeight()) {
+                return new Result(name, 0.0, 0.0,
+                        "size changed from " + b.getWidth() + "x" + b.getHeight() + " to " + w + "x" + h, threshold);
+            }
+            final int tw = (w + TILE - 1) / TILE, th = (h + TILE - 1) / TILE;
+            final float[] la = luma(a), lb = luma(b);
+            final double[] tiles = new double[tw * th];
+            double sum = 0.0, worst = 1.0;
+            for (int ty = 0; ty < th; ty++) {
+                for (int tx = 0; tx < tw; tx++) {
+                    double s = tileSsim(la, lb, w, tx * TILE, ty * TILE, Math.min(w, tx * TILE + TILE),
+                            Math.min(h, ty * TILE + TILE));
+                    tiles[ty * tw + tx] = s;
+                    sum += s;
+                    worst = Math.min(worst, s);
+                }
+            }
+            Result result = new Result(name, sum / tiles.length, worst, null, threshold);
+            if (result.changed) {
+                result.heatmap = outDir.child(now.nameWithoutExtension() + "-heat.png");
+                writeHeatmap(result.heatmap, la, tiles, w, h, tw);
+            }
+            return result;
+        } finally {
+            a.dispose();
+            b.dispose();
+        }
+    }
+
+    /** Rec. 601 luma of every pixel, 0 to 255, in row-major order. */
+    private static float[] luma(Pixmap pm) {
+        final int w = pm.getWidth(), h = pm.getHeight();
+        final float[] out = new float[w * h];
+        for (int y = 0, i = 0; y < h; y++) {
+            for (int x = 0; x < w; x++, i++) {
+                int rgba = pm.getPixel(x, y);
+                out[i] = 0.299f * (rgba >>> 24) + 0.587f * (rgba >>> 16 & 255) + 0.114f * (rgba >>> 8 & 255);
+            }
+        }
+        return out;
+    }
+
+    private static double tileSsim(float[] a, float[] b, int stride, int x0, int y0, int x1, int y1) {
+        double sa = 0, sb = 0, saa = 0, sbb = 0, sab = 0;
+        final int n = (x1 - x0) * (y1 - y0);
+        for (int y = y0; y < y1; y++) {
+            for (int x = x0, i = y * stride + x0; x < x1; x++, i++) {
+                double va = a[i], vb = b[i];
+                sa += va;
+                sb += vb;
+                saa += va * va;
+                sbb += vb * vb;
+                sab += va * vb;
+            }
+        }
+        double ma = sa / n, mb = sb / n;
+        double varA = saa / n - ma * ma, varB = sbb / n - mb * mb, cov = sab / n - ma * mb;
+        return ((2 * ma * mb + C1) * (2 * cov + C2)) / ((ma * ma + mb * mb + C1) * (varA + varB + C2));
+    }
+
+    private static void writeHeatmap(FileHandle file, float[] luma, double[] tiles, int w, int h, int tw) {
+        Pixmap heat = new Pixmap(w, h, Pixmap.Format.RGB888);
+        try {
+            for (int y = 0, i = 0; y < h; y++) {
+                for (int x = 0; x < w; x++, i++) {
+                    // Fade the preview towards white so the tint stands out.
+                    float gray = 0.6f + 0.4f * luma[i] / 255f;
+                    float d = (float) Math.min(1.0, Math.max(0.0, 1.0 - tiles[(y / TILE) * tw + x / TILE]) * 4.0);
+                    float r = gray + (1f - gray) * d, gb = gray * (1f - d);
+                    heat.drawPixel(x, y, (int) (r * 255) << 24 | (int) (gb * 255) << 16 | (int) (gb * 255) << 8 | 255);
+                }
+            }
+            PixmapIO.writePNG(file, heat, 6, false);
+        } finally {
+            heat.dispose();
+        }
+    }
+
+    private static void writeReport(FileHandle file, List<Result> results, double threshold) {
+        StringBuilder sb = new StringBuilder();
+        int changed = 0;
+        for (Result r : results) {
+            if (r.changed) changed++;
+        }
+        sb.append(String.format(Locale.ROOT, "%d of %d previews changed (mean SSIM below %.4f, or a tile below %.2f),"
+                + " most changed first.%n%n", changed, results.size(), threshold, WORST_TILE_LIMIT));
+        sb.append(String.format(Locale.ROOT, "%-8s  %-8s  %-50s  %s%n", "SSIM", "worst", "preview", "heatmap"));
+        for (Result r : results) {
+            String note = r.problem != null ? r.problem : r.heatmap != null ? r.heatmap.name() : "";
+            sb.append(String.format(Locale.ROOT, "%-8.5f  %-8.5f  %-50s  %s%n", r.ssim, r.worstTile, r.name, note));
+        }
+        file.writeString(sb.toString(), false, "UTF-8");
+    }
+}
@@ -9,6 +9,8 @@ import com.badlogic.gdx.graphics.PixmapIO;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.math.Matrix4;
 import com.badlogic.gdx.utils.Align;
 import com.badlogic.gdx.utils.Disposable;
 import com.badlogic.gdx.utils.ScreenUtils;
@@ -18,7 +20,15 @@ import com.github.tommyettinger.textra.Layout;
 import java.io.File;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Renders the per-font preview PNG used as documentation of what
@@ -26,15 +36,27 @@ import java.util.List;
  * <p>
  * Unlike the other extractions in this package, PreviewRenderer is a
  * <b>stateful</b> class rather than a static utility: it owns its
- * own {@link SpriteBatch} and reusable {@link Layout}, and it must
- * run on the libGDX render thread because it draws into the back
- * buffer and then calls {@code glReadPixels} to capture the result.
- * A single instance is expected to be constructed once per
- * application run, after the GL context is ready.
+ * own {@link SpriteBatch}, reusable {@link Layout} and a fixed-size
+ * {@link FrameBuffer}, and it must run on the libGDX render thread.
+ * Previews are always {@value #WIDTH}x{@value #HEIGHT}, whatever the
+ * window size. A single instance is expected to be constructed once
+ * per application run, after the GL context is ready.
  * <p>
- * After rendering, the captured pixels are written to
- * {@code previews/[fontName]-[mode].png} and then optimized
- * in place with oxipng via {@link BinaryExec#runOrExit}.
+ * Capture is pipelined so the render thread never waits on the GPU or
+ * on disk. With a supported {@link PixelReadback}, each preview is
+ * copied into one of two pixel buffers and only read back after the
+ * next preview has been drawn (or in {@link #dispose()}). The pixels
+ * are then written to {@code previews/[fontName]-[mode].png} and
+ * optimized with oxipng on a background executor. Without one, the
+ * pixels are read synchronously, but the PNG and oxipng steps still
+ * run in the background.
+ * <p>
+ * Memory stays bounded however many fonts are previewed. Each atlas
+ * {@link Texture} and {@link Font} is disposed as soon as its glyphs
+ * are drawn, and captured frames use a pool of RGB Pixmaps sized by
+ * {@link FontwriterConfig#previewMemoryMb}; when the pool is empty the
+ * render thread waits for a writer to return one. The peak estimated
+ * usage is printed by {@link #dispose()}.
  */
 final class PreviewRenderer implements Disposable {
 
@@ -45,7 +67,7 @@ final class PreviewRenderer implements Disposable {
      * generated preview gives a reasonably representative sample of
      * what the font can do.
      */
-    private static final String TEXT = "Fonts can be rendered normally,{CURLY BRACKETS ARE IGNORED} but using [[tags], you can..."
+    static final String TEXT = "Fonts can be rendered normally,{CURLY BRACKETS ARE IGNORED} but using [[tags], you can..."
             + "\n[#E74200]...use CSS-style hex colors like [*]#E74200[*]..."
             + "\n[darker purple blue]...use color names or descriptions, like [/]darker purple blue[/]...[ ]"
             + "\n[_]...and use [!]effects[!][_]!"
@@ -56,35 +78,78 @@ final class PreviewRenderer implements Disposable {
             + "\n[?small caps][*]Special[*][?] [?whiten][/]Effects[/][?][#]: [?shadow]drop shadow[?], [?jostle]RaNsoM nOtE[?], [?error]spell check[?]..."
             + "\nWelcome to the [TEAL][?neon]Structured JSON Zone[ ]!";
 
+    static final int WIDTH = 1200, HEIGHT = 675;
+    private static final long CAPTURE_BYTES = WIDTH * HEIGHT * 3L;
+
     private final SpriteBatch batch;
     private final Layout layout;
+    private final FrameBuffer frameBuffer;
+    private final PixelReadback readback;
     private final String archPath;
     private final String oxipngBinary;
+    private final ExecutorService writers;
+    private final List<Future<?>> pending = new ArrayList<>();
+
+    /** Capture Pixmaps the writers have finished with, ready for reuse. */
+    private final BlockingQueue<Pixmap> freeCaptures;
+    /** How many capture Pixmaps {@link #previewMemoryMb} allows. */
+    private final int maxCaptures;
+    private final double previewMemoryMb;
+    private int captures;
+    /** Estimated bytes held by live atlas textures and capture Pixmaps. */
+    private final AtomicLong liveBytes = new AtomicLong();
+    private final AtomicLong peakBytes = new AtomicLong();
+    private long largestAtlasBytes;
+    private int previews;
+
+    /** Slot the next asynchronous copy goes into. */
+    private int slot;
+    /** Where the preview waiting in the other slot belongs, or null if none is waiting. */
+    private FileHandle inFlight;
 
     /**
      * Constructs a renderer. Must be called on the libGDX render
-     * thread, because it allocates a {@link SpriteBatch}. The
-     * per-font configuration is passed to {@link #render} instead of
-     * captured here, so a single instance can handle a sequence of
-     * fonts (as in {@code --bulk} mode, where the active config
-     * rotates between fonts).
+     * thread, because it allocates a {@link SpriteBatch} and a
+     * {@link FrameBuffer}. The per-font configuration is passed to
+     * {@link #render} instead of captured here, so a single instance
+     * can handle a sequence of fonts (as in {@code --bulk} mode, where
+     * the active config rotates between fonts).
      *
      * @param archPath     platform-specific {@code distbin/} directory
      *                     containing the oxipng executable
      * @param oxipngBinary bare filename of the oxipng executable
      *                     ({@code oxipng} or {@code oxipng.exe})
+     * @param readback     asynchronous readback from the backend; may be
+     *                     null, or unsupported by this context, in which
+     *                     case pixels are read synchronously
+     * @param previewMemoryMb budget, in megabytes, for captured frames
+     *                     waiting to be written; at least two frames are
+     *                     always allowed
      */
-    PreviewRenderer(String archPath, String oxipngBinary) {
+    PreviewRenderer(String archPath, String oxipngBinary, PixelReadback readback, double previewMemoryMb) {
         this.archPath = archPath;
         this.oxipngBinary = oxipngBinary;
         this.batch = new SpriteBatch();
-        this.layout = new Layout().setTargetWidth(1200);
+        this.batch.setProjectionMatrix(new Matrix4().setToOrtho2D(0f, 0f, WIDTH, HEIGHT));
+        this.layout = new Layout().setTargetWidth(WIDTH);
+        this.frameBuffer = new FrameBuffer(Pixmap.Format.RGBA8888, WIDTH, HEIGHT, false);
+        this.readback = readback != null && readback.isSupported() ? readback : null;
+        this.previewMemoryMb = previewMemoryMb;
+        this.maxCaptures = (int) Math.max(2L, (long) (previewMemoryMb * 1024 * 1024) / CAPTURE_BYTES);
+        this.freeCaptures = new ArrayBlockingQueue<>(maxCaptures);
+        final int threads = Math.min(maxCaptures, Runtime.getRuntime().availableProcessors());
+        this.writers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "fontwriter-preview");
+            t.setDaemon(true);
+            return t;
+        });
     }
 
     /**
-     * Renders a preview for the given font and writes it to
-     * {@code previews/<fontName>-<mode>.png}, then runs
-     * oxipng over the result.
+     * Renders a preview for the given font and queues it to be written
+     * to {@code previews/<fontName>-<mode>.png} and optimized with
+     * oxipng. The file may not exist yet when this returns; it is
+     * finished by a later call or by {@link #dispose()}.
      *
      * @param config   configuration for this particular font (used
      *                 only for {@link FontwriterConfig#mode})
@@ -92,11 +157,15 @@ final class PreviewRenderer implements Disposable {
      *                 {@code <fontName>-<mode>.png} and
      *                 {@code <fontName>-<mode>.json} pair
      * @param fontName base name of the font (no extension)
+     * @return the preview file that will be written
      */
-    public void render(FontwriterConfig config, String inPath, String fontName) {
+    public FileHandle render(FontwriterConfig config, String inPath, String fontName) {
         FontwriterConfig.Mode mode = config.mode;
         System.out.println("Creating a preview for " + fontName + "-" + mode + "...");
         Texture fontTexture = new Texture(inPath + fontName + "-" + mode + ".png");
+        final long atlasBytes = textureBytes(fontTexture);
+        largestAtlasBytes = Math.max(largestAtlasBytes, atlasBytes);
+        track(atlasBytes);
         Font font = new Font(inPath + fontName + "-" + mode + ".json",
                 new TextureRegion(fontTexture), 0f, 0f, 0f, 0f,
                 true, true);
@@ -106,52 +175,188 @@ final class PreviewRenderer implements Disposable {
             font.scale(Math.round(512f / fontTexture.getHeight()))
                 .setTextureFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest)
                 .useIntegerPositions(true); // for pixel fonts
-        font.resizeDistanceField(Gdx.graphics.getBackBufferWidth(), Gdx.graphics.getBackBufferHeight());
+        font.resizeDistanceField(WIDTH, HEIGHT);
 
         layout.setBaseColor(Color.DARK_GRAY);
         layout.setMaxLines(20);
         layout.setEllipsis(" and so on and so forth...");
         font.markup(TEXT, layout);
 
+        frameBuffer.begin();
         ScreenUtils.clear(0.75f, 0.75f, 0.75f, 1f);
-        float x = Gdx.graphics.getBackBufferWidth() * 0.5f;
-        float y = (Gdx.graphics.getBackBufferHeight() + layout.getHeight()) * 0.5f;
+        float x = WIDTH * 0.5f;
+        float y = (HEIGHT + layout.getHeight()) * 0.5f;
         batch.begin();
         font.enableShader(batch);
         font.drawGlyphs(batch, layout, x, y, Align.center);
         batch.end();
-
-        // Modified Pixmap.createFromFrameBuffer() code that uses RGB instead of RGBA
-        Gdx.gl.glPixelStorei(GL20.GL_PACK_ALIGNMENT, 1);
-        final Pixmap pm = new Pixmap(Gdx.graphics.getBackBufferWidth(), Gdx.graphics.getBackBufferHeight(), Pixmap.Format.RGB888);
-        ByteBuffer pixels = pm.getPixels();
-        Gdx.gl.glReadPixels(0, 0, Gdx.graphics.getBackBufferWidth(), Gdx.graphics.getBackBufferHeight(), GL20.GL_RGB, GL20.GL_UNSIGNED_BYTE, pixels);
-        // End Pixmap.createFromFrameBuffer() modified code
+        // The draw calls are already queued, so the atlas can go now; the
+        // driver keeps it alive until the GPU is done with it.
+        batch.setShader(null);
+        font.dispose();
+        fontTexture.dispose();
+        track(-atlasBytes);
+        previews++;
 
         FileHandle previewFile = Gdx.files.local("previews/" + fontName + "-" + mode + ".png");
-        PixmapIO.writePNG(previewFile, pm, 0, true);
-
-        List<String> oxiCmd = new ArrayList<>();
-        oxiCmd.add(archPath + oxipngBinary);
-        oxiCmd.add("-o");
-        oxiCmd.add("6");
-        oxiCmd.add("--ng");
-        oxiCmd.add("-s");
-        oxiCmd.add(previewFile.path());
-
-        System.out.println("Running command: " + String.join(" ", oxiCmd));
-        BinaryExec.runOrExit(archPath + oxipngBinary, "oxipng", oxiCmd,
-                new File(Gdx.files.getLocalStoragePath()));
+        if (readback != null) {
+            readback.start(slot, WIDTH, HEIGHT);
+            frameBuffer.end();
+            slot ^= 1;
+            finishInFlight();
+            inFlight = previewFile;
+        } else {
+            final Pixmap pm = obtainCapture();
+            // Modified Pixmap.createFromFrameBuffer() code that uses RGB instead of RGBA
+            Gdx.gl.glPixelStorei(GL20.GL_PACK_ALIGNMENT, 1);
+            ByteBuffer pixels = pm.getPixels();
+            Gdx.gl.glReadPixels(0, 0, WIDTH, HEIGHT, GL20.GL_RGB, GL20.GL_UNSIGNED_BYTE, pixels);
+            // End Pixmap.createFromFrameBuffer() modified code
+            frameBuffer.end();
+            write(pm, previewFile);
+        }
+        return previewFile;
+    }
+
+    /**
+     * Reads back the preview waiting in the slot that is not about to be
+     * reused, if any, and hands it to the writers.
+     */
+    private void finishInFlight() {
+        if (inFlight == null) return;
+        final Pixmap pm = obtainCapture();
+        readback.finish(slot, pm.getPixels());
+        write(pm, inFlight);
+        inFlight = null;
+    }
+
+    /**
+     * Returns a capture Pixmap from the pool, allocating one while the
+     * budget allows, and otherwise waiting for a writer to return one.
+     */
+    private Pixmap obtainCapture() {
+        Pixmap pm = freeCaptures.poll();
+        if (pm != null) return pm;
+        if (captures < maxCaptures) {
+            captures++;
+            track(CAPTURE_BYTES);
+            return new Pixmap(WIDTH, HEIGHT, Pixmap.Format.RGB888);
+        }
+        try {
+            return freeCaptures.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
     }
 
     /**
-     * Releases the native GL resources owned by this renderer — namely
-     * the {@link SpriteBatch} allocated in the constructor. Must be
-     * called on the libGDX render thread before application shutdown.
-     * After calling this, {@link #render} must not be called again.
+     * Writes and optimizes one captured preview on the executor. Its
+     * Pixmap goes back to the pool as soon as the PNG is written.
+     */
+    private void write(final Pixmap pm, final FileHandle previewFile) {
+        for (Iterator<Future<?>> it = pending.iterator(); it.hasNext(); ) {
+            Future<?> f = it.next();
+            if (f.isDone()) {
+                await(f);
+                it.remove();
+            }
+        }
+        pending.add(writers.submit(() -> {
+            try {
+                PixmapIO.writePNG(previewFile, pm, 0, true);
+            } finally {
+                freeCaptures.add(pm);
+            }
+
+            List<String> oxiCmd = new ArrayList<>();
+            oxiCmd.add(archPath + oxipngBinary);
+            oxiCmd.add("-o");
+            oxiCmd.add("6");
+            oxiCmd.add("--ng");
+            oxiCmd.add("-s");
+            oxiCmd.add(previewFile.path());
+
+            System.out.println("Running command: " + String.join(" ", oxiCmd));
+            BinaryExec.runOrThrow(archPath + oxipngBinary, "oxipng", oxiCmd,
+                    new File(Gdx.files.getLocalStoragePath()));
+            return null;
+        }));
+    }
+
+    /**
+     * Finishes every queued preview, waits for their PNGs, and releases
+     * the native GL resources owned by this renderer. Must be called on
+     * the libGDX render thread before application shutdown. After
+     * calling this, {@link #render} must not be called again.
      */
     @Override
     public void dispose() {
-        batch.dispose();
+        try {
+            if (readback != null) {
+                slot ^= 1;
+                finishInFlight();
+            }
+            for (Future<?> f : pending) {
+                await(f);
+            }
+        } finally {
+            pending.clear();
+            writers.shutdown();
+            for (Pixmap pm; (pm = freeCaptures.poll()) != null; ) {
+                pm.dispose();
+                track(-CAPTURE_BYTES);
+            }
+            batch.dispose();
+            frameBuffer.dispose();
+            if (readback != null) {
+                readback.dispose();
+            }
+        }
+        if (previews > 0) {
+            System.out.printf("Preview memory: peak %.1f MB for %d preview(s); %d capture buffer(s) of %.1f MB "
+                            + "within a %.1f MB budget, largest atlas %.1f MB.%n",
+                    peakBytes.get() / 1048576.0, previews, captures, CAPTURE_BYTES / 1048576.0,
+                    previewMemoryMb, largestAtlasBytes / 1048576.0);
+        }
+    }
+
+    private static void await(Future<?> f) {
+        try {
+            f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof FontWriterException) throw (FontWriterException) e.getCause();
+            throw new RuntimeException("Preview writing failed", e.getCause());
+        }
+    }
+
+    private void track(long bytes) {
+        long now = liveBytes.addAndGet(bytes);
+        peakBytes.accumulateAndGet(now, Math::max);
+    }
+
+    /** Estimated native size of a texture: its pixels in the format they were uploaded in. */
+    private static long textureBytes(Texture texture) {
+        final int bpp;
+        switch (texture.getTextureData().getFormat()) {
+            case Alpha:
+            case Intensity:
+                bpp = 1;
+                break;
+            case LuminanceAlpha:
+            case RGB565:
+            case RGBA4444:
+                bpp = 2;
+                break;
+            case RGB888:
+                bpp = 3;
+                break;
+            default:
+                bpp = 4;
+        }
+        return (long) texture.getWidth() * texture.getHeight() * bpp;
     }
 }
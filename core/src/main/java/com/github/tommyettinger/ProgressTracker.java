@@ -0,0 +1,222 @@
+package com.github.tommyettinger;
+
+import com.badlogic.gdx.files.FileHandle;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks a {@code --bulk} run: prints a progress line after each job and
+ * keeps an OpenMetrics textfile up to date for a local collector (such
+ * as node_exporter's textfile collector) to scrape.
+ * <p>
+ * The ETA comes from observed stage costs rather than from a plain
+ * average. Every finished job's {@link JobReport} adds its stage times
+ * to the mean for its mode, because an msdf job usually costs several
+ * times as much as a standard one. The remaining jobs are then summed
+ * using their own mode's mean, or the mean of all modes for a mode
+ * that hasn't finished yet. Jobs that {@link BuildManifest} found up to
+ * date are counted as skipped and add nothing to the means.
+ * <p>
+ * The textfile is rewritten after every job and every
+ * {@value #WRITE_INTERVAL_SECONDS} seconds in between, so elapsed time
+ * keeps moving during long atlas generations. Each write goes to a
+ * temporary file that is then renamed over the old one, so a scrape
+ * never sees half a file.
+ */
+final class ProgressTracker {
+
+    static final long WRITE_INTERVAL_SECONDS = 10L;
+
+    private final List<String> jobModes;
+    private final FileHandle metricsFile;
+    private final long startNanos = System.nanoTime();
+    /** Per stage: total wall nanos, runs, bytes out, jobs seen. Guarded by this. */
+    private final Map<String, long[]> stages = new LinkedHashMap<>();
+    /** Per mode: total job nanos and jobs finished. Guarded by this. */
+    private final Map<String, long[]> modes = new HashMap<>();
+    private final ScheduledExecutorService writer;
+    /** Jobs that ran, and jobs skipped as up to date. Guarded by this. */
+    private int done, skipped;
+    private String currentJob = "";
+
+    /**
+     * Starts tracking a run of {@code jobModes.size()} jobs, where each
+     * entry is the mode of one job in the order they will run.
+     *
+     * @param jobModes    the mode of every job, in run order
+     * @param metricsFile where to keep the OpenMetrics textfile
+     */
+    ProgressTracker(List<String> jobModes, FileHandle metricsFile) {
+        this.jobModes = jobModes;
+        this.metricsFile = metricsFile;
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "progress-metrics");
+            t.setDaemon(true);
+            return t;
+        });
+        writer.scheduleWithFixedDelay(this::writeMetrics, 0L, WRITE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /** Notes that the job for {@code font} in {@code mode} is starting. */
+    synchronized void starting(String font, String mode) {
+        currentJob = font + "-" + mode;
+        System.out.println();
+        System.out.println("=== Job " + (done + skipped + 1) + " of " + jobModes.size() + ": " + currentJob + " ===");
+    }
+
+    /** Adds a finished job's stage costs, prints progress, and rewrites the textfile. */
+    void finished(JobReport report) {
+        String line;
+        synchronized (this) {
+            done++;
+            for (JobReport.Stage s : report.stages) {
+                long[] t = stages.computeIfAbsent(s.name, k -> new long[4]);
+                t[0] += s.wallNanos;
+                t[1] += s.runs;
+                t[2] += s.bytesOut;
+                t[3]++;
+            }
+            long[] m = modes.computeIfAbsent(report.mode, k -> new long[2]);
+            m[0] += report.totalWallNanos();
+            m[1]++;
+            currentJob = "";
+            line = progressLine();
+        }
+        System.out.println(line);
+        writeMetrics();
+    }
+
+    /** Counts the job for {@code font} in {@code mode} as skipped, prints progress, and rewrites the textfile. */
+    void skipped(String font, String mode) {
+        String line;
+        synchronized (this) {
+            skipped++;
+            line = "=== Job " + (done + skipped) + " of " + jobModes.size() + ": " + font + "-" + mode
+                    + " is up to date ===\n" + progressLine();
+        }
+        System.out.println(line);
+        writeMetrics();
+    }
+
+    /** Writes the textfile one last time and stops the periodic writes. */
+    void close() {
+        writer.shutdownNow();
+        writeMetrics();
+    }
+
+    /** Estimated seconds left, or -1 before any job has finished. */
+    synchronized double etaSeconds() {
+        if (done == 0) return -1.0;
+        long allNanos = 0L;
+        for (long[] m : modes.values()) allNanos += m[0];
+        double fallback = (double) allNanos / done;
+        double eta = 0.0;
+        for (String mode : jobModes.subList(done + skipped, jobModes.size())) {
+            long[] m = modes.get(mode);
+            eta += m == null ? fallback : (double) m[0] / m[1];
+        }
+        return eta / 1e9;
+    }
+
+    private String progressLine() {
+        double elapsed = (System.nanoTime() - startNanos) / 1e9;
+        int finished = done + skipped;
+        StringBuilder sb = new StringBuilder(String.format(Locale.ROOT,
+                "Progress: %d of %d jobs (%.1f%%), %.2f jobs/min, elapsed %s, ETA %s",
+                finished, jobModes.size(), 100.0 * finished / jobModes.size(), finished / elapsed * 60.0,
+                duration(elapsed), duration(etaSeconds())));
+        if (skipped > 0) sb.append(", ").append(skipped).append(" up to date");
+        long total = 0L;
+        for (long[] t : stages.values()) total += t[0];
+        if (total > 0L) {
+            sb.append("\n  by stage (share of time, mean per job):");
+            for (Map.Entry<String, long[]> e : stages.entrySet()) {
+                long[] t = e.getValue();
+                sb.append(String.format(Locale.ROOT, " %s %.0f%% %.2fs", e.getKey(), 100.0 * t[0] / total,
+                        t[0] / 1e9 / t[3]));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String duration(double seconds) {
+        if (seconds < 0) return "unknown";
+        long s = Math.round(seconds);
+        return s >= 3600 ? String.format(Locale.ROOT, "%dh %02dm", s / 3600, s / 60 % 60)
+                : String.format(Locale.ROOT, "%dm %02ds", s / 60, s % 60);
+    }
+
+    /** Renders the current state as OpenMetrics text. */
+    synchronized String metrics() {
+        StringBuilder sb = new StringBuilder(2048);
+        double elapsed = (System.nanoTime() - startNanos) / 1e9;
+        sb.append("# TYPE fontwriter_jobs gauge\n");
+        sb.append("# HELP fontwriter_jobs Font jobs in this bulk run, by state.\n");
+        sb.append("fontwriter_jobs{state=\"done\"} ").append(done).append('\n');
+        sb.append("fontwriter_jobs{state=\"skipped\"} ").append(skipped).append('\n');
+        sb.append("fontwriter_jobs{state=\"remaining\"} ").append(jobModes.size() - done - skipped).append('\n');
+        sb.append("# TYPE fontwriter_elapsed_seconds gauge\n");
+        sb.append("# UNIT fontwriter_elapsed_seconds seconds\n");
+        sb.append("fontwriter_elapsed_seconds ").append(number(elapsed)).append('\n');
+        sb.append("# TYPE fontwriter_eta_seconds gauge\n");
+        sb.append("# UNIT fontwriter_eta_seconds seconds\n");
+        sb.append("# HELP fontwriter_eta_seconds Estimated time left, from mean stage costs per mode; -1 until known.\n");
+        sb.append("fontwriter_eta_seconds ").append(number(etaSeconds())).append('\n');
+        sb.append("# TYPE fontwriter_stage_seconds counter\n");
+        sb.append("# UNIT fontwriter_stage_seconds seconds\n");
+        sb.append("# HELP fontwriter_stage_seconds Wall time spent in each stage of finished jobs.\n");
+        for (Map.Entry<String, long[]> e : stages.entrySet()) {
+            sb.append("fontwriter_stage_seconds_total{stage=\"").append(e.getKey()).append("\"} ")
+                    .append(number(e.getValue()[0] / 1e9)).append('\n');
+        }
+        sb.append("# TYPE fontwriter_stage_tool_runs counter\n");
+        sb.append("# HELP fontwriter_stage_tool_runs External tool runs in each stage of finished jobs.\n");
+        for (Map.Entry<String, long[]> e : stages.entrySet()) {
+            sb.append("fontwriter_stage_tool_runs_total{stage=\"").append(e.getKey()).append("\"} ")
+                    .append(e.getValue()[1]).append('\n');
+        }
+        sb.append("# TYPE fontwriter_stage_output_bytes counter\n");
+        sb.append("# UNIT fontwriter_stage_output_bytes bytes\n");
+        sb.append("# HELP fontwriter_stage_output_bytes Bytes written by each stage of finished jobs.\n");
+        for (Map.Entry<String, long[]> e : stages.entrySet()) {
+            sb.append("fontwriter_stage_output_bytes_total{stage=\"").append(e.getKey()).append("\"} ")
+                    .append(e.getValue()[2]).append('\n');
+        }
+        sb.append("# TYPE fontwriter_current_job info\n");
+        if (!currentJob.isEmpty()) {
+            sb.append("fontwriter_current_job_info{job=\"").append(currentJob.replace("\\", "\\\\").replace("\"", "\\\""))
+                    .append("\"} 1\n");
+        }
+        sb.append("# EOF\n");
+        return sb.toString();
+    }
+
+    private static String number(double d) {
+        return String.format(Locale.ROOT, "%.3f", d);
+    }
+
+    private void writeMetrics() {
+        File target = metricsFile.file();
+        File temp = new File(target.getPath() + ".tmp");
+        try {
+            metricsFile.parent().mkdirs();
+            Files.write(temp.toPath(), metrics().getBytes(StandardCharsets.UTF_8));
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            // A missed write is picked up by the next one; don't stop the run for it.
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package com.github.tommyettinger;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.math.Affine2;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+
+/**
+ * A {@link Batch} that draws nothing and instead records every quad it
+ * is given, so that TextraTypist's own layout and glyph drawing code
+ * can feed {@link SoftwarePreviewRenderer}.
+ * <p>
+ * {@code Font.drawGlyphs} works out every position, shear, scale and
+ * color itself and hands the batch finished sprite vertices. Recording
+ * those vertices keeps the CPU preview faithful to the GPU one without
+ * copying any of that logic. Each quad is stored as
+ * {@link #SPRITE_SIZE} floats in the usual
+ * {@code x, y, packed color, u, v} order, next to the texture it
+ * samples.
+ * <p>
+ * Shaders, blending state and matrices are accepted and ignored; the
+ * renderer always uses SpriteBatch's default alpha blending and an
+ * identity projection in screen pixels.
+ */
+final class SoftwareBatch implements Batch {
+
+    /** Floats per recorded quad: four vertices of x, y, packed color, u, v. */
+    static final int SPRITE_SIZE = 20;
+
+    final FloatArray vertices = new FloatArray(SPRITE_SIZE * 1024);
+    final Array<Texture> textures = new Array<>(false, 1024);
+
+    private final Color color = new Color(1f, 1f, 1f, 1f);
+    private float packedColor = Color.WHITE_FLOAT_BITS;
+    private final Matrix4 projection = new Matrix4(), transform = new Matrix4();
+    private ShaderProgram shader;
+    private boolean drawing, blending = true;
+    private int blendSrc = GL20.GL_SRC_ALPHA, blendDst = GL20.GL_ONE_MINUS_SRC_ALPHA,
+            blendSrcAlpha = GL20.GL_SRC_ALPHA, blendDstAlpha = GL20.GL_ONE_MINUS_SRC_ALPHA;
+
+    /** Forgets every recorded quad. */
+    void clear() {
+        vertices.clear();
+        textures.clear();
+    }
+
+    int quadCount() {
+        return textures.size;
+    }
+
+    private void quad(Texture texture, float x1, float y1, float x2, float y2, float x3, float y3, float x4, float y4,
+                      float u, float v, float u2, float v2) {
+        final float c = packedColor;
+        vertices.addAll(x1, y1, c, u, v);
+        vertices.addAll(x2, y2, c, u, v2);
+        vertices.addAll(x3, y3, c, u2, v2);
+        vertices.addAll(x4, y4, c, u2, v);
+        textures.add(texture);
+    }
+
+    @Override
+    public void begin() {
+        drawing = true;
+    }
+
+    @Override
+    public void end() {
+        drawing = false;
+    }
+
+    @Override
+    public void setColor(Color tint) {
+        color.set(tint);
+        packedColor = tint.toFloatBits();
+    }
+
+    @Override
+    public void setColor(float r, float g, float b, float a) {
+        color.set(r, g, b, a);
+        packedColor = color.toFloatBits();
+    }
+
+    @Override
+    public Color getColor() {
+        return color;
+    }
+
+    @Override
+    public void setPackedColor(float packedColor) {
+        Color.abgr8888ToColor(color, packedColor);
+        this.packedColor = packedColor;
+    }
+
+    @Override
+    public float getPackedColor() {
+        return packedColor;
+    }
+
+    @Override
+    public void draw(Texture texture, float x, float y, float originX, float originY, float width, float height,
+                     float scaleX, float scaleY, float rotation, int srcX, int srcY, int srcWidth, int srcHeight,
+                     boolean flipX, boolean flipY) {
+        float invW = 1f / texture.getWidth(), invH = 1f / texture.getHeight();
+        float u = srcX * invW, v = (srcY + srcHeight) * invH, u2 = (srcX + srcWidth) * invW, v2 = srcY * invH;
+        if (flipX) {
+            float t = u;
+            u = u2;
+            u2 = t;
+        }
+        if (flipY) {
+            float t = v;
+            v = v2;
+            v2 = t;
+        }
+        transformed(texture, x, y, originX, originY, width, height, scaleX, scaleY, rotation, u, v, u2, v2);
+    }
+
+    @Override
+    public void draw(Texture texture, float x, float y, float width, float height, int srcX, int srcY, int srcWidth,
+                     int srcHeight, boolean flipX, boolean flipY) {
+        draw(texture, x, y, 0f, 0f, width, height, 1f, 1f, 0f, srcX, srcY, srcWidth, srcHeight, flipX, flipY);
+    }
+
+    @Override
+    public void draw(Texture texture, float x, float y, int srcX, int srcY, int srcWidth, int srcHeight) {
+        draw(texture, x, y, srcWidth, srcHeight, srcX, srcY, srcWidth, srcHeight, false, false);
+    }
+
+    @Override
+    public void draw(Texture texture, float x, float y, float width, float height, float u, float v, float u2, float v2) {
+        quad(texture, x, y, x, y + height, x + width, y + height, x + width, y, u, v, u2, v2);
+    }
+
+    @Override
+    public void draw(Texture texture, float x, float y) {
+        draw(texture, x, y, texture.getWidth(), texture.getHeight());
+    }
+
+    @Override
+    public void draw(Texture texture, float x, float y, float width, float height) {
+        draw(texture, x, y, width, height, 0f, 1f, 1f, 0f);
+    }
+
+    @Override
+    public void draw(Texture texture, float[] spriteVertices, int offset, int count) {
+        for (int i = offset, n = offset + count - SPRITE_SIZE; i <= n; i += SPRITE_SIZE) {
+            vertices.addAll(spriteVertices, i, SPRITE_SIZE);
+            textures.add(texture);
+        }
+    }
+
+    @Override
+    public void draw(TextureRegion region, float x, float y) {
+        draw(region, x, y, region.getRegionWidth(), region.getRegionHeight());
+    }
+
+    @Override
+    public void draw(TextureRegion region, float x, float y, float width, float height) {
+        draw(region.getTexture(), x, y, width, height, region.getU(), region.getV2(), region.getU2(), region.getV());
+    }
+
+    @Override
+    public void draw(TextureRegion region, float x, float y, float originX, float originY, float width, float height,
+                     float scaleX, float scaleY, float rotation) {
+        transformed(region.getTexture(), x, y, originX, originY, width, height, scaleX, scaleY, rotation,
+                region.getU(), region.getV2(), region.getU2(), region.getV());
+    }
+
+    @Override
+    public void draw(TextureRegion region, float x, float y, float originX, float originY, float width, float height,
+                     float scaleX, float scaleY, float rotation, boolean clockwise) {
+        if (clockwise) {
+            transformed(region.getTexture(), x, y, originX, originY, width, height, scaleX, scaleY, rotation,
+                    region.getU2(), region.getV2(), region.getU(), region.getV());
+        } else {
+            draw(region, x, y, originX, originY, width, height, scaleX, scaleY, rotation);
+        }
+    }
+
+    @Override
+    public void draw(TextureRegion region, float width, float height, Affine2 t) {
+        quad(region.getTexture(),
+                t.m02, t.m12,
+                t.m01 * height + t.m02, t.m11 * height + t.m12,
+                t.m00 * width + t.m01 * height + t.m02, t.m10 * width + t.m11 * height + t.m12,
+                t.m00 * width + t.m02, t.m10 * width + t.m12,
+                region.getU(), region.getV2(), region.getU2(), region.getV());
+    }
+
+    /** The same corner math as SpriteBatch's rotated and scaled draw methods. */
+    private void transformed(Texture texture, float x, float y, float originX, float originY, float width,
+                             float height, float scaleX, float scaleY, float rotation,
+                             float u, float v, float u2, float v2) {
+        final float worldOriginX = x + originX, worldOriginY = y + originY;
+        float fx = -originX * scaleX, fy = -originY * scaleY;
+        float fx2 = (width - originX) * scaleX, fy2 = (height - originY) * scaleY;
+        final float cos = MathUtils.cosDeg(rotation), sin = MathUtils.sinDeg(rotation);
+        float x1 = cos * fx - sin * fy + worldOriginX, y1 = sin * fx + cos * fy + worldOriginY;
+        float x2 = cos * fx - sin * fy2 + worldOriginX, y2 = sin * fx + cos * fy2 + worldOriginY;
+        float x3 = cos * fx2 - sin * fy2 + worldOriginX, y3 = sin * fx2 + cos * fy2 + worldOriginY;
+        float x4 = x1 + (x3 - x2), y4 = y3 - (y2 - y1);
+        quad(texture, x1, y1, x2, y2, x3, y3, x4, y4, u, v, u2, v2);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void disableBlending() {
+        blending = false;
+    }
+
+    @Override
+    public void enableBlending() {
+        blending = true;
+    }
+
+    @Override
+    public void setBlendFunction(int srcFunc, int dstFunc) {
+        setBlendFunctionSeparate(srcFunc, dstFunc, srcFunc, dstFunc);
+    }
+
+    @Override
+    public void setBlendFunctionSeparate(int srcFuncColor, int dstFuncColor, int srcFuncAlpha, int dstFuncAlpha) {
+        blendSrc = srcFuncColor;
+        blendDst = dstFuncColor;
+        blendSrcAlpha = srcFuncAlpha;
+        blendDstAlpha = dstFuncAlpha;
+    }
+
+    @Override
+    public int getBlendSrcFunc() {
+        return blendSrc;
+    }
+
+    @Override
+    public int getBlendDstFunc() {
+        return blendDst;
+    }
+
+    @Override
+    public int getBlendSrcFuncAlpha() {
+        return blendSrcAlpha;
+    }
+
+    @Override
+    public int getBlendDstFuncAlpha() {
+        return blendDstAlpha;
+    }
+
+    @Override
+    public Matrix4 getProjectionMatrix() {
+        return projection;
+    }
+
+    @Override
+    public Matrix4 getTransformMatrix() {
+        return transform;
+    }
+
+    @Override
+    public void setProjectionMatrix(Matrix4 projection) {
+        this.projection.set(projection);
+    }
+
+    @Override
+    public void setTransformMatrix(Matrix4 transform) {
+        this.transform.set(transform);
+    }
+
+    @Override
+    public void setShader(ShaderProgram shader) {
+        this.shader = shader;
+    }
+
+    @Override
+    public ShaderProgram getShader() {
+        return shader;
+    }
+
+    @Override
+    public boolean isBlendingEnabled() {
+        return blending;
+    }
+
+    @Override
+    public boolean isDrawing() {
+        return drawing;
+    }
+
+    @Override
+    public void dispose() {
+        clear();
+    }
+}
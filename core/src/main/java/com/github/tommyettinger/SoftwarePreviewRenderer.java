@@ -0,0 +1,461 @@
+package com.github.tommyettinger;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.PixmapIO;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.utils.Align;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.NumberUtils;
+import com.github.tommyettinger.textra.Font;
+import com.github.tommyettinger.textra.Layout;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Renders the same preview images as {@link PreviewRenderer} without
+ * drawing anything on the GPU, so previews can be made headless and
+ * several at a time.
+ * <p>
+ * Work for each font is split in two:
+ * <ol>
+ *   <li>On the calling thread, the font is loaded, the preview markup
+ *       is laid out with TextraTypist, and {@code Font.drawGlyphs}
+ *       draws into a {@link SoftwareBatch}, which records each glyph
+ *       quad. This step is quick.</li>
+ *   <li>On a worker thread, the quads are rasterized into a 1200x675
+ *       image, which is written as a PNG and optimized with oxipng.</li>
+ * </ol>
+ * Rasterization samples the atlas as the GPU does, with bilinear or
+ * nearest filtering according to the texture's filters. Pixels are
+ * blended like SpriteBatch's default
+ * {@code SRC_ALPHA, ONE_MINUS_SRC_ALPHA}. Standard atlases multiply the
+ * vertex color by the texel. SDF and MSDF atlases use the math of
+ * TextraTypist's distance field shaders in {@code Font}:
+ * <ul>
+ *   <li>SDF: {@code smoothstep(0.5 - s, 0.5 + s, texel.a)} with
+ *       {@code s = 0.25 / u_smoothing}, times the vertex alpha, over
+ *       the vertex color times the texel color;</li>
+ *   <li>MSDF: {@code clamp((median(r, g, b) - 0.5) * u_smoothing + 0.5, 0, 1)}
+ *       times the vertex alpha, over the vertex color.</li>
+ * </ul>
+ * {@code u_smoothing} is worked out as {@code Font.enableShader} does,
+ * from the crispness that {@code Font.resizeDistanceField} gives for a
+ * {@value #WIDTH}x{@value #HEIGHT} back buffer, which is the size of
+ * the desktop window the GPU preview is drawn in. The headless backend
+ * has no back buffer, so calling {@code resizeDistanceField} here would
+ * give a different crispness.
+ * <p>
+ * Loading a {@code Font} creates a {@link Texture} and, for distance
+ * field fonts, a shader. When there is no GL context (under the
+ * headless backend), a GL20 that does nothing is installed first so
+ * both can be created, and removed again by {@link #dispose()}. No
+ * pixels are ever read back from them. {@code Gdx.gl} is global, so
+ * while one of these renderers is open it must be the only user of GL
+ * in the JVM: anything else that draws in that time gets the no-op GL,
+ * and its draws silently do nothing. {@link Main} makes either this or
+ * a {@link PreviewRenderer}, never both.
+ */
+final class SoftwarePreviewRenderer implements Disposable {
+
+    static final int WIDTH = 1200, HEIGHT = 675;
+
+    private final String archPath;
+    private final String oxipngBinary;
+    private final ExecutorService workers;
+    private final Semaphore inFlight;
+    /** Whether the constructor installed the no-op GL, which {@link #dispose()} then removes. */
+    private final boolean installedGL;
+    private final List<Future<?>> pending = new ArrayList<>();
+    private final SoftwareBatch batch = new SoftwareBatch();
+
+    /**
+     * @param archPath     platform-specific {@code distbin/} directory
+     *                     containing the oxipng executable
+     * @param oxipngBinary bare filename of the oxipng executable
+     * @param threads      number of worker threads; also the most
+     *                     previews whose atlases are held in memory at once
+     *                     (without a GL context, installs the no-op GL, so
+     *                     nothing else in the JVM may use GL until
+     *                     {@link #dispose()})
+     */
+    SoftwarePreviewRenderer(String archPath, String oxipngBinary, int threads) {
+        this.archPath = archPath;
+        this.oxipngBinary = oxipngBinary;
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "fontwriter-preview");
+            t.setDaemon(true);
+            return t;
+        });
+        this.inFlight = new Semaphore(threads);
+        this.installedGL = Gdx.gl == null;
+        if (installedGL) {
+            Gdx.gl = Gdx.gl20 = noOpGL();
+        }
+    }
+
+    /**
+     * Lays out the preview for one font on the calling thread and queues
+     * its rasterization. Returns as soon as a worker is free; call
+     * {@link #awaitAll()} to wait for the PNGs.
+     *
+     * @param config   configuration for this particular font (used
+     *                 only for {@link FontwriterConfig#mode})
+     * @param inPath   directory (with trailing slash) containing the
+     *                 {@code <fontName>-<mode>.png} and
+     *                 {@code <fontName>-<mode>.json} pair
+     * @param fontName base name of the font (no extension)
+     * @return the preview file that will be written
+     */
+    public FileHandle render(FontwriterConfig config, String inPath, String fontName) {
+        final FontwriterConfig.Mode mode = config.mode;
+        final String base = inPath + fontName + "-" + mode;
+        System.out.println("Laying out a CPU preview for " + fontName + "-" + mode + "...");
+        inFlight.acquireUninterruptibly();
+        boolean queued = false;
+        Pixmap atlas = null;
+        try {
+            atlas = new Pixmap(Gdx.files.local(base + ".png"));
+            if (atlas.getFormat() != Pixmap.Format.RGBA8888) {
+                Pixmap converted = new Pixmap(atlas.getWidth(), atlas.getHeight(), Pixmap.Format.RGBA8888);
+                converted.setBlending(Pixmap.Blending.None);
+                converted.drawPixmap(atlas, 0, 0);
+                atlas.dispose();
+                atlas = converted;
+            }
+            Texture texture = new Texture(atlas);
+            Font font = new Font(base + ".json", new TextureRegion(texture), 0f, 0f, 0f, 0f, true, true);
+            if (texture.getWidth() >= 1024 && texture.getHeight() >= 1024)
+                font.scaleHeightTo(32f);
+            else
+                font.scale(Math.round(512f / texture.getHeight()))
+                    .setTextureFilter(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest)
+                    .useIntegerPositions(true); // for pixel fonts
+            float smoothing = smoothing(font, mode);
+
+            Layout layout = new Layout().setTargetWidth(WIDTH);
+            layout.setBaseColor(Color.DARK_GRAY);
+            layout.setMaxLines(20);
+            layout.setEllipsis(" and so on and so forth...");
+            font.markup(PreviewRenderer.TEXT, layout);
+
+            batch.clear();
+            batch.begin();
+            font.drawGlyphs(batch, layout, WIDTH * 0.5f, (HEIGHT + layout.getHeight()) * 0.5f, Align.center);
+            batch.end();
+
+            Job job = new Job(batch, texture, atlas, mode, smoothing,
+                    texture.getMinFilter() == Texture.TextureFilter.Nearest);
+            font.dispose();
+            texture.dispose();
+
+            final FileHandle previewFile = Gdx.files.local("previews/" + fontName + "-" + mode + ".png");
+            final Pixmap atlasPixels = atlas;
+            pending.add(workers.submit(() -> {
+                try {
+                    Pixmap pm = job.rasterize();
+                    try {
+                        PixmapIO.writePNG(previewFile, pm, 0, false);
+                    } finally {
+                        pm.dispose();
+                    }
+                } finally {
+                    atlasPixels.dispose();
+                    inFlight.release();
+                }
+                List<String> oxiCmd = new ArrayList<>();
+                oxiCmd.add(archPath + oxipngBinary);
+                oxiCmd.add("-o");
+                oxiCmd.add("6");
+                oxiCmd.add("--ng");
+                oxiCmd.add("-s");
+                oxiCmd.add(previewFile.path());
+                BinaryExec.runOrThrow(archPath + oxipngBinary, "oxipng", oxiCmd,
+                        new File(Gdx.files.getLocalStoragePath()));
+                return null;
+            }));
+            queued = true;
+            return previewFile;
+        } finally {
+            if (!queued) {
+                if (atlas != null) atlas.dispose();
+                inFlight.release();
+            }
+        }
+    }
+
+    /**
+     * The {@code u_smoothing} uniform that {@code Font.enableShader} sets
+     * for {@code font}, after {@code Font.resizeDistanceField(WIDTH, HEIGHT)}
+     * with a back buffer of the same size; 0 for standard fonts.
+     */
+    private static float smoothing(Font font, FontwriterConfig.Mode mode) {
+        if (mode == FontwriterConfig.Mode.STANDARD) return 0f;
+        float actualCrispness = font.distanceFieldCrispness
+                * (float) Math.pow(4f, 1.9f - 2f + font.cellHeight * 0.005f);
+        float cellScale = Math.max(font.cellHeight / font.originalCellHeight, font.cellWidth / font.originalCellWidth);
+        if (mode == FontwriterConfig.Mode.MSDF) return 7f * actualCrispness * cellScale;
+        return actualCrispness / (cellScale * 0.5f + 0.125f);
+    }
+
+    /**
+     * Waits for every preview queued so far to be written.
+     *
+     * @throws RuntimeException wrapping the first failure of any worker
+     */
+    public void awaitAll() {
+        try {
+            for (Future<?> f : pending) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof FontWriterException) throw (FontWriterException) e.getCause();
+            throw new RuntimeException("Preview rendering failed", e.getCause());
+        } finally {
+            pending.clear();
+        }
+    }
+
+    /**
+     * Waits for outstanding previews, then stops the worker threads.
+     */
+    @Override
+    public void dispose() {
+        try {
+            awaitAll();
+        } finally {
+            workers.shutdown();
+            // Leave no stand-in GL behind, so a later run in this JVM still sees no GL context.
+            if (installedGL) {
+                Gdx.gl = Gdx.gl20 = null;
+            }
+        }
+    }
+
+    /**
+     * Everything a worker needs to rasterize one preview: a copy of the
+     * recorded quads, and the atlas pixels they sample.
+     */
+    private static final class Job {
+        private final float[] vertices;
+        private final int quads;
+        private final boolean[] sampled;
+        private final ByteBuffer atlas;
+        private final int atlasWidth, atlasHeight;
+        private final FontwriterConfig.Mode mode;
+        private final float smoothing;
+        private final boolean nearest;
+
+        Job(SoftwareBatch batch, Texture texture, Pixmap atlas, FontwriterConfig.Mode mode,
+            float smoothing, boolean nearest) {
+            this.vertices = batch.vertices.toArray();
+            this.quads = batch.quadCount();
+            this.sampled = new boolean[quads];
+            for (int q = 0; q < quads; q++) {
+                sampled[q] = batch.textures.get(q) == texture;
+            }
+            this.atlas = atlas.getPixels().duplicate();
+            this.atlasWidth = atlas.getWidth();
+            this.atlasHeight = atlas.getHeight();
+            this.mode = mode;
+            this.smoothing = smoothing;
+            this.nearest = nearest;
+        }
+
+        /** Draws every quad over a 75% gray background, as the GPU preview does. */
+        Pixmap rasterize() {
+            final float[] r = new float[WIDTH * HEIGHT], g = new float[WIDTH * HEIGHT], b = new float[WIDTH * HEIGHT];
+            java.util.Arrays.fill(r, 0.75f);
+            java.util.Arrays.fill(g, 0.75f);
+            java.util.Arrays.fill(b, 0.75f);
+            final float[] texel = new float[4];
+            for (int q = 0; q < quads; q++) {
+                if (!sampled[q]) continue;
+                int o = q * SoftwareBatch.SPRITE_SIZE;
+                // SpriteBatch draws each quad as triangles 0-1-2 and 2-3-0.
+                triangle(o, o + 5, o + 10, r, g, b, texel);
+                triangle(o + 10, o + 15, o, r, g, b, texel);
+            }
+            Pixmap pm = new Pixmap(WIDTH, HEIGHT, Pixmap.Format.RGB888);
+            ByteBuffer out = pm.getPixels();
+            for (int row = 0; row < HEIGHT; row++) {
+                // Screen y points up; image rows go down.
+                int y = HEIGHT - 1 - row;
+                for (int x = 0; x < WIDTH; x++) {
+                    int i = y * WIDTH + x;
+                    out.put(toByte(r[i])).put(toByte(g[i])).put(toByte(b[i]));
+                }
+            }
+            out.flip();
+            return pm;
+        }
+
+        private void triangle(int a, int b, int c, float[] red, float[] green, float[] blue, float[] texel) {
+            final float[] v = vertices;
+            float ax = v[a], ay = v[a + 1], bx = v[b], by = v[b + 1], cx = v[c], cy = v[c + 1];
+            float area = (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+            if (area == 0f) return;
+            if (area < 0f) {
+                // Make the winding counter-clockwise so the edge tests below hold.
+                int t = b;
+                b = c;
+                c = t;
+                bx = v[b];
+                by = v[b + 1];
+                cx = v[c];
+                cy = v[c + 1];
+                area = -area;
+            }
+            final float inv = 1f / area;
+            int minX = Math.max(0, (int) Math.floor(Math.min(ax, Math.min(bx, cx))));
+            int maxX = Math.min(WIDTH - 1, (int) Math.ceil(Math.max(ax, Math.max(bx, cx))));
+            int minY = Math.max(0, (int) Math.floor(Math.min(ay, Math.min(by, cy))));
+            int maxY = Math.min(HEIGHT - 1, (int) Math.ceil(Math.max(ay, Math.max(by, cy))));
+            if (minX > maxX || minY > maxY) return;
+
+            // Texture coordinates in texels.
+            float au = v[a + 3] * atlasWidth, av = v[a + 4] * atlasHeight;
+            float bu = v[b + 3] * atlasWidth, bv = v[b + 4] * atlasHeight;
+            float cu = v[c + 3] * atlasWidth, cv = v[c + 4] * atlasHeight;
+
+            int ca = NumberUtils.floatToIntColor(v[a + 2]), cb = NumberUtils.floatToIntColor(v[b + 2]),
+                    cc = NumberUtils.floatToIntColor(v[c + 2]);
+
+            for (int y = minY; y <= maxY; y++) {
+                float py = y + 0.5f;
+                for (int x = minX; x <= maxX; x++) {
+                    float px = x + 0.5f;
+                    float w0 = (bx - px) * (cy - py) - (by - py) * (cx - px);
+                    float w1 = (cx - px) * (ay - py) - (cy - py) * (ax - px);
+                    float w2 = (ax - px) * (by - py) - (ay - py) * (bx - px);
+                    if (!inside(w0, bx, by, cx, cy) || !inside(w1, cx, cy, ax, ay) || !inside(w2, ax, ay, bx, by))
+                        continue;
+                    w0 *= inv;
+                    w1 *= inv;
+                    w2 *= inv;
+                    sample(w0 * au + w1 * bu + w2 * cu, w0 * av + w1 * bv + w2 * cv, texel);
+                    float vr = channel(ca, cb, cc, 0, w0, w1, w2), vg = channel(ca, cb, cc, 8, w0, w1, w2),
+                            vb = channel(ca, cb, cc, 16, w0, w1, w2), va = channel(ca, cb, cc, 24, w0, w1, w2);
+                    float sr, sg, sb, sa;
+                    if (mode == FontwriterConfig.Mode.MSDF) {
+                        float d = Math.max(Math.min(texel[0], texel[1]), Math.min(Math.max(texel[0], texel[1]), texel[2]));
+                        sr = vr;
+                        sg = vg;
+                        sb = vb;
+                        sa = va * Math.min(1f, Math.max(0f, (d - 0.5f) * smoothing + 0.5f));
+                    } else {
+                        sr = vr * texel[0];
+                        sg = vg * texel[1];
+                        sb = vb * texel[2];
+                        // The SDF shader falls back to plain texturing when u_smoothing isn't positive.
+                        sa = va * (mode == FontwriterConfig.Mode.SDF && smoothing > 0f
+                                ? smoothstep(0.5f - 0.25f / smoothing, 0.5f + 0.25f / smoothing, texel[3]) : texel[3]);
+                    }
+                    if (sa <= 0f) continue;
+                    int i = y * WIDTH + x;
+                    red[i] = sr * sa + red[i] * (1f - sa);
+                    green[i] = sg * sa + green[i] * (1f - sa);
+                    blue[i] = sb * sa + blue[i] * (1f - sa);
+                }
+            }
+        }
+
+        /**
+         * Top-left fill rule, so a pixel centre on the edge shared by a
+         * quad's two triangles is only drawn once.
+         */
+        private static boolean inside(float w, float x0, float y0, float x1, float y1) {
+            if (w > 0f) return true;
+            if (w < 0f) return false;
+            float dy = y1 - y0;
+            return dy < 0f || (dy == 0f && x1 < x0);
+        }
+
+        /** GLSL's {@code smoothstep}. */
+        private static float smoothstep(float edge0, float edge1, float x) {
+            float t = Math.min(1f, Math.max(0f, (x - edge0) / (edge1 - edge0)));
+            return t * t * (3f - 2f * t);
+        }
+
+        private static float channel(int ca, int cb, int cc, int shift, float w0, float w1, float w2) {
+            return ((ca >>> shift & 255) * w0 + (cb >>> shift & 255) * w1 + (cc >>> shift & 255) * w2) / 255f;
+        }
+
+        /** Samples the atlas at a position in texels, with clamp-to-edge wrapping. */
+        private void sample(float u, float v, float[] out) {
+            if (nearest) {
+                fetch(clampX((int) Math.floor(u)), clampY((int) Math.floor(v)), out, 1f, true);
+                return;
+            }
+            float fu = u - 0.5f, fv = v - 0.5f;
+            int x0 = (int) Math.floor(fu), y0 = (int) Math.floor(fv);
+            float tx = fu - x0, ty = fv - y0;
+            fetch(clampX(x0), clampY(y0), out, (1f - tx) * (1f - ty), true);
+            fetch(clampX(x0 + 1), clampY(y0), out, tx * (1f - ty), false);
+            fetch(clampX(x0), clampY(y0 + 1), out, (1f - tx) * ty, false);
+            fetch(clampX(x0 + 1), clampY(y0 + 1), out, tx * ty, false);
+        }
+
+        private void fetch(int x, int y, float[] out, float weight, boolean first) {
+            int i = (y * atlasWidth + x) << 2;
+            for (int c = 0; c < 4; c++) {
+                float value = (atlas.get(i + c) & 255) / 255f * weight;
+                out[c] = first ? value : out[c] + value;
+            }
+        }
+
+        private int clampX(int x) {
+            return Math.min(atlasWidth - 1, Math.max(0, x));
+        }
+
+        private int clampY(int y) {
+            return Math.min(atlasHeight - 1, Math.max(0, y));
+        }
+
+        private static byte toByte(float f) {
+            return (byte) Math.round(Math.min(1f, Math.max(0f, f)) * 255f);
+        }
+    }
+
+    /**
+     * A GL20 whose methods do nothing. Handles and shader status queries
+     * report success, so {@link Texture} and ShaderProgram objects can be
+     * created without a context.
+     */
+    private static GL20 noOpGL() {
+        return (GL20) Proxy.newProxyInstance(GL20.class.getClassLoader(), new Class<?>[]{GL20.class},
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (("glGetShaderiv".equals(name) || "glGetProgramiv".equals(name)) && args[2] instanceof IntBuffer) {
+                        int pname = (Integer) args[1];
+                        IntBuffer params = (IntBuffer) args[2];
+                        params.put(params.position(),
+                                pname == GL20.GL_COMPILE_STATUS || pname == GL20.GL_LINK_STATUS ? 1 : 0);
+                        return null;
+                    }
+                    Class<?> type = method.getReturnType();
+                    if (type == int.class) return name.startsWith("glCreate") || name.startsWith("glGen") ? 1 : 0;
+                    if (type == boolean.class) return false;
+                    if (type == float.class) return 0f;
+                    if (type == String.class) return "";
+                    return null;
+                });
+    }
+}
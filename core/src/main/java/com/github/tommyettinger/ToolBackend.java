@@ -0,0 +1,45 @@
+package com.github.tommyettinger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Runs one attempt of an external tool for {@link BinaryExec}.
+ * <p>
+ * BinaryExec keeps everything around the attempt: timeouts and
+ * retries, cancellation, flight recording, and how failures end the
+ * run. A backend only has to check that the tool can be run and run it
+ * once. The usual backend launches the bundled binaries as child
+ * processes; {@link FakeToolBackend} does the work in-process, so the
+ * orchestration around the tools can be measured and tested without
+ * msdf-atlas-gen or oxipng.
+ */
+interface ToolBackend {
+
+    /**
+     * Checks that the tool at {@code binaryPath} can be run.
+     *
+     * @param binaryPath path to the binary, relative to the working
+     *                   directory of this JVM unless absolute
+     * @param binaryName human-readable name for error messages
+     * @throws FontWriterException.ToolUnavailable with a user-facing diagnostic if it can't
+     */
+    void verify(String binaryPath, String binaryName);
+
+    /**
+     * Runs the tool once and waits for it.
+     *
+     * @param binaryName    human-readable name, also the key for per-tool settings
+     * @param command       full command line; {@code command.get(0)} is the binary
+     * @param workingDir    working directory that relative paths in {@code command} resolve against
+     * @param timeoutMillis how long the run may take before it is stopped, or 0 for no limit
+     * @param cancellation  the job's cancellation; the run stops soon after it is cancelled
+     * @return the finished run, {@link BinaryExec.Failure#TIMEOUT} or
+     *         {@link BinaryExec.Failure#CANCELLED} if it was stopped
+     * @throws IOException          if the tool could not be started
+     * @throws InterruptedException if the calling thread was interrupted while waiting
+     */
+    BinaryExec.Result runOnce(String binaryName, List<String> command, File workingDir, long timeoutMillis,
+                              BinaryExec.Cancellation cancellation) throws IOException, InterruptedException;
+}
@@ -0,0 +1,30 @@
+package com.github.tommyettinger.headless;
+
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.github.tommyettinger.Main;
+
+/**
+ * Launches fontwriter with libGDX's headless backend, so no window,
+ * display server or GL context is needed. Everything except the
+ * GPU-rendered preview works the same as with {@code Lwjgl3Launcher};
+ * see {@link Main#create()} for how previews are handled without GL.
+ * <p>
+ * Suited to CI workers and containers:
+ * <pre>
+ *   java -jar fontwriter-headless.jar MyFont.ttf sdf 60
+ *   java -jar fontwriter-headless.jar --bulk input
+ * </pre>
+ */
+public class HeadlessLauncher {
+    public static void main(String[] args) {
+        new HeadlessApplication(new Main(args), getDefaultConfiguration());
+    }
+
+    private static HeadlessApplicationConfiguration getDefaultConfiguration() {
+        HeadlessApplicationConfiguration configuration = new HeadlessApplicationConfiguration();
+        // Main does all of its work in create(); never call render().
+        configuration.updatesPerSecond = -1;
+        return configuration;
+    }
+}
@@ -8,7 +8,7 @@ import com.github.tommyettinger.Main;
 public class Lwjgl3Launcher {
     public static void main(String[] args) {
         if (StartupHelper.startNewJvmIfRequired(args)) return; // This handles macOS support and helps on Windows.
-        new Lwjgl3Application(new Main(args), getDefaultConfiguration());
+        new Lwjgl3Application(new Main(args, new Lwjgl3PixelReadback()), getDefaultConfiguration());
     }
 
     private static Lwjgl3ApplicationConfiguration getDefaultConfiguration() {
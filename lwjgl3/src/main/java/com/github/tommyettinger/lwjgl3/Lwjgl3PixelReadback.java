@@ -0,0 +1,72 @@
+package com.github.tommyettinger.lwjgl3;
+
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.github.tommyettinger.PixelReadback;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL21;
+import org.lwjgl.opengl.GLCapabilities;
+
+import java.nio.ByteBuffer;
+
+/**
+ * {@link PixelReadback} using two {@code GL_PIXEL_PACK_BUFFER} objects,
+ * through LWJGL's offset variant of {@code glReadPixels}. Needs OpenGL
+ * 2.1 or {@code ARB_pixel_buffer_object}.
+ */
+class Lwjgl3PixelReadback implements PixelReadback {
+
+    private final int[] buffers = new int[2];
+    private final long[] sizes = new long[2];
+
+    @Override
+    public boolean isSupported() {
+        GLCapabilities caps = GL.getCapabilities();
+        return caps.OpenGL21 || caps.GL_ARB_pixel_buffer_object;
+    }
+
+    @Override
+    public void start(int slot, int width, int height) {
+        long bytes = (long) width * height * 3;
+        if (buffers[slot] == 0) {
+            buffers[slot] = GL15.glGenBuffers();
+        }
+        GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, buffers[slot]);
+        if (sizes[slot] != bytes) {
+            GL15.glBufferData(GL21.GL_PIXEL_PACK_BUFFER, bytes, GL15.GL_STREAM_READ);
+            sizes[slot] = bytes;
+        }
+        GL11.glPixelStorei(GL11.GL_PACK_ALIGNMENT, 1);
+        GL11.glReadPixels(0, 0, width, height, GL11.GL_RGB, GL11.GL_UNSIGNED_BYTE, 0L);
+        GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, 0);
+    }
+
+    @Override
+    public void finish(int slot, ByteBuffer pixels) {
+        GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, buffers[slot]);
+        try {
+            ByteBuffer mapped = GL15.glMapBuffer(GL21.GL_PIXEL_PACK_BUFFER, GL15.GL_READ_ONLY, sizes[slot], null);
+            if (mapped == null) {
+                throw new GdxRuntimeException("Could not map the pixel pack buffer for slot " + slot);
+            }
+            pixels.clear();
+            pixels.put(mapped);
+            pixels.flip();
+            GL15.glUnmapBuffer(GL21.GL_PIXEL_PACK_BUFFER);
+        } finally {
+            GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, 0);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        for (int i = 0; i < buffers.length; i++) {
+            if (buffers[i] != 0) {
+                GL15.glDeleteBuffers(buffers[i]);
+                buffers[i] = 0;
+                sizes[i] = 0L;
+            }
+        }
+    }
+}
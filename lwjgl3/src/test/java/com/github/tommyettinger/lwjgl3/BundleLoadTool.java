@@ -0,0 +1,143 @@
+package com.github.tommyettinger.lwjgl3;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Application;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3ApplicationConfiguration;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+import com.badlogic.gdx.utils.UBJsonReader;
+import com.badlogic.gdx.utils.compression.Lzma;
+import com.github.tommyettinger.FontBundle;
+import com.github.tommyettinger.FontBundleWriter;
+import com.github.tommyettinger.textra.utils.LZBDecompression;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Compares how long it takes to get a font's metadata and atlas pixels
+ * into memory from each format fontwriter produces. Every JSON-based
+ * format is timed as "decode descriptor + decode PNG", since both are
+ * needed before a font can be used; the .fwb bundle is timed as
+ * "map file + look up every glyph + take a pixel view".
+ * <p>
+ * Missing .fwb files are written first with {@link FontBundleWriter}.
+ * Formats that are not present for a font are skipped for that font.
+ * Each measurement is the best of {@link #RUNS} runs.
+ */
+public class BundleLoadTool extends ApplicationAdapter {
+    private static final int RUNS = 5;
+    private static final String[] FORMATS = {".json", ".json.lzma", ".dat", ".ubj", ".ubj.lzma", ".fwb"};
+
+    @Override
+    public void create() {
+        FileHandle[] jsons = Gdx.files.local("knownFonts/").list(".json");
+        long[] totals = new long[FORMATS.length];
+        int[] counts = new int[FORMATS.length];
+        long pngTotal = 0L;
+        for (FileHandle json : jsons) {
+            FileHandle png = json.sibling(json.nameWithoutExtension() + ".png");
+            if (!png.exists()) continue;
+            FileHandle fwb = json.sibling(json.nameWithoutExtension() + ".fwb");
+            if (!fwb.exists()) FontBundleWriter.write(json, png);
+
+            long pngNanos = best(() -> new Pixmap(png).dispose());
+            pngTotal += pngNanos;
+            StringBuilder line = new StringBuilder(json.nameWithoutExtension());
+            for (int f = 0; f < FORMATS.length; f++) {
+                FileHandle file = json.sibling(json.nameWithoutExtension() + FORMATS[f]);
+                if (!file.exists() && FORMATS[f].startsWith(".ubj"))
+                    file = json.sibling("ubj/" + json.nameWithoutExtension() + FORMATS[f]);
+                if (!file.exists()) continue;
+                final FileHandle in = file;
+                final String ext = FORMATS[f];
+                long nanos = best(() -> load(in, ext));
+                if (!".fwb".equals(ext)) nanos += pngNanos;
+                totals[f] += nanos;
+                counts[f]++;
+                line.append(String.format("  %s %.2fms", ext, nanos * 1e-6));
+            }
+            System.out.println(line);
+        }
+        System.out.println();
+        System.out.printf("%-12s %8s %14s %14s%n", "format", "fonts", "total ms", "mean ms");
+        for (int f = 0; f < FORMATS.length; f++) {
+            if (counts[f] == 0) continue;
+            System.out.printf("%-12s %8d %14.2f %14.3f%n", FORMATS[f], counts[f],
+                    totals[f] * 1e-6, totals[f] * 1e-6 / counts[f]);
+        }
+        System.out.printf("(PNG decoding alone accounted for %.2f ms per JSON-based format.)%n", pngTotal * 1e-6);
+        System.exit(0);
+    }
+
+    private static void load(FileHandle file, String ext) {
+        try {
+            JsonValue root;
+            switch (ext) {
+                case ".json":
+                    root = new JsonReader().parse(file);
+                    break;
+                case ".json.lzma":
+                    root = new JsonReader().parse(new String(unlzma(file.readBytes()), "UTF-8"));
+                    break;
+                case ".dat":
+                    root = new JsonReader().parse(LZBDecompression.decompressFromBytes(file.readBytes()));
+                    break;
+                case ".ubj":
+                    root = new UBJsonReader().parse(file);
+                    break;
+                case ".ubj.lzma":
+                    root = new UBJsonReader().parse(new ByteArrayInputStream(unlzma(file.readBytes())));
+                    break;
+                default: {
+                    FontBundle bundle = FontBundle.map(file.file());
+                    float sum = 0f;
+                    for (int i = 0, n = bundle.glyphCount(); i < n; i++) {
+                        sum += bundle.advance(bundle.glyphIndex(bundle.codepoint(i)));
+                    }
+                    if (sum != sum || bundle.pixels().remaining() == 0) throw new IllegalStateException();
+                    return;
+                }
+            }
+            if (root.get("glyphs") == null) throw new IllegalStateException("No glyphs in " + file);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static byte[] unlzma(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 8);
+        Lzma.decompress(new ByteArrayInputStream(data), out);
+        return out.toByteArray();
+    }
+
+    private static long best(Runnable task) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            task.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    public static void main(String[] args) {
+        if (StartupHelper.startNewJvmIfRequired(args)) return; // This handles macOS support and helps on Windows.
+        new Lwjgl3Application(new BundleLoadTool(), getDefaultConfiguration());
+    }
+
+    private static Lwjgl3ApplicationConfiguration getDefaultConfiguration() {
+        Lwjgl3ApplicationConfiguration configuration = new Lwjgl3ApplicationConfiguration();
+        configuration.disableAudio(true);
+        configuration.setTitle("Bundle Load Tool");
+        configuration.useVsync(true);
+        configuration.setWindowedMode(800, 600);
+        configuration.setWindowIcon("libgdx128.png", "libgdx64.png", "libgdx32.png", "libgdx16.png");
+        return configuration;
+    }
+
+}
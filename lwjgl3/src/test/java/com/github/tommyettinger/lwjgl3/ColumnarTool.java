@@ -0,0 +1,129 @@
+package com.github.tommyettinger.lwjgl3;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Application;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3ApplicationConfiguration;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+import com.badlogic.gdx.utils.UBJsonReader;
+import com.badlogic.gdx.utils.UBJsonWriter;
+import com.badlogic.gdx.utils.compression.Lzma;
+import com.github.tommyettinger.GlyphColumns;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Compares {@link GlyphColumns} with .ubj.lzma on docs/knownFonts, for
+ * both file size and the time to decode each one into a
+ * {@link JsonValue} tree. A .ubj.lzma that is missing from the ubj/
+ * folder is built in memory. Every .fwc is also decoded and checked
+ * against the original JSON, number by number, so a lossy conversion
+ * stops the tool.
+ * Each time is the best of {@link #RUNS} runs.
+ */
+public class ColumnarTool extends ApplicationAdapter {
+    private static final int RUNS = 5;
+
+    @Override
+    public void create() {
+        FileHandle[] jsons = Gdx.files.local("knownFonts/").list(".json");
+        long fwcTotal = 0L, ubjTotal = 0L, fwcNanos = 0L, ubjNanos = 0L;
+        System.out.printf("%-40s %10s %10s %10s %10s%n", "font", ".ubj.lzma", ".fwc", "ubj ms", "fwc ms");
+        for (FileHandle json : jsons) {
+            JsonValue root = new JsonReader().parse(json);
+            byte[] fwc = GlyphColumns.encode(root);
+            compare(root, GlyphColumns.decode(fwc), json.name());
+            byte[] ubj = ubjLzma(json, root);
+
+            long fwcBest = best(() -> GlyphColumns.decode(fwc));
+            long ubjBest = best(() -> {
+                try {
+                    new UBJsonReader().parse(new ByteArrayInputStream(unlzma(ubj)));
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            fwcTotal += fwc.length;
+            ubjTotal += ubj.length;
+            fwcNanos += fwcBest;
+            ubjNanos += ubjBest;
+            System.out.printf("%-40s %10d %10d %10.2f %10.2f%n", json.nameWithoutExtension(),
+                    ubj.length, fwc.length, ubjBest * 1e-6, fwcBest * 1e-6);
+        }
+        System.out.println();
+        System.out.printf("%-40s %10d %10d %10.2f %10.2f%n", "TOTAL", ubjTotal, fwcTotal, ubjNanos * 1e-6, fwcNanos * 1e-6);
+        System.out.printf(".fwc is %.1f%% of the size of .ubj.lzma and decodes in %.1f%% of the time.%n",
+                100.0 * fwcTotal / ubjTotal, 100.0 * fwcNanos / ubjNanos);
+        System.exit(0);
+    }
+
+    private static byte[] ubjLzma(FileHandle json, JsonValue root) {
+        FileHandle existing = json.sibling("ubj/" + json.nameWithoutExtension() + ".ubj.lzma");
+        if (existing.exists()) return existing.readBytes();
+        try {
+            ByteArrayOutputStream ubj = new ByteArrayOutputStream();
+            UBJsonWriter writer = new UBJsonWriter(ubj);
+            writer.value(root);
+            writer.close();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Lzma.compress(new ByteArrayInputStream(ubj.toByteArray()), out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** Fails unless both trees hold the same keys, array lengths, strings and bit-identical numbers. */
+    private static void compare(JsonValue expected, JsonValue actual, String path) {
+        if (expected.isObject() || expected.isArray()) {
+            if (expected.size != actual.size) throw new IllegalStateException("Size differs at " + path);
+            JsonValue a = actual.child;
+            for (JsonValue e = expected.child; e != null; e = e.next, a = a.next) {
+                if (expected.isObject()) a = actual.get(e.name);
+                if (a == null) throw new IllegalStateException("Missing " + path + "." + e.name);
+                compare(e, a, expected.isObject() ? path + "." + e.name : path + "[]");
+            }
+        } else if (expected.isNumber()) {
+            if (Double.doubleToLongBits(expected.asDouble()) != Double.doubleToLongBits(actual.asDouble()))
+                throw new IllegalStateException("Value differs at " + path + ": " + expected + " vs " + actual);
+        } else if (!expected.toString().equals(actual.toString())) {
+            throw new IllegalStateException("Value differs at " + path + ": " + expected + " vs " + actual);
+        }
+    }
+
+    private static byte[] unlzma(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 8);
+        Lzma.decompress(new ByteArrayInputStream(data), out);
+        return out.toByteArray();
+    }
+
+    private static long best(Runnable task) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            task.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    public static void main(String[] args) {
+        if (StartupHelper.startNewJvmIfRequired(args)) return; // This handles macOS support and helps on Windows.
+        new Lwjgl3Application(new ColumnarTool(), getDefaultConfiguration());
+    }
+
+    private static Lwjgl3ApplicationConfiguration getDefaultConfiguration() {
+        Lwjgl3ApplicationConfiguration configuration = new Lwjgl3ApplicationConfiguration();
+        configuration.disableAudio(true);
+        configuration.setTitle("Columnar Tool");
+        configuration.useVsync(true);
+        configuration.setWindowedMode(800, 600);
+        configuration.setWindowIcon("libgdx128.png", "libgdx64.png", "libgdx32.png", "libgdx16.png");
+        return configuration;
+    }
+
+}
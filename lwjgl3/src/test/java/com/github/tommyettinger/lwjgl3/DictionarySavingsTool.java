@@ -0,0 +1,90 @@
+package com.github.tommyettinger.lwjgl3;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Application;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3ApplicationConfiguration;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.ByteArray;
+import com.github.tommyettinger.DictionaryCompression;
+import com.github.tommyettinger.textra.utils.LZBCompression;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures how much a dictionary trained on docs/knownFonts saves over
+ * the per-file formats already shipped there. The dictionary is trained
+ * on every .json in the folder, then each file is compressed with it and
+ * compared to its .json.lzma and .dat; a .dat that is missing is
+ * computed on the fly. Every compressed file is also decompressed again
+ * to check that the round trip is exact.
+ * <p>
+ * The dictionary itself is counted once in the totals, since a game
+ * would ship it alongside its fonts.
+ */
+public class DictionarySavingsTool extends ApplicationAdapter {
+
+    @Override
+    public void create() {
+        FileHandle[] jsons = Gdx.files.local("knownFonts/").list(".json");
+        List<byte[]> samples = new ArrayList<>(jsons.length);
+        for (FileHandle json : jsons) {
+            samples.add(json.readBytes());
+        }
+        long start = System.nanoTime();
+        byte[] dictionary = DictionaryCompression.train(samples, DictionaryCompression.MAX_DICTIONARY_SIZE);
+        System.out.printf("Trained a %d-byte dictionary from %d files in %.2f s.%n%n",
+                dictionary.length, jsons.length, (System.nanoTime() - start) * 1e-9);
+
+        long jsonTotal = 0L, sdzTotal = dictionary.length, lzmaTotal = 0L, datTotal = 0L;
+        System.out.printf("%-40s %10s %10s %10s %10s%n", "font", ".json", ".json.sdz", ".json.lzma", ".dat");
+        for (int i = 0; i < jsons.length; i++) {
+            FileHandle json = jsons[i];
+            byte[] raw = samples.get(i);
+            byte[] sdz = DictionaryCompression.compress(raw, dictionary);
+            if (!Arrays.equals(raw, DictionaryCompression.decompress(sdz, dictionary))) {
+                throw new IllegalStateException("Round trip failed for " + json.name());
+            }
+            FileHandle lzma = json.sibling(json.nameWithoutExtension() + ".json.lzma");
+            FileHandle dat = json.sibling(json.nameWithoutExtension() + ".dat");
+            long lzmaSize = lzma.exists() ? lzma.length() : 0L;
+            long datSize;
+            if (dat.exists()) {
+                datSize = dat.length();
+            } else {
+                ByteArray ba = LZBCompression.compressToByteArray(json.readString("UTF8"));
+                datSize = ba.size;
+            }
+            jsonTotal += raw.length;
+            sdzTotal += sdz.length;
+            lzmaTotal += lzmaSize;
+            datTotal += datSize;
+            System.out.printf("%-40s %10d %10d %10d %10d%n", json.nameWithoutExtension(),
+                    raw.length, sdz.length, lzmaSize, datSize);
+        }
+        System.out.println();
+        System.out.printf("%-40s %10d %10d %10d %10d%n", "TOTAL (.json.sdz includes dictionary)",
+                jsonTotal, sdzTotal, lzmaTotal, datTotal);
+        System.out.printf(".json.sdz is %.1f%% of .dat and %.1f%% of .json.lzma.%n",
+                100.0 * sdzTotal / datTotal, 100.0 * sdzTotal / lzmaTotal);
+        System.exit(0);
+    }
+
+    public static void main(String[] args) {
+        if (StartupHelper.startNewJvmIfRequired(args)) return; // This handles macOS support and helps on Windows.
+        new Lwjgl3Application(new DictionarySavingsTool(), getDefaultConfiguration());
+    }
+
+    private static Lwjgl3ApplicationConfiguration getDefaultConfiguration() {
+        Lwjgl3ApplicationConfiguration configuration = new Lwjgl3ApplicationConfiguration();
+        configuration.disableAudio(true);
+        configuration.setTitle("Dictionary Savings Tool");
+        configuration.useVsync(true);
+        configuration.setWindowedMode(800, 600);
+        configuration.setWindowIcon("libgdx128.png", "libgdx64.png", "libgdx32.png", "libgdx16.png");
+        return configuration;
+    }
+
+}
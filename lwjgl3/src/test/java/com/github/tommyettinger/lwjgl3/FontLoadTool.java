@@ -0,0 +1,156 @@
+package com.github.tommyettinger.lwjgl3;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Application;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3ApplicationConfiguration;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.utils.Disposable;
+import com.github.tommyettinger.textra.Font;
+import com.github.tommyettinger.textra.utils.BitmapFontSupport;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.function.Supplier;
+
+/**
+ * Measures what it costs a game to load each format fontwriter produces,
+ * going through the same calls a game would: TextraTypist's
+ * {@code Font(String, TextureRegion, ...)} constructor for every format,
+ * and {@link BitmapFontSupport#loadStructuredJson} for standard fonts,
+ * which are the only ones a plain {@link BitmapFont} can draw.
+ * <p>
+ * For every font in the folder and every format present, it reports:
+ * <ul>
+ *   <li>decode time, the best of {@link #RUNS} runs;</li>
+ *   <li>bytes allocated by the load, from the JVM's per-thread counter;</li>
+ *   <li>heap footprint, the growth in used heap after a GC while the
+ *       loaded font is still reachable.</li>
+ * </ul>
+ * The atlas texture is loaded once per font and shared by every format,
+ * so none of the numbers include PNG decoding or the texture upload,
+ * which are the same whatever the descriptor format.
+ * <p>
+ * The folder is the first argument, or {@code knownFonts/} by default.
+ */
+public class FontLoadTool extends ApplicationAdapter {
+    private static final int RUNS = 5;
+    private static final String[] FORMATS = {".json", ".json.lzma", ".dat", ".ubj", ".ubj.lzma"};
+    /** Font, then BitmapFont; each row holds nanos, allocated bytes, footprint bytes, count. */
+    private final long[][][] totals = new long[2][FORMATS.length][4];
+    private final String folder;
+
+    public FontLoadTool(String folder) {
+        this.folder = folder;
+    }
+
+    @Override
+    public void create() {
+        FileHandle[] pngs = Gdx.files.local(folder).list(".png");
+        for (FileHandle png : pngs) {
+            String name = png.nameWithoutExtension();
+            Texture texture = new Texture(png);
+            TextureRegion region = new TextureRegion(texture);
+            boolean standard = name.endsWith("-standard");
+            StringBuilder line = new StringBuilder(name);
+            for (int f = 0; f < FORMATS.length; f++) {
+                FileHandle file = png.sibling(name + FORMATS[f]);
+                if (!file.exists() && FORMATS[f].startsWith(".ubj"))
+                    file = png.sibling("ubj/" + name + FORMATS[f]);
+                if (!file.exists()) continue;
+                final FileHandle in = file;
+                long[] font = measure(() -> new Font(in.path(), region, 0f, 0f, 0f, 0f, true, true));
+                add(0, f, font);
+                line.append(String.format("  %s %.2fms", FORMATS[f], font[0] * 1e-6));
+                if (standard) {
+                    try {
+                        long[] bitmap = measure(() -> BitmapFontSupport.loadStructuredJson(in, region));
+                        add(1, f, bitmap);
+                        line.append(String.format(" (BitmapFont %.2fms)", bitmap[0] * 1e-6));
+                    } catch (RuntimeException e) {
+                        line.append(" (BitmapFont unsupported)");
+                    }
+                }
+            }
+            texture.dispose();
+            System.out.println(line);
+        }
+        System.out.println();
+        System.out.printf("%-10s %-12s %6s %12s %14s %14s%n",
+                "loader", "format", "fonts", "mean ms", "mean alloc KB", "mean heap KB");
+        for (int k = 0; k < 2; k++) {
+            for (int f = 0; f < FORMATS.length; f++) {
+                long[] t = totals[k][f];
+                if (t[3] == 0) continue;
+                System.out.printf("%-10s %-12s %6d %12.3f %14.1f %14.1f%n", k == 0 ? "Font" : "BitmapFont",
+                        FORMATS[f], t[3], t[0] * 1e-6 / t[3], t[1] / 1024.0 / t[3], t[2] / 1024.0 / t[3]);
+            }
+        }
+        System.exit(0);
+    }
+
+    private void add(int loader, int format, long[] m) {
+        long[] t = totals[loader][format];
+        t[0] += m[0];
+        t[1] += m[1];
+        t[2] += m[2];
+        t[3]++;
+    }
+
+    /**
+     * Loads with {@code loader} {@link #RUNS} times and returns the best
+     * time, then loads once more to count allocations and footprint.
+     * Only the font objects are disposed; the shared texture is not
+     * touched by {@link Font#dispose()}, and a {@link BitmapFont} built
+     * from a region does not own it.
+     */
+    private long[] measure(Supplier<? extends Disposable> loader) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            Disposable d = loader.get();
+            best = Math.min(best, System.nanoTime() - start);
+            d.dispose();
+        }
+        long heapBefore = usedHeap();
+        long allocBefore = allocated();
+        Disposable d = loader.get();
+        long alloc = allocated() - allocBefore;
+        long footprint = usedHeap() - heapBefore;
+        d.dispose();
+        return new long[]{best, Math.max(alloc, 0L), Math.max(footprint, 0L)};
+    }
+
+    private static long allocated() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0L;
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    public static void main(String[] args) {
+        if (StartupHelper.startNewJvmIfRequired(args)) return; // This handles macOS support and helps on Windows.
+        new Lwjgl3Application(new FontLoadTool(args.length > 0 ? args[0] : "knownFonts/"), getDefaultConfiguration());
+    }
+
+    private static Lwjgl3ApplicationConfiguration getDefaultConfiguration() {
+        Lwjgl3ApplicationConfiguration configuration = new Lwjgl3ApplicationConfiguration();
+        configuration.disableAudio(true);
+        configuration.setTitle("Font Load Tool");
+        configuration.useVsync(true);
+        configuration.setWindowedMode(800, 600);
+        configuration.setWindowIcon("libgdx128.png", "libgdx64.png", "libgdx32.png", "libgdx16.png");
+        return configuration;
+    }
+
+}